@@ -90,6 +90,14 @@ public class Client {
      *                - if the request is RequestCommand.CONFIG_UPDATE_MAX_WAIT_TIME, then the requestData is the new
      *                  update time in seconds (decimals are allowed), as a string
      *
+     *                - if the request is RequestCommand.CONFIG_UPDATE_PREDICTION_MODE, then the requestData is the name
+     *                  of the PredictionMode that the server should use to predict timestamps and double values,
+     *                  "EXACT" or "STREAMING"
+     *
+     *                - if the request is RequestCommand.CONFIG_UPDATE_PREDICTION_WINDOW, then the requestData is the
+     *                  number of latest events of an entity that the server should predict from, as a string.
+     *                  The server predicts from the whole history of an entity until this request is sent
+     *
      *                - if the request is RequestCommand.CONTROL_SET_ACTUATOR_STATE, then the requestData is the id of the
      *                  actuator whose state should be set, as a string, followed by the '<>' symbol, followed by the
      *                  serialized Filter (Filter.toString defines exactly how a Filter is serialized) which should
@@ -109,13 +117,32 @@ public class Client {
      *                  serialized TimeWindow which determines the time window, within which, the client wants to see
      *                  the events that arrived during.
      *
+     *                - if the request is RequestCommand.ANALYSIS_GET_EVENTS_IN_WINDOW_IF, then the requestData is the
+     *                  serialized TimeWindow, followed by the '<>' symbol, followed by a serialized Filter. Only the
+     *                  events in the time window that satisfy the Filter are sent back.
+     *
      *                - if the request is RequestCommand.ANALYSIS_GET_ALL_ENTITIES, then the requestData is empty
      *
      *                - if the request is RequestCommand.ANALYSIS_GET_LATEST_EVENTS, then the requestData is the number
      *                  of events that the client wants to see, as a string
      *
+     *                - if the request is RequestCommand.ANALYSIS_GET_LATEST_EVENTS_IF, then the requestData is the
+     *                  number of events that the client wants to see, as a string, followed by the '<>' symbol,
+     *                  followed by a serialized Filter. The latest events that satisfy the Filter are sent back.
+     *
      *                - if the request is RequestCommand.ANALYSIS_GET_MOST_ACTIVE_ENTITY, then the requestData is empty
      *
+     *                - if the request is RequestCommand.ANALYSIS_GET_MOST_ACTIVE_ENTITIES, then the requestData is the
+     *                  number of most active entities that the client wants to see, as a string
+     *
+     *                - if the request is RequestCommand.ANALYSIS_GET_TRANSITION_PROBABILITIES, then the requestData
+     *                  is the id of the entity whose probabilities of each boolean value following the other the
+     *                  client wants to see, as a string
+     *
+     *                - if the request is RequestCommand.ANALYSIS_GET_PREDICTION_CACHE_STATS, then the requestData is
+     *                  empty. The numbers of predictions that the server answered from its cache and that it had to
+     *                  make are sent back
+     *
      *                - if the request is RequestCommand.PREDICT_NEXT_N_TIMESTAMPS, then the requestData is id of the
      *                  entity whose next timestamps to predict, as a string, followed by the '<>' symbol, followed by
      *                  the number of timestamps to predict, as a string
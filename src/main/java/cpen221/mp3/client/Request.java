@@ -33,13 +33,20 @@ public class Request {
      *                    - RequestType.PREDICT
      * @param requestCommand the command of the request, must be one of the following:
      *                       - RequestCommand.CONFIG_UPDATE_MAX_WAIT_TIME
+     *                       - RequestCommand.CONFIG_UPDATE_PREDICTION_MODE
+     *                       - RequestCommand.CONFIG_UPDATE_PREDICTION_WINDOW
      *                       - RequestCommand.CONTROL_SET_ACTUATOR_STATE
      *                       - RequestCommand.CONTROL_TOGGLE_ACTUATOR_STATE
      *                       - RequestCommand.CONTROL_NOTIFY_IF
      *                       - RequestCommand.ANALYSIS_GET_EVENTS_IN_WINDOW
+     *                       - RequestCommand.ANALYSIS_GET_EVENTS_IN_WINDOW_IF
      *                       - RequestCommand.ANALYSIS_GET_ALL_ENTITIES
      *                       - RequestCommand.ANALYSIS_GET_LATEST_EVENTS
+     *                       - RequestCommand.ANALYSIS_GET_LATEST_EVENTS_IF
      *                       - RequestCommand.ANALYSIS_GET_MOST_ACTIVE_ENTITY
+     *                       - RequestCommand.ANALYSIS_GET_MOST_ACTIVE_ENTITIES
+     *                       - RequestCommand.ANALYSIS_GET_TRANSITION_PROBABILITIES
+     *                       - RequestCommand.ANALYSIS_GET_PREDICTION_CACHE_STATS
      *                       - RequestCommand.PREDICT_NEXT_N_TIMESTAMPS
      *                       - RequestCommand.PREDICT_NEXT_N_VALUES
      * @param requestData the data of the request, is not null
@@ -2,13 +2,20 @@ package cpen221.mp3.client;
 
 public enum RequestCommand {
     CONFIG_UPDATE_MAX_WAIT_TIME,
+    CONFIG_UPDATE_PREDICTION_MODE,
+    CONFIG_UPDATE_PREDICTION_WINDOW,
     CONTROL_SET_ACTUATOR_STATE,
     CONTROL_TOGGLE_ACTUATOR_STATE,
     CONTROL_NOTIFY_IF,
     ANALYSIS_GET_EVENTS_IN_WINDOW,
+    ANALYSIS_GET_EVENTS_IN_WINDOW_IF,
     ANALYSIS_GET_ALL_ENTITIES,
     ANALYSIS_GET_LATEST_EVENTS,
+    ANALYSIS_GET_LATEST_EVENTS_IF,
     ANALYSIS_GET_MOST_ACTIVE_ENTITY,
+    ANALYSIS_GET_MOST_ACTIVE_ENTITIES,
+    ANALYSIS_GET_TRANSITION_PROBABILITIES,
+    ANALYSIS_GET_PREDICTION_CACHE_STATS,
     PREDICT_NEXT_N_TIMESTAMPS,
     PREDICT_NEXT_N_VALUES
 }
\ No newline at end of file
@@ -2,12 +2,16 @@ package cpen221.mp3.entity;
 
 import cpen221.mp3.client.Request;
 import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.BinaryEventWriter;
 import cpen221.mp3.event.Event;
 import cpen221.mp3.server.SeverCommandToActuator;
+import cpen221.mp3.util.VirtualThreads;
 
 import java.io.*;
 import java.net.*;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.regex.*;
 
@@ -32,13 +36,20 @@ public class Actuator implements Entity {
     private PrintWriter out;
     private int numFailedInARow;
     private boolean startedGeneratingEvents;
+    private volatile boolean binaryProtocol;
+    private BinaryEventWriter binaryOut;
+    private final EventBatcher batcher = new EventBatcher(this::flushEvents);
+    private final List<Event> pendingTextEvents = new ArrayList<>();
 
     /*
     Abstraction Function:
     Represents an actuator entity with a unique id and a type. The client that the sensor is registered to is represented
     by the clientId. If the sensor is not registered to a client, then clientId == -1. The sensor has a Socket and
-    PrintWriter that are used to send events to the server. The serverIP and serverPort represent the IP address and
-    http endpoint that the sensor sends events to. No events are sent if the http endpoint has not been set. Events
+    PrintWriter that are used to send events to the server, or a BinaryEventWriter instead of the PrintWriter if
+    binaryProtocol is true. Events are sent in batches as decided by batcher, and text events that have not been sent
+    yet are kept in pendingTextEvents, in the order they were made. A batch of several text events is sent as
+    one ACTUATOR_BATCH line. The serverIP and serverPort represent the IP address and http endpoint that the sensor
+    sends events to. No events are sent if the http endpoint has not been set. Events
     are sent at a frequency specified by eventGenerationFrequency.
 
     Representation Invariant:
@@ -185,6 +196,46 @@ public class Actuator implements Entity {
         makeSocket();
     }
 
+    /** Choose whether this actuator sends its events in the compact binary format described in BinaryEventFormat
+     *  instead of as lines of text. If the actuator is already connected, it reconnects using the chosen format
+     *  when it sends its next event.
+     *
+     * @param binaryProtocol true to send events in the binary format, false to send them as text
+     */
+    public void setBinaryProtocol(boolean binaryProtocol) {
+        if (this.binaryProtocol == binaryProtocol) {
+            return;
+        }
+        try {
+            batcher.flushNow();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        this.binaryProtocol = binaryProtocol;
+        if (this.socket != null) {
+            try {
+                this.socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /** Send events in batches instead of one at a time. The events made so far are sent as soon as maxEvents
+     *  of them are waiting, or maxDelayMillis after the first of them was made, whichever comes first.
+     *  Setting maxEvents to 1 sends every event as soon as it is made, which is the default.
+     *
+     * @param maxEvents the number of events to send at once, >= 1
+     * @param maxDelayMillis the longest time that an event waits before it is sent, in milliseconds, >= 0
+     */
+    public void setBatching(int maxEvents, long maxDelayMillis) {
+        try {
+            batcher.setLimits(maxEvents, maxDelayMillis);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     public void setEventGenerationFrequency(double frequency){
         this.eventGenerationFrequency = frequency;
     }
@@ -194,21 +245,50 @@ public class Actuator implements Entity {
             System.out.println("Actuator "+id+" has not set its http endpoint yet, cannot send event");
             return;
         }
-        if (this.socket.isClosed()) {
+        if (this.socket == null || this.socket.isClosed() || (binaryProtocol ? this.binaryOut == null : this.out == null)) {
             makeSocket();
         }
         try {
             if (this.host == null) {
                 makeServerSocket();
             }
-            out.println("ACTUATOR" + "<()>" + this.clientId + "<()>" +event.toString() +"<()>"+this.host + "/"+this.port);
-            out.flush();
+            synchronized (batcher) {
+                if (binaryProtocol) {
+                    binaryOut.writeActuatorEvent(this.clientId, event, this.host, this.port);
+                } else {
+                    pendingTextEvents.add(event);
+                }
+                batcher.eventWritten();
+            }
         } catch (Exception e) {
             numFailedInARow++;
             e.printStackTrace();
         }
     }
 
+    /** Send the events that have been made but not sent yet
+     *
+     * @throws IOException if sending the events fails
+     */
+    private void flushEvents() throws IOException {
+        if (!pendingTextEvents.isEmpty() && out != null) {
+            if (pendingTextEvents.size() == 1) {
+                out.println("ACTUATOR" + "<()>" + this.clientId + "<()>" + pendingTextEvents.get(0).toString() + "<()>" + this.host + "/" + this.port);
+            } else {
+                StringBuilder line = new StringBuilder("ACTUATOR_BATCH<()>").append(this.clientId).append("<()>");
+                for (Event event : pendingTextEvents) {
+                    line.append(event.toString());
+                }
+                out.println(line + "<()>" + this.host + "/" + this.port);
+            }
+            out.flush();
+        }
+        pendingTextEvents.clear();
+        if (binaryOut != null) {
+            binaryOut.flush();
+        }
+    }
+
     /** Update the state of the actuator depending on the request sent from the server
      *
      * @param command the request sent from the server, is not null
@@ -295,7 +375,13 @@ public class Actuator implements Entity {
     private void makeSocket() {
         try {
             this.socket = new Socket(serverIP, serverPort);
-            this.out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()));
+            if (binaryProtocol) {
+                this.out = null;
+                this.binaryOut = new BinaryEventWriter(socket.getOutputStream());
+            } else {
+                this.binaryOut = null;
+                this.out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()));
+            }
             generateEvents();
         } catch (Exception e) {
             e.printStackTrace();
@@ -351,7 +437,7 @@ public class Actuator implements Entity {
             return;
         }
         startedGeneratingEvents = true;
-        (new Thread(() -> {
+        VirtualThreads.startForEntity(() -> {
             numFailedInARow = 0;
 
             while (true) {
@@ -370,14 +456,14 @@ public class Actuator implements Entity {
                 }
 
             }
-        })).start();
+        });
     }
 
     /** Begin listening for events from the server from the actuator's serverSocket
      *
      */
     public void listenEvents() {
-        (new Thread(() -> {
+        VirtualThreads.startForEntity(() -> {
             while(true) {
                 try {
                     this.inSocket = serverSocket.accept();
@@ -394,6 +480,6 @@ public class Actuator implements Entity {
                     }
                 }
             }
-        })).start();
+        });
     }
 }
@@ -0,0 +1,108 @@
+package cpen221.mp3.entity;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+class EventBatcher {
+    private static final ScheduledExecutorService FLUSH_TIMER = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "event-batch-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    interface Flush {
+        void flush() throws IOException;
+    }
+
+    private final Flush flush;
+    private int maxEvents;
+    private long maxDelayMillis;
+    private int pendingEvents;
+    private ScheduledFuture<?> scheduledFlush;
+
+    /*
+    Abstraction Function:
+    Represents when the events that an entity has written, but not yet sent, should be sent to the server.
+    They are sent as soon as maxEvents of them are waiting, or maxDelayMillis after the first of them was
+    written, whichever comes first. pendingEvents is the number of events waiting to be sent, and
+    scheduledFlush is the timer that sends them after maxDelayMillis. With maxEvents == 1 every event
+    is sent as soon as it is written.
+
+    Representation Invariant:
+    - flush is not null
+    - maxEvents >= 1
+    - maxDelayMillis >= 0
+    - 0 <= pendingEvents < maxEvents between calls
+    - scheduledFlush is null if pendingEvents == 0
+
+    Thread Safety Arguments:
+    - all methods are synchronized, and flush is only run while holding the lock of this EventBatcher
+    - entities write their events while holding the lock of their EventBatcher, so an event is never
+      written while the timer is sending the events before it
+     */
+
+    /** Create a new EventBatcher that sends every event as soon as it is written
+     *
+     * @param flush sends the events that have been written, is not null
+     */
+    EventBatcher(Flush flush) {
+        this.flush = flush;
+        this.maxEvents = 1;
+        this.maxDelayMillis = 0;
+    }
+
+    /** Change when written events are sent. Events that are already waiting are sent first.
+     *
+     * @param maxEvents the number of events to send at once, >= 1
+     * @param maxDelayMillis the longest time that an event waits before it is sent, in milliseconds, >= 0
+     * @throws IOException if sending the waiting events fails
+     */
+    synchronized void setLimits(int maxEvents, long maxDelayMillis) throws IOException {
+        if (maxEvents < 1 || maxDelayMillis < 0) {
+            throw new IllegalArgumentException("A batch must hold at least 1 event, and can not wait for a negative time");
+        }
+        flushNow();
+        this.maxEvents = maxEvents;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /** Record that an event has been written, and send the written events if the batch is full
+     *
+     * @throws IOException if sending the events fails
+     */
+    synchronized void eventWritten() throws IOException {
+        pendingEvents++;
+        if (pendingEvents >= maxEvents) {
+            flushNow();
+        } else if (scheduledFlush == null) {
+            scheduledFlush = FLUSH_TIMER.schedule(this::flushOnTimer, maxDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Send every written event now
+     *
+     * @throws IOException if sending the events fails
+     */
+    synchronized void flushNow() throws IOException {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        if (pendingEvents > 0) {
+            pendingEvents = 0;
+            flush.flush();
+        }
+    }
+
+    private synchronized void flushOnTimer() {
+        scheduledFlush = null;
+        try {
+            flushNow();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
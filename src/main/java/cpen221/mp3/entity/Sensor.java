@@ -1,12 +1,16 @@
 package cpen221.mp3.entity;
 
+import cpen221.mp3.event.BinaryEventWriter;
 import cpen221.mp3.event.Event;
 import cpen221.mp3.event.SensorEvent;
+import cpen221.mp3.util.VirtualThreads;
 
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 public class Sensor implements Entity {
@@ -20,13 +24,20 @@ public class Sensor implements Entity {
     public PrintWriter out;
     private int numFailedInARow;
     private boolean startedGeneratingEvents;
+    private volatile boolean binaryProtocol;
+    private BinaryEventWriter binaryOut;
+    private final EventBatcher batcher = new EventBatcher(this::flushEvents);
+    private final List<Event> pendingTextEvents = new ArrayList<>();
 
     /*
     Abstraction Function:
     Represents a sensor entity with a unique id and a type. The client that the sensor is registered to is represented
     by the clientId. If the sensor is not registered to a client, then clientId == -1. The sensor has a Socket and
-    PrintWriter that are used to send events to the server. The serverIP and serverPort represent the IP address and
-    http endpoint that the sensor sends events to. No events are sent if the http endpoint has not been set. Events
+    PrintWriter that are used to send events to the server, or a BinaryEventWriter instead of the PrintWriter if
+    binaryProtocol is true. Events are sent in batches as decided by batcher, and text events that have not been sent
+    yet are kept in pendingTextEvents, in the order they were made. A batch of several text events is sent as
+    one SENSOR_BATCH line. The serverIP and serverPort represent the IP address and http endpoint that the sensor
+    sends events to. No events are sent if the http endpoint has not been set. Events
     are sent at a frequency specified by eventGenerationFrequency.
 
     Representation Invariant:
@@ -135,13 +146,59 @@ public class Sensor implements Entity {
     private void makeSocket() {
         try {
             this.socket = new Socket(this.serverIP, this.serverPort);
-            this.out = new PrintWriter(new OutputStreamWriter(this.socket.getOutputStream()));
+            if (binaryProtocol) {
+                this.out = null;
+                this.binaryOut = new BinaryEventWriter(this.socket.getOutputStream());
+            } else {
+                this.binaryOut = null;
+                this.out = new PrintWriter(new OutputStreamWriter(this.socket.getOutputStream()));
+            }
             generateEvents();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /** Choose whether this sensor sends its events in the compact binary format described in BinaryEventFormat
+     *  instead of as lines of text. If the sensor is already connected, it reconnects using the chosen format
+     *  when it sends its next event.
+     *
+     * @param binaryProtocol true to send events in the binary format, false to send them as text
+     */
+    public void setBinaryProtocol(boolean binaryProtocol) {
+        if (this.binaryProtocol == binaryProtocol) {
+            return;
+        }
+        try {
+            batcher.flushNow();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        this.binaryProtocol = binaryProtocol;
+        if (this.socket != null) {
+            try {
+                this.socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /** Send events in batches instead of one at a time. The events made so far are sent as soon as maxEvents
+     *  of them are waiting, or maxDelayMillis after the first of them was made, whichever comes first.
+     *  Setting maxEvents to 1 sends every event as soon as it is made, which is the default.
+     *
+     * @param maxEvents the number of events to send at once, >= 1
+     * @param maxDelayMillis the longest time that an event waits before it is sent, in milliseconds, >= 0
+     */
+    public void setBatching(int maxEvents, long maxDelayMillis) {
+        try {
+            batcher.setLimits(maxEvents, maxDelayMillis);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     public void setEventGenerationFrequency(double frequency){
         this.eventGenerationFrequency = frequency;
     }
@@ -177,18 +234,47 @@ public class Sensor implements Entity {
             System.out.println("Sensor "+id+" has not set its http endpoint yet, cannot send event");
             return;
         }
-        if (this.out == null || this.socket.isClosed()) {
+        if ((binaryProtocol ? this.binaryOut == null : this.out == null) || this.socket.isClosed()) {
             makeSocket();
         }
         try {
-            out.println("SENSOR" + "<()>" + this.clientId + "<()>" +event.toString());
-            out.flush();
+            synchronized (batcher) {
+                if (binaryProtocol) {
+                    binaryOut.writeSensorEvent(this.clientId, event);
+                } else {
+                    pendingTextEvents.add(event);
+                }
+                batcher.eventWritten();
+            }
         } catch (Exception e) {
             numFailedInARow++;
             e.printStackTrace();
         }
     }
 
+    /** Send the events that have been made but not sent yet
+     *
+     * @throws IOException if sending the events fails
+     */
+    private void flushEvents() throws IOException {
+        if (!pendingTextEvents.isEmpty() && out != null) {
+            if (pendingTextEvents.size() == 1) {
+                out.println("SENSOR" + "<()>" + this.clientId + "<()>" + pendingTextEvents.get(0).toString());
+            } else {
+                StringBuilder line = new StringBuilder("SENSOR_BATCH<()>").append(this.clientId).append("<()>");
+                for (Event event : pendingTextEvents) {
+                    line.append(event.toString());
+                }
+                out.println(line);
+            }
+            out.flush();
+        }
+        pendingTextEvents.clear();
+        if (binaryOut != null) {
+            binaryOut.flush();
+        }
+    }
+
     /** Begin sending new random ActuatorEvents to the server at the frequency specified by eventGenerationFrequency
      *  and if 5 events in a row fail to send, wait 10 seconds before trying again.
      */
@@ -197,7 +283,7 @@ public class Sensor implements Entity {
             return;
         }
         startedGeneratingEvents = true;
-        (new Thread(() -> {
+        VirtualThreads.startForEntity(() -> {
             numFailedInARow = 0;
 
             while (true) {
@@ -216,6 +302,6 @@ public class Sensor implements Entity {
                 }
             }
 
-        })).start();
+        });
     }
 }
\ No newline at end of file
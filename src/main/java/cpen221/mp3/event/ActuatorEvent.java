@@ -1,11 +1,13 @@
 package cpen221.mp3.event;
 
+import java.util.Objects;
+
 public class ActuatorEvent implements Event {
 
     private double timeStamp;
     private int clientId;
     private int entityId;
-    private String entityType;
+    private int entityTypeCode;
     private boolean value;
 
     public ActuatorEvent(double TimeStamp,
@@ -16,7 +18,21 @@ public class ActuatorEvent implements Event {
         this.timeStamp = TimeStamp;
         this.clientId = ClientId;
         this.entityId = EntityId;
-        this.entityType = EntityType;
+        this.entityTypeCode = EntityTypes.code(EntityType);
+        this.value = Value;
+    }
+
+    // the entity type is given by its code in EntityTypes, which must have been given to
+    // an entity type, so that events of the same type do not each need their own String
+    public ActuatorEvent(double TimeStamp,
+                         int ClientId,
+                         int EntityId,
+                         int EntityTypeCode,
+                         boolean Value) {
+        this.timeStamp = TimeStamp;
+        this.clientId = ClientId;
+        this.entityId = EntityId;
+        this.entityTypeCode = EntityTypeCode;
         this.value = Value;
     }
 
@@ -33,7 +49,11 @@ public class ActuatorEvent implements Event {
     }
 
     public String getEntityType() {
-        return this.entityType;
+        return EntityTypes.name(this.entityTypeCode);
+    }
+
+    public int getEntityTypeCode() {
+        return this.entityTypeCode;
     }
 
     public boolean getValueBoolean() {
@@ -46,13 +66,33 @@ public class ActuatorEvent implements Event {
         return -1;
     }
 
+    // events are equal if all their fields are equal, so an event rebuilt from stored fields
+    // is equal to the event it was stored from
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof ActuatorEvent)) {
+            return false;
+        }
+        ActuatorEvent that = (ActuatorEvent) other;
+        return Double.compare(timeStamp, that.timeStamp) == 0
+                && clientId == that.clientId
+                && entityId == that.entityId
+                && entityTypeCode == that.entityTypeCode
+                && value == that.value;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(timeStamp, clientId, entityId, getEntityType(), value);
+    }
+
     @Override
     public String toString() {
         return "ActuatorEvent: {" +
                 "timeStamp=" + timeStamp +
                 ", clientId=" + clientId +
                 ", entityId=" + entityId +
-                ", entityType=" + entityType +
+                ", entityType=" + getEntityType() +
                 ", value=" + value +
                 '}';
     }
@@ -0,0 +1,36 @@
+package cpen221.mp3.event;
+
+public final class BinaryEventFormat {
+
+    /*
+    The binary format is an optional, more compact alternative to sending events as lines of text. An entity
+    chooses it for a whole connection by sending MAGIC as the very first byte. MAGIC is not an ASCII character,
+    so it can never be the first byte of a text message, which lets the MessageHandler keep accepting text
+    connections on the same port.
+
+    After MAGIC, the connection is a sequence of frames. Every frame is an int length (big-endian, like all
+    numbers in the format) followed by that many bytes of payload. The first byte of the payload is its kind:
+
+    - STRING_DEFINITION: unsigned short code, unsigned short byte length, UTF-8 bytes
+      Defines the string for a code, which later frames of the same connection refer to instead of
+      repeating the string. Codes are assigned by the sender, in order, starting from 0.
+    - SENSOR_EVENT: int client id, double timestamp, int event client id, int entity id,
+      unsigned short entity type code, double value
+    - ACTUATOR_EVENT: int client id, double timestamp, int event client id, int entity id,
+      unsigned short entity type code, byte value (0 or 1), unsigned short return host code, int return port
+
+    The client id is the id of the Client that the event is sent for, the same as the number after the
+    name of a text message. A string code of INLINE_STRING is followed by the string itself (unsigned short
+    byte length and UTF-8 bytes), and is used once a connection runs out of codes.
+     */
+
+    public static final int MAGIC = 0xB1;
+    public static final byte STRING_DEFINITION = 1;
+    public static final byte SENSOR_EVENT = 2;
+    public static final byte ACTUATOR_EVENT = 3;
+    public static final int INLINE_STRING = 0xFFFF;
+    public static final int MAX_FRAME_LENGTH = 64 * 1024;
+
+    private BinaryEventFormat() {
+    }
+}
@@ -0,0 +1,163 @@
+package cpen221.mp3.event;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+public class BinaryEventReader {
+    private final List<String> strings;
+    private final ToIntFunction<String> entityTypeCodes;
+    private int[] stringTypeCodes;
+    private int clientId;
+    private Event event;
+    private String[] returnSocketInfo;
+
+    /*
+    Abstraction Function:
+    Represents the receiving side of a connection that uses the binary format described in BinaryEventFormat.
+    strings.get(code) is the string that was defined for code on the connection. The entity types of the events
+    are given their codes in EntityTypes by entityTypeCodes, and stringTypeCodes[code] is the entity type code of
+    strings.get(code), or -1 if it has not been the entity type of an event yet, so that a defined entity type is
+    only looked up once. clientId, event and returnSocketInfo describe the last event frame that was read, where
+    returnSocketInfo is the {host, port} of the last ActuatorEvent. It is reused for the following ActuatorEvents
+    with the same host and port, and must not be modified.
+
+    Representation Invariant:
+    - strings is not null and does not contain null
+    - entityTypeCodes is not null
+    - stringTypeCodes is not null, and stringTypeCodes.length >= strings.size()
+    - event is null iff no event frame has been read yet
+
+    Thread Safety Arguments:
+    - a BinaryEventReader is not thread safe, and is only used by the thread that reads its connection
+     */
+
+    /** Create a new BinaryEventReader for a new connection
+     *
+     */
+    public BinaryEventReader() {
+        this(EntityTypes::code);
+    }
+
+    /** Create a new BinaryEventReader for a new connection, that gets the codes of the entity types of the
+     *  events from a function, which may reject an entity type by throwing an IllegalArgumentException
+     *
+     * @param entityTypeCodes the function that gives the code in EntityTypes of an entity type, is not null
+     */
+    public BinaryEventReader(ToIntFunction<String> entityTypeCodes) {
+        this.strings = new ArrayList<>();
+        this.entityTypeCodes = entityTypeCodes;
+        this.stringTypeCodes = new int[0];
+    }
+
+    /** Read one frame. After this returns true, the event of the frame is available from getEvent,
+     *  getClientId and getReturnSocketInfo.
+     *
+     * @param payload the payload of the frame, from its position to its limit, is not null
+     * @return true if the frame was an event, false if it was a string definition
+     * @throws IllegalArgumentException if the frame is not well formed, or its entity type is rejected
+     */
+    public boolean readFrame(ByteBuffer payload) {
+        try {
+            byte kind = payload.get();
+            if (kind == BinaryEventFormat.STRING_DEFINITION) {
+                int code = Short.toUnsignedInt(payload.getShort());
+                if (code != strings.size()) {
+                    throw new IllegalArgumentException("String code " + code + " is defined out of order");
+                }
+                strings.add(readString(payload));
+                if (stringTypeCodes.length < strings.size()) {
+                    int oldLength = stringTypeCodes.length;
+                    stringTypeCodes = Arrays.copyOf(stringTypeCodes, Math.max(8, 2 * oldLength));
+                    Arrays.fill(stringTypeCodes, oldLength, stringTypeCodes.length, -1);
+                }
+                return false;
+            }
+            if (kind != BinaryEventFormat.SENSOR_EVENT && kind != BinaryEventFormat.ACTUATOR_EVENT) {
+                throw new IllegalArgumentException("Unknown frame kind " + kind);
+            }
+
+            int frameClientId = payload.getInt();
+            double timeStamp = payload.getDouble();
+            int eventClientId = payload.getInt();
+            int entityId = payload.getInt();
+            int entityType = readEntityTypeCode(payload);
+            if (kind == BinaryEventFormat.SENSOR_EVENT) {
+                double value = payload.getDouble();
+                this.event = new SensorEvent(timeStamp, eventClientId, entityId, entityType, value);
+            } else {
+                boolean value = payload.get() != 0;
+                String host = readStringCode(payload);
+                int port = payload.getInt();
+                this.event = new ActuatorEvent(timeStamp, eventClientId, entityId, entityType, value);
+                String portString = Integer.toString(port);
+                if (returnSocketInfo == null || !returnSocketInfo[0].equals(host) || !returnSocketInfo[1].equals(portString)) {
+                    returnSocketInfo = new String[]{host, portString};
+                }
+            }
+            this.clientId = frameClientId;
+            return true;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Frame is shorter than its contents", e);
+        }
+    }
+
+    /** Get the id of the Client that the last event was sent for
+     *
+     * @return the client id of the last event
+     */
+    public int getClientId() {
+        return clientId;
+    }
+
+    /** Get the last event that was read
+     *
+     * @return the last event, or null if no event has been read
+     */
+    public Event getEvent() {
+        return event;
+    }
+
+    /** Get the socket information that the Server can send commands for the last event to
+     *
+     * @return {host, port} if the last event is an ActuatorEvent, null otherwise
+     */
+    public String[] getReturnSocketInfo() {
+        return event instanceof ActuatorEvent ? returnSocketInfo : null;
+    }
+
+    private int readEntityTypeCode(ByteBuffer payload) {
+        int code = Short.toUnsignedInt(payload.getShort());
+        if (code == BinaryEventFormat.INLINE_STRING) {
+            return entityTypeCodes.applyAsInt(readString(payload));
+        }
+        if (code >= strings.size()) {
+            throw new IllegalArgumentException("String code " + code + " has not been defined");
+        }
+        if (stringTypeCodes[code] < 0) {
+            stringTypeCodes[code] = entityTypeCodes.applyAsInt(strings.get(code));
+        }
+        return stringTypeCodes[code];
+    }
+
+    private String readStringCode(ByteBuffer payload) {
+        int code = Short.toUnsignedInt(payload.getShort());
+        if (code == BinaryEventFormat.INLINE_STRING) {
+            return readString(payload);
+        }
+        if (code >= strings.size()) {
+            throw new IllegalArgumentException("String code " + code + " has not been defined");
+        }
+        return strings.get(code);
+    }
+
+    private String readString(ByteBuffer payload) {
+        byte[] bytes = new byte[Short.toUnsignedInt(payload.getShort())];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
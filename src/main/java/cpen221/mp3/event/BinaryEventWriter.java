@@ -0,0 +1,143 @@
+package cpen221.mp3.event;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+public class BinaryEventWriter {
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream frameBytes;
+    private final DataOutputStream frame;
+    private final Map<String, Integer> stringCodes;
+
+    /*
+    Abstraction Function:
+    Represents the sending side of a connection that uses the binary format described in BinaryEventFormat.
+    stringCodes maps every string that has been defined on the connection to its code. Each payload is
+    built in frameBytes first, so that its length can be written before it.
+
+    Representation Invariant:
+    - out, frameBytes, frame, and stringCodes are not null
+    - the codes in stringCodes are exactly 0, 1, ..., stringCodes.size() - 1
+    - stringCodes.size() <= BinaryEventFormat.INLINE_STRING
+    - frameBytes is empty between calls
+
+    Thread Safety Arguments:
+    - all methods that write to the connection are synchronized, so frames are never interleaved
+     */
+
+    /** Create a new BinaryEventWriter that writes to the given stream, and start the connection by
+     *  writing BinaryEventFormat.MAGIC
+     *
+     * @param out the stream of the connection, is not null
+     * @throws IOException if writing to the stream fails
+     */
+    public BinaryEventWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.frameBytes = new ByteArrayOutputStream(64);
+        this.frame = new DataOutputStream(frameBytes);
+        this.stringCodes = new HashMap<>();
+        this.out.writeByte(BinaryEventFormat.MAGIC);
+    }
+
+    /** Write a SensorEvent frame. The frame is buffered until flush is called.
+     *
+     * @param clientId the id of the Client that the event is sent for
+     * @param event the event to write, is not null
+     * @throws IOException if writing to the connection fails
+     */
+    public synchronized void writeSensorEvent(int clientId, Event event) throws IOException {
+        int typeCode = defineString(event.getEntityType());
+        frame.writeByte(BinaryEventFormat.SENSOR_EVENT);
+        writeEventFields(clientId, event);
+        writeStringCode(typeCode, event.getEntityType());
+        frame.writeDouble(event.getValueDouble());
+        writeFrame();
+    }
+
+    /** Write an ActuatorEvent frame. The frame is buffered until flush is called.
+     *
+     * @param clientId the id of the Client that the event is sent for
+     * @param event the event to write, is not null
+     * @param host the host that the actuator receives commands on
+     * @param port the port that the actuator receives commands on
+     * @throws IOException if writing to the connection fails
+     */
+    public synchronized void writeActuatorEvent(int clientId, Event event, String host, int port) throws IOException {
+        String hostName = String.valueOf(host);
+        int typeCode = defineString(event.getEntityType());
+        int hostCode = defineString(hostName);
+        frame.writeByte(BinaryEventFormat.ACTUATOR_EVENT);
+        writeEventFields(clientId, event);
+        writeStringCode(typeCode, event.getEntityType());
+        frame.writeByte(event.getValueBoolean() ? 1 : 0);
+        writeStringCode(hostCode, hostName);
+        frame.writeInt(port);
+        writeFrame();
+    }
+
+    /** Send every buffered frame
+     *
+     * @throws IOException if writing to the connection fails
+     */
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    private void writeEventFields(int clientId, Event event) throws IOException {
+        frame.writeInt(clientId);
+        frame.writeDouble(event.getTimeStamp());
+        frame.writeInt(event.getClientId());
+        frame.writeInt(event.getEntityId());
+    }
+
+    /** Get the code of a string, writing a STRING_DEFINITION frame for it if it has not been defined yet
+     *
+     * @param string the string, is not null
+     * @return the code of the string, or BinaryEventFormat.INLINE_STRING if there are no codes left
+     * @throws IOException if writing to the connection fails
+     */
+    private int defineString(String string) throws IOException {
+        Integer code = stringCodes.get(string);
+        if (code != null) {
+            return code;
+        }
+        if (stringCodes.size() == BinaryEventFormat.INLINE_STRING) {
+            return BinaryEventFormat.INLINE_STRING;
+        }
+        int newCode = stringCodes.size();
+        stringCodes.put(string, newCode);
+        frame.writeByte(BinaryEventFormat.STRING_DEFINITION);
+        frame.writeShort(newCode);
+        writeString(string);
+        writeFrame();
+        return newCode;
+    }
+
+    private void writeStringCode(int code, String string) throws IOException {
+        frame.writeShort(code);
+        if (code == BinaryEventFormat.INLINE_STRING) {
+            writeString(string);
+        }
+    }
+
+    private void writeString(String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("String is too long for the binary format: " + bytes.length + " bytes");
+        }
+        frame.writeShort(bytes.length);
+        frame.write(bytes);
+    }
+
+    private void writeFrame() throws IOException {
+        out.writeInt(frameBytes.size());
+        frameBytes.writeTo(out);
+        frameBytes.reset();
+    }
+}
@@ -0,0 +1,184 @@
+package cpen221.mp3.event;
+
+import java.util.Arrays;
+
+public final class EntityTypes {
+    // the number of distinct entity types, including null, that can be given codes
+    public static final int MAX_TYPES = 1 << 16;
+    // the code of the null entity type
+    public static final int NULL_TYPE = 0;
+
+    private static volatile Snapshot snapshot = new Snapshot(new String[]{null}, new int[16]);
+
+    /*
+    Abstraction Function:
+    Represents one dictionary, shared by the whole program, that gives each distinct entity type a small int
+    code, so that events can hold the code instead of their own copy of the type's String. snapshot.names[code]
+    is the entity type with that code. Codes are given in the order in which the types are first seen, starting
+    with NULL_TYPE for null, and never change.
+
+    snapshot.table is a hash table of the codes of the non-null types, with linear probing: a slot holds
+    code + 1, or 0 if it is empty, and a type is found from slot spread(hash) & (table.length - 1) on, where
+    hash is the String hash code of the type.
+
+    Representation Invariant:
+    - snapshot is not null, snapshot.names[NULL_TYPE] is null, and the other names are not null and distinct
+    - snapshot.names.length <= MAX_TYPES
+    - snapshot.table.length is a power of two and at least twice the number of non-null names
+    - snapshot.table holds the code of every non-null name exactly once, in a slot it can be found from
+
+    Thread Safety Arguments:
+    - a Snapshot is never modified once it is published, so readers look types up without locking
+    - new types are added while holding the lock of the EntityTypes class, which builds a new Snapshot and
+      publishes it through the volatile field snapshot, so no type is given two codes and readers always see
+      a complete Snapshot
+     */
+
+    private static final class Snapshot {
+        final String[] names;
+        final int[] table;
+
+        Snapshot(String[] names, int[] table) {
+            this.names = names;
+            this.table = table;
+        }
+    }
+
+    private EntityTypes() {
+    }
+
+    /** Get the code of an entity type, giving it the next code if it has none yet
+     *
+     * @param entityType the entity type, may be null
+     * @return the code of the entity type
+     * @throws IllegalStateException if the entity type has no code and MAX_TYPES types already have codes
+     */
+    public static int code(String entityType) {
+        if (entityType == null) {
+            return NULL_TYPE;
+        }
+        return code(entityType, 0, entityType.length(), entityType.hashCode());
+    }
+
+    /** Get the code of the entity type made of a range of characters, giving it the next code if it has none
+     *  yet. A String is only created for the entity type the first time it is seen.
+     *
+     * @param chars the characters, is not null
+     * @param start the index of the first character of the entity type, 0 <= start <= end
+     * @param end the index after the last character of the entity type, end <= chars.length()
+     * @return the code of the entity type
+     * @throws IllegalStateException if the entity type has no code and MAX_TYPES types already have codes
+     */
+    public static int code(CharSequence chars, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + chars.charAt(i);
+        }
+        return code(chars, start, end, hash);
+    }
+
+    /** Get the code of the entity type made of a range of characters, without giving it a code if it has none
+     *
+     * @param chars the characters, is not null
+     * @param start the index of the first character of the entity type, 0 <= start <= end
+     * @param end the index after the last character of the entity type, end <= chars.length()
+     * @return the code of the entity type, or -1 if it has no code yet
+     */
+    public static int existingCode(CharSequence chars, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + chars.charAt(i);
+        }
+        return find(snapshot, chars, start, end, hash);
+    }
+
+    private static int code(CharSequence chars, int start, int end, int hash) {
+        int code = find(snapshot, chars, start, end, hash);
+        if (code >= 0) {
+            return code;
+        }
+        synchronized (EntityTypes.class) {
+            Snapshot current = snapshot;
+            code = find(current, chars, start, end, hash);
+            if (code >= 0) {
+                return code;
+            }
+            if (current.names.length == MAX_TYPES) {
+                throw new IllegalStateException("More than " + MAX_TYPES + " entity types");
+            }
+            code = current.names.length;
+            String[] names = Arrays.copyOf(current.names, code + 1);
+            names[code] = chars.subSequence(start, end).toString();
+            int[] table;
+            if (2 * code > current.table.length) {
+                table = new int[current.table.length * 2];
+                for (int i = 1; i < code; i++) {
+                    insert(table, names[i].hashCode(), i);
+                }
+            } else {
+                table = current.table.clone();
+            }
+            insert(table, hash, code);
+            snapshot = new Snapshot(names, table);
+            return code;
+        }
+    }
+
+    /** Find the code of an entity type in a snapshot of the dictionary
+     *
+     * @return the code of the entity type made of chars[start, end), or -1 if it has none
+     */
+    private static int find(Snapshot snapshot, CharSequence chars, int start, int end, int hash) {
+        int[] table = snapshot.table;
+        int mask = table.length - 1;
+        for (int slot = spread(hash) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            String name = snapshot.names[table[slot] - 1];
+            if (name.hashCode() == hash && sameChars(name, chars, start, end)) {
+                return table[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    private static void insert(int[] table, int hash, int code) {
+        int mask = table.length - 1;
+        int slot = spread(hash) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = code + 1;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean sameChars(String name, CharSequence chars, int start, int end) {
+        if (name.length() != end - start) {
+            return false;
+        }
+        if (name == chars && start == 0) {
+            return true;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != chars.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Get the entity type with a code
+     *
+     * @param code the code, which has been given to an entity type
+     * @return the entity type, which is the same String for every call with the same code
+     * @throws IllegalArgumentException if no entity type has the code
+     */
+    public static String name(int code) {
+        String[] names = snapshot.names;
+        if (code < 0 || code >= names.length) {
+            throw new IllegalArgumentException("No entity type has code " + code);
+        }
+        return names[code];
+    }
+}
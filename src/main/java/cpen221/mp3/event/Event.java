@@ -14,6 +14,11 @@ public interface Event {
     // returns the entity type of the event
     String getEntityType();
 
+    // returns the code of the entity type of the event in EntityTypes
+    default int getEntityTypeCode() {
+        return EntityTypes.code(getEntityType());
+    }
+
     // returns the double value of the event if available
     // returns -1 if the event does not have a double value
     double getValueDouble();
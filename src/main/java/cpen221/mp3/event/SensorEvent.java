@@ -1,11 +1,13 @@
 package cpen221.mp3.event;
 
+import java.util.Objects;
+
 public class SensorEvent implements Event {
 
     private double timeStamp;
     private int clientId;
     private int entityId;
-    private String entityType;
+    private int entityTypeCode;
     private double value;
 
 
@@ -17,7 +19,21 @@ public class SensorEvent implements Event {
         this.timeStamp = TimeStamp;
         this.clientId = ClientId;
         this.entityId = EntityId;
-        this.entityType = EntityType;
+        this.entityTypeCode = EntityTypes.code(EntityType);
+        this.value = Value;
+    }
+
+    // the entity type is given by its code in EntityTypes, which must have been given to
+    // an entity type, so that events of the same type do not each need their own String
+    public SensorEvent(double TimeStamp,
+                       int ClientId,
+                       int EntityId,
+                       int EntityTypeCode,
+                       double Value) {
+        this.timeStamp = TimeStamp;
+        this.clientId = ClientId;
+        this.entityId = EntityId;
+        this.entityTypeCode = EntityTypeCode;
         this.value = Value;
     }
 
@@ -34,7 +50,11 @@ public class SensorEvent implements Event {
     }
 
     public String getEntityType() {
-        return this.entityType;
+        return EntityTypes.name(this.entityTypeCode);
+    }
+
+    public int getEntityTypeCode() {
+        return this.entityTypeCode;
     }
 
     public double getValueDouble() {
@@ -47,13 +67,33 @@ public class SensorEvent implements Event {
         return false;
     }
 
+    // events are equal if all their fields are equal, so an event rebuilt from stored fields
+    // is equal to the event it was stored from
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof SensorEvent)) {
+            return false;
+        }
+        SensorEvent that = (SensorEvent) other;
+        return Double.compare(timeStamp, that.timeStamp) == 0
+                && clientId == that.clientId
+                && entityId == that.entityId
+                && entityTypeCode == that.entityTypeCode
+                && Double.compare(value, that.value) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(timeStamp, clientId, entityId, getEntityType(), value);
+    }
+
     @Override
     public String toString() {
         return "SensorEvent: {" +
                 "timeStamp=" + timeStamp +
                 ", clientId=" + clientId +
                 ", entityId=" + entityId +
-                ", entityType=" + entityType +
+                ", entityType=" + getEntityType() +
                 ", value=" + value +
                 '}';
     }
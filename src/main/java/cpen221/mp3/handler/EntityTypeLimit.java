@@ -0,0 +1,87 @@
+package cpen221.mp3.handler;
+
+import cpen221.mp3.event.EntityTypes;
+
+import java.util.Arrays;
+
+class EntityTypeLimit {
+    private final int maxTypes;
+    private int acceptedCount;
+    private volatile boolean[] accepted;
+
+    /*
+    Abstraction Function:
+    Represents the entity types that one MessageHandler accepts in the messages it receives. The codes in
+    EntityTypes are shared by the whole program and can never be taken back, so a type that a MessageHandler
+    has not seen before is only given a code if the MessageHandler has accepted fewer than maxTypes types,
+    and the messages with any other new type are rejected. The type with code c has been accepted iff
+    c < accepted.length and accepted[c] is true, and acceptedCount types have been accepted.
+
+    Representation Invariant:
+    - maxTypes > 0
+    - accepted is not null
+    - acceptedCount is the number of true elements of accepted, and acceptedCount <= maxTypes
+
+    Thread Safety Arguments:
+    - new types are accepted while holding the lock of the EntityTypeLimit, which builds a new array and
+      publishes it through the volatile field accepted, so readers find the accepted types without locking
+     */
+
+    /** Create a new EntityTypeLimit that has not accepted any entity types yet
+     *
+     * @param maxTypes the max number of entity types to accept, > 0
+     */
+    EntityTypeLimit(int maxTypes) {
+        if (maxTypes <= 0) {
+            throw new IllegalArgumentException("At least one entity type must be accepted");
+        }
+        this.maxTypes = maxTypes;
+        this.acceptedCount = 0;
+        this.accepted = new boolean[0];
+    }
+
+    /** Get the code in EntityTypes of an entity type, accepting it if it has not been accepted yet
+     *
+     * @param entityType the entity type, is not null
+     * @return the code of the entity type
+     * @throws IllegalArgumentException if the entity type has not been accepted, and maxTypes entity types
+     *                                  already have been
+     */
+    int code(String entityType) {
+        return code(entityType, 0, entityType.length());
+    }
+
+    /** Get the code in EntityTypes of the entity type made of a range of characters, accepting it if it has
+     *  not been accepted yet
+     *
+     * @param chars the characters, is not null
+     * @param start the index of the first character of the entity type, 0 <= start <= end
+     * @param end the index after the last character of the entity type, end <= chars.length()
+     * @return the code of the entity type
+     * @throws IllegalArgumentException if the entity type has not been accepted, and maxTypes entity types
+     *                                  already have been
+     */
+    int code(CharSequence chars, int start, int end) {
+        int code = EntityTypes.existingCode(chars, start, end);
+        boolean[] current = accepted;
+        if (code >= 0 && code < current.length && current[code]) {
+            return code;
+        }
+        synchronized (this) {
+            code = EntityTypes.existingCode(chars, start, end);
+            current = accepted;
+            if (code >= 0 && code < current.length && current[code]) {
+                return code;
+            }
+            if (acceptedCount == maxTypes) {
+                throw new IllegalArgumentException("No more than " + maxTypes + " entity types are accepted");
+            }
+            code = EntityTypes.code(chars, start, end);
+            boolean[] next = Arrays.copyOf(current, Math.max(current.length, code + 1));
+            next[code] = true;
+            acceptedCount++;
+            accepted = next;
+            return code;
+        }
+    }
+}
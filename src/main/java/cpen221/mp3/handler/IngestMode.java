@@ -0,0 +1,7 @@
+package cpen221.mp3.handler;
+
+public enum IngestMode {
+    PLATFORM_THREADS,
+    VIRTUAL_THREADS,
+    NIO_SELECTOR
+}
@@ -1,42 +1,73 @@
 package cpen221.mp3.handler;
 
 import cpen221.mp3.client.Request;
+import cpen221.mp3.util.VirtualThreads;
 import cpen221.mp3.event.Event;
 import cpen221.mp3.server.*;
 
+import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.PriorityBlockingQueue;
 
 public class MessageHandler {
+    // the max number of distinct entity types that a MessageHandler accepts from its connections
+    public static final int MAX_ENTITY_TYPES = 1024;
+
     private ServerSocket serverSocket;
     private int port;
     public ConcurrentHashMap<Integer, Server> serverMap;
-    public PriorityBlockingQueue<MessageHandlerEvent> messagePriorityQueue;
+    final MessageScheduler[] messageSchedulers;
     public ConcurrentHashMap<Integer, Double> waitTime;
+    private final IngestMode ingestMode;
+    private final int reactorThreads;
+    final EntityTypeLimit entityTypes;
+    private volatile Path eventLogDirectory = null;
+    private volatile int hotEvents = 0;
+    private volatile boolean stopped = false;
+    private volatile Thread[] dispatchers = new Thread[0];
+    private volatile SelectorIngest selectorIngest = null;
 
     /*
     Abstraction Function:
     Represents the network side interface that is the first place that incoming Requests/Events are received.
     The MessageHandler starts MessageHandlerThreads which concurrently handle incoming Requests/Events.
 
+    Each Client is pinned to one of the messageSchedulers, and each scheduler has its own dispatcher thread,
+    so the messages of a single Client are processed in order while different Clients are processed in parallel.
+    The ingestMode determines whether the accept loop and the MessageHandlerThreads run on platform threads or
+    virtual threads, or whether connections are read without blocking by reactorThreads threads of a SelectorIngest.
+    The entity types of the Events that are received are limited by entityTypes, so that the connections cannot use
+    up the entity type codes of the whole program.
+
     Representation Invariant:
     - waitTime is not null
-    - messagePriorityQueue is not null
+    - messageSchedulers is not null, has at least one element, and contains no null elements
     - serverMap is not null
+    - ingestMode is not null
+    - entityTypes is not null
+    - reactorThreads > 0
+    - if eventLogDirectory is not null, hotEvents >= 2
 
     Thread Safety Arguments:
     - Everything that is shared between threads is thread safe:
     - - waitTime is thread safe because it is a ConcurrentHashMap
-    - - messagePriorityQueue is thread safe because it is a PriorityBlockingQueue. Even though items get removed from
-        it inside MessageHandler, that does not interfere with other threads adding to it, since other threads do not
-        care if anything gets removed. Between all the threads, it is guaranteed that every item that has to be added
-        to the queue is always added. It is also guaranteed that every item that has to be removed from the queue, to
-        either be processed, or to be modified and inserted back into the queue, can be removed without issue.
+    - - each of the messageSchedulers is thread safe because every access to its queues is guarded by its lock. Even
+        though items get removed from it inside MessageHandler, that does not interfere with other threads adding to it,
+        since other threads do not care if anything gets removed. Each dispatcher thread parks on its scheduler until
+        the earliest message is due, and is woken up early whenever a message that is due sooner is added.
+    - - every Server is only used by the dispatcher thread of the scheduler that its Client is pinned to, so no Server
+        is ever used by two dispatcher threads at the same time
     - - serverMap is thread safe because it is a ConcurrentHashMap
+    - - entityTypes is thread safe, as argued in EntityTypeLimit
+    - - eventLogDirectory and hotEvents are volatile, and are only set before the MessageHandler is started
+    - - stopped, dispatchers and selectorIngest are volatile. The dispatchers are joined before the Servers
+        are closed, so no Server is closed while a dispatcher thread is using it
      */
 
     /** Create a new MessageHandler that will handle incoming Requests/Events from the given port.
@@ -44,10 +75,61 @@ public class MessageHandler {
      * @param port the port number that the MessageHandler will listen to for incoming Requests/Events
      */
     public MessageHandler(int port) {
+        this(port, Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Create a new MessageHandler that will handle incoming Requests/Events from the given port,
+     *  processing the Requests/Events of different Clients on the given number of dispatcher threads.
+     *
+     * @param port the port number that the MessageHandler will listen to for incoming Requests/Events
+     * @param dispatcherThreads the number of threads that process Requests/Events, > 0
+     */
+    public MessageHandler(int port, int dispatcherThreads) {
+        this(port, dispatcherThreads, IngestMode.PLATFORM_THREADS);
+    }
+
+    /** Create a new MessageHandler that will handle incoming Requests/Events from the given port,
+     *  processing the Requests/Events of different Clients on the given number of dispatcher threads,
+     *  and reading from connections in the given IngestMode.
+     *
+     * @param port the port number that the MessageHandler will listen to for incoming Requests/Events
+     * @param dispatcherThreads the number of threads that process Requests/Events, > 0
+     * @param ingestMode how connections are read from, is not null:
+     *                   - IngestMode.PLATFORM_THREADS reads every connection on its own platform thread
+     *                   - IngestMode.VIRTUAL_THREADS reads every connection on its own virtual thread,
+     *                     if the JVM supports virtual threads (Java 21 or later)
+     *                   - IngestMode.NIO_SELECTOR reads all connections without blocking on a few reactor threads
+     */
+    public MessageHandler(int port, int dispatcherThreads, IngestMode ingestMode) {
+        this(port, dispatcherThreads, ingestMode, Math.max(2, Runtime.getRuntime().availableProcessors() / 4));
+    }
+
+    /** Create a new MessageHandler that will handle incoming Requests/Events from the given port,
+     *  processing the Requests/Events of different Clients on the given number of dispatcher threads,
+     *  and reading from connections in the given IngestMode.
+     *
+     * @param port the port number that the MessageHandler will listen to for incoming Requests/Events
+     * @param dispatcherThreads the number of threads that process Requests/Events, > 0
+     * @param ingestMode how connections are read from, is not null
+     * @param reactorThreads the number of threads that read from connections in IngestMode.NIO_SELECTOR, > 0
+     */
+    public MessageHandler(int port, int dispatcherThreads, IngestMode ingestMode, int reactorThreads) {
+        if (dispatcherThreads <= 0) {
+            throw new IllegalArgumentException("The number of dispatcher threads must be positive");
+        }
+        if (reactorThreads <= 0) {
+            throw new IllegalArgumentException("The number of reactor threads must be positive");
+        }
         this.port = port;
         this.serverMap = new ConcurrentHashMap<>();
-        this.messagePriorityQueue = new PriorityBlockingQueue<>(1000000,Comparator.comparing(MessageHandlerEvent::getExpirationTimestamp));
+        this.messageSchedulers = new MessageScheduler[dispatcherThreads];
+        for (int i = 0; i < dispatcherThreads; i++) {
+            this.messageSchedulers[i] = new MessageScheduler();
+        }
         this.waitTime = new ConcurrentHashMap<>();
+        this.ingestMode = ingestMode;
+        this.reactorThreads = reactorThreads;
+        this.entityTypes = new EntityTypeLimit(MAX_ENTITY_TYPES);
     }
 
 
@@ -56,9 +138,16 @@ public class MessageHandler {
      * Please use the IP and port printed to the console for connecting Clients and Entities.
      */
     public void start() {
+        ServerSocketChannel serverChannel = null;
         for(;;) {
             try {
-                serverSocket = new ServerSocket(port);
+                if (ingestMode == IngestMode.NIO_SELECTOR) {
+                    serverChannel = ServerSocketChannel.open();
+                    serverChannel.bind(new InetSocketAddress(port));
+                    serverSocket = serverChannel.socket();
+                } else {
+                    serverSocket = new ServerSocket(port);
+                }
                 System.out.println("Server started on port " + serverSocket.getLocalPort() + " from IP "+ InetAddress.getLocalHost().getHostAddress());
                 port = serverSocket.getLocalPort();
                 break;
@@ -68,73 +157,179 @@ public class MessageHandler {
             }
         }
 
-        (new Thread(() -> {
-            for (;;) {
+        Thread[] dispatchers = new Thread[messageSchedulers.length];
+        for (int i = 0; i < messageSchedulers.length; i++) {
+            MessageScheduler messageScheduler = messageSchedulers[i];
+            dispatchers[i] = new Thread(() -> dispatch(messageScheduler));
+            dispatchers[i].start();
+        }
+        this.dispatchers = dispatchers;
+
+        if (ingestMode == IngestMode.NIO_SELECTOR) {
+            try {
+                selectorIngest = new SelectorIngest(serverChannel, this, reactorThreads);
+                selectorIngest.start();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            return;
+        }
+
+        boolean virtual = ingestMode == IngestMode.VIRTUAL_THREADS;
+        VirtualThreads.start(() -> {
+            while (!stopped) {
                 try {
                     Socket incomingSocket = serverSocket.accept();
                     System.out.println("Client/Entity connected: " + incomingSocket.getInetAddress().getHostAddress());
                     // create a new thread to handle the client request or entity event
-                    Thread handlerThread = new Thread(new MessageHandlerThread(incomingSocket, this));
-                    handlerThread.start();
+                    VirtualThreads.start(new MessageHandlerThread(incomingSocket, this), virtual);
                 } catch (Exception e) {
-                    e.printStackTrace();
+                    if (!stopped) {
+                        e.printStackTrace();
+                    }
                 }
             }
-        })).start();
-        (new Thread(() -> {
-            for(;;){
-                try {
-                    double currentTime = System.currentTimeMillis();
-                    MessageHandlerEvent nextMessage = messagePriorityQueue.take();
-                    int clientID = nextMessage.clientID;
-
-                    Server nextServer = serverMap.get(clientID);
-                    double waitTime = nextServer.getMaxWaitTime();
-                    double previousWaitTime = this.waitTime.get(clientID);
-
-                    //if next event is due soon
-                    if (nextMessage.expirationTimestamp - currentTime < previousWaitTime * 500) {
-                        if (!nextMessage.isEvent) System.out.println("Time is " + System.currentTimeMillis() + " processing server=" +nextMessage.clientID + " with command " + nextMessage.request.getRequestCommand());
-
-                        if (nextMessage.isEvent) {
-                            double eventTimestamp = nextMessage.event.getTimeStamp();
-                            List<MessageHandlerEvent> earlierEvents = messagePriorityQueue.stream().filter(handlerMessage -> {
-                                return handlerMessage.clientID == clientID && handlerMessage.isEvent && handlerMessage.event.getTimeStamp() <= eventTimestamp;
-                            }).toList();
-
-                            //process them
-                            if (!earlierEvents.isEmpty()) {
-                                for (MessageHandlerEvent handlerMessage : earlierEvents) {
-                                    messagePriorityQueue.remove(handlerMessage);
-                                    nextServer.processInput(handlerMessage.event, handlerMessage.request, handlerMessage.returnSocketInfo);
-                                }
-                            }
-                        }
-                        nextServer.processInput(nextMessage.event, nextMessage.request, nextMessage.returnSocketInfo);
-
-
-                        if (previousWaitTime != waitTime) {
-                            this.waitTime.put(clientID, waitTime);
-                            List<MessageHandlerEvent> toModify = messagePriorityQueue.stream().filter(handlerMessage -> {
-                                return handlerMessage.clientID == clientID;
-                            }).toList();
-
-                            for (MessageHandlerEvent handlerMessage : toModify) {
-                                messagePriorityQueue.remove(handlerMessage);
-                                handlerMessage.expirationTimestamp = handlerMessage.timestamp + waitTime*1000;
-                                messagePriorityQueue.add(handlerMessage);
-                            }
-
-                        }
-                    } else {
-                        messagePriorityQueue.add(nextMessage);
+        }, virtual);
+    }
+
+    /**
+     * Stops the MessageHandler: stops accepting connections and processing Requests/Events, and closes
+     * every Server, which deletes the files of the event logs of their Clients. The messages that have not
+     * been processed yet are dropped, and the MessageHandler cannot be started again.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the dispatchers
+     */
+    public void stop() throws InterruptedException {
+        stopped = true;
+        if (selectorIngest != null) {
+            selectorIngest.stop();
+        }
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        for (Thread dispatcher : dispatchers) {
+            dispatcher.interrupt();
+        }
+        for (Thread dispatcher : dispatchers) {
+            dispatcher.join();
+        }
+        for (Server server : serverMap.values()) {
+            server.close();
+        }
+    }
+
+    /** Get the scheduler that the messages of a Client are dispatched from
+     *
+     * @param clientID the ID of the Client
+     * @return the scheduler that the Client is pinned to
+     */
+    MessageScheduler schedulerFor(int clientID) {
+        return messageSchedulers[Math.floorMod(clientID, messageSchedulers.length)];
+    }
+
+    /** Schedule messages that were received together. The messages of all Clients that are pinned to the
+     *  same scheduler are added to it at once.
+     *
+     * @param messages the messages to schedule, in the order they were received, is not null
+     */
+    void schedule(List<MessageHandlerEvent> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        MessageScheduler first = schedulerFor(messages.get(0).clientID);
+        boolean sameScheduler = true;
+        for (MessageHandlerEvent message : messages) {
+            if (schedulerFor(message.clientID) != first) {
+                sameScheduler = false;
+                break;
+            }
+        }
+        if (sameScheduler) {
+            first.addAll(messages);
+            return;
+        }
+        Map<MessageScheduler, List<MessageHandlerEvent>> bySchedulers = new LinkedHashMap<>();
+        for (MessageHandlerEvent message : messages) {
+            bySchedulers.computeIfAbsent(schedulerFor(message.clientID), scheduler -> new ArrayList<>()).add(message);
+        }
+        for (Map.Entry<MessageScheduler, List<MessageHandlerEvent>> entry : bySchedulers.entrySet()) {
+            entry.getKey().addAll(entry.getValue());
+        }
+    }
+
+    /** Dispatch the messages of a scheduler to their Servers as they become due, until the MessageHandler
+     *  is stopped.
+     *
+     * @param messageScheduler the scheduler to dispatch messages from, is not null
+     */
+    private void dispatch(MessageScheduler messageScheduler) {
+        while (!stopped) {
+            try {
+                MessageHandlerEvent nextMessage = messageScheduler.take();
+                int clientID = nextMessage.clientID;
+
+                Server nextServer = serverMap.get(clientID);
+                double waitTime = nextServer.getMaxWaitTime();
+                double previousWaitTime = this.waitTime.get(clientID);
+
+                if (!nextMessage.isEvent) System.out.println("Time is " + System.currentTimeMillis() + " processing server=" +nextMessage.clientID + " with command " + nextMessage.request.getRequestCommand());
+
+                if (nextMessage.isEvent) {
+                    double eventTimestamp = nextMessage.event.getTimeStamp();
+                    //process earlier events of the same client first
+                    for (MessageHandlerEvent handlerMessage : messageScheduler.removeEarlierEvents(clientID, eventTimestamp)) {
+                        nextServer.processInput(handlerMessage.event, handlerMessage.request, handlerMessage.returnSocketInfo);
                     }
-                } catch (InterruptedException e) {
+                }
+                nextServer.processInput(nextMessage.event, nextMessage.request, nextMessage.returnSocketInfo);
+
+                if (previousWaitTime != waitTime) {
+                    this.waitTime.put(clientID, waitTime);
+                    messageScheduler.reschedule(clientID, waitTime);
+                }
+            } catch (InterruptedException e) {
+                if (!stopped) {
                     throw new RuntimeException(e);
                 }
             }
-        })).start();
+        }
+    }
+
+    /** Make every Server created from now on keep only the latest events of its Client in the heap, and
+     *  move the older events into a log of memory-mapped files in its own subdirectory of the given
+     *  directory. Must be called before the MessageHandler is started.
+     *
+     * @param directory the directory to keep the logs of the Clients in, is not null
+     * @param hotEvents the max number of latest events of each Client to keep in the heap, >= 2
+     */
+    public void useEventLogs(Path directory, int hotEvents) {
+        if (hotEvents < 2) {
+            throw new IllegalArgumentException("At least 2 events must be kept in the heap");
+        }
+        this.hotEvents = hotEvents;
+        this.eventLogDirectory = directory;
+    }
+
+    /** Get the directory of the log of a Client
+     *
+     * @param clientID the id of the Client
+     * @return the directory to keep the log of the Client in, or null if events are kept in the heap
+     */
+    Path getEventLogDirectory(int clientID) {
+        Path directory = eventLogDirectory;
+        return directory == null ? null : directory.resolve("client-" + clientID);
+    }
 
+    /** Get the max number of latest events of each Client to keep in the heap when they have logs
+     *
+     * @return the max number of latest events of each Client to keep in the heap
+     */
+    int getHotEvents() {
+        return hotEvents;
     }
 
     /** Get the port number of the MessageHandler
@@ -11,6 +11,7 @@ public class MessageHandlerEvent {
     Request request;
     int clientID;
     double timestamp;
+    long sequence;
 
     /*
     Abstraction Function:
@@ -64,4 +65,13 @@ public class MessageHandlerEvent {
         return expirationTimestamp;
     }
 
+    /** Get the time at which this MessageHandlerEvent is due to be dispatched to its Server,
+     *  which is halfway between the time it was received and its expiration timestamp.
+     *
+     * @return the dispatch timestamp of this MessageHandlerEvent
+     */
+    public double getDispatchTimestamp() {
+        return timestamp + (expirationTimestamp - timestamp) / 2;
+    }
+
 }
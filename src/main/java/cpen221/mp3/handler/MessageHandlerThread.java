@@ -1,33 +1,52 @@
 package cpen221.mp3.handler;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Objects;
+import java.util.List;
 
 import cpen221.mp3.client.Client;
 import cpen221.mp3.client.Request;
 import cpen221.mp3.client.RequestCommand;
 import cpen221.mp3.client.RequestType;
 import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.BinaryEventFormat;
+import cpen221.mp3.event.BinaryEventReader;
 import cpen221.mp3.event.Event;
 import cpen221.mp3.event.SensorEvent;
 import cpen221.mp3.server.*;
 
 class MessageHandlerThread implements Runnable {
+    private static final int MAX_BATCH_SIZE = 1024;
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final RequestType[] REQUEST_TYPES = RequestType.values();
+    private static final RequestCommand[] REQUEST_COMMANDS = RequestCommand.values();
+
     private final Socket incomingSocket;
     private final MessageHandler messageHandler;
+    private final WireParser parser;
 
     /*
     Abstraction Function:
     Represents a thread that the messageHandler has created to handle and process incoming Requests/Events from a socket.
+    If the first byte read from the socket is BinaryEventFormat.MAGIC, the socket sends Events in the binary format,
+    otherwise it sends Requests/Events as lines of text. A SENSOR_BATCH or ACTUATOR_BATCH line holds several Events
+    of one entity, one after the other. The bytes that have arrived are read into a buffer, and the messages of every
+    complete line or frame in it are scheduled together, up to MAX_BATCH_SIZE messages at a time, before waiting for
+    more bytes. A line or frame that has only partly arrived stays in the buffer until the rest of it arrives.
 
     Representation Invariant:
     - incomingSocket is not null
     - messageHandler is not null
+    - parser is not null
      */
 
     /** Create a new MessageHandlerThread that will handle incoming Requests/Events from the given socket.
@@ -39,113 +58,294 @@ class MessageHandlerThread implements Runnable {
     public MessageHandlerThread(Socket incomingSocket, MessageHandler messageHandler) {
         this.messageHandler = messageHandler;
         this.incomingSocket = incomingSocket;
+        this.parser = new WireParser();
     }
 
     @Override
     public void run() {
         System.out.println("handling socket");
+        List<MessageHandlerEvent> batch = new ArrayList<>();
         try {
-            //PrintWriter out = new PrintWriter(new OutputStreamWriter(incomingSocket.getOutputStream()));
-            BufferedReader in  = new BufferedReader(new InputStreamReader(incomingSocket.getInputStream()));
-            while (!incomingSocket.isClosed()) {
-                String nextLine = in.readLine();
-                processMessage(nextLine, System.currentTimeMillis());
+            InputStream input = incomingSocket.getInputStream();
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            int end = input.read(buffer);
+            if (end < 0) {
+                return;
+            }
+            if ((buffer[0] & 0xff) == BinaryEventFormat.MAGIC) {
+                readBinaryFrames(input, buffer, 1, end, batch);
+            } else {
+                readLines(input, buffer, end, batch);
             }
-
-            // implement the Server constructor
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            // the messages that were read before the connection failed are still processed
+            messageHandler.schedule(batch);
         }
-        // handle the client request or entity event here
-        // and deal with exceptions if needed
     }
 
-    /** Takes a line of input from the message of the socket in the form of a string as well as when
-     *  the message was received by the MessageHandler, and  processes it
+    /** Process a line of input from the socket, reporting any error in it
      *
      * @param line the line of input from the socket, is not null
-     * @param receiveTime the time at which the message was received by the MessageHandler, is not null
-     * @throws UnknownHostException if the local host name could not be resolved into an address
+     * @param receiveTime the time at which the line was received
+     * @param batch the list to add the messages in the line to, is not null
      */
-    private void processMessage(String line, double receiveTime) throws UnknownHostException {
+    private void processLine(String line, double receiveTime, List<MessageHandlerEvent> batch) {
+        try {
+            processMessage(messageHandler, parser, line, receiveTime, batch);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
 
-        String[] parts = line.split("<\\(\\)>");
-        String name = parts[0];
-        int clientID = Integer.parseInt(parts[1]);
-        String dataline = parts[2];
+    /** Schedule the messages in a batch, and empty it
+     *
+     * @param batch the messages to schedule, is not null
+     */
+    private void schedule(List<MessageHandlerEvent> batch) {
+        messageHandler.schedule(batch);
+        batch.clear();
+    }
 
-        if (!messageHandler.serverMap.containsKey(clientID)) {
-            messageHandler.serverMap.putIfAbsent(clientID, new Server(new Client(clientID, clientID + "client@gmail.com", InetAddress.getLocalHost().getHostAddress(), messageHandler.getPort())));
-            messageHandler.waitTime.putIfAbsent(clientID, 2.0);
+    /** Read lines of UTF-8 text from the socket until it is closed. Every complete line in the bytes that
+     *  have arrived is processed, and the messages in them are scheduled before reading from the socket
+     *  again, so that no message waits for the rest of a line that has only partly arrived.
+     *
+     * @param input the stream of the socket, is not null
+     * @param buffer the buffer holding the first bytes read from the socket, is not null
+     * @param end the number of bytes in the buffer
+     * @param batch the list to collect the messages in, which is empty, is not null
+     * @throws IOException if reading from the socket fails, or the socket sent a line longer than MAX_LINE_LENGTH
+     */
+    private void readLines(InputStream input, byte[] buffer, int end, List<MessageHandlerEvent> batch) throws IOException {
+        int scanned = 0;
+        while (true) {
+            double receiveTime = System.currentTimeMillis();
+            int start = 0;
+            for (int i = scanned; i < end; i++) {
+                if (buffer[i] == '\n') {
+                    int lineEnd = i > start && buffer[i - 1] == '\r' ? i - 1 : i;
+                    processLine(new String(buffer, start, lineEnd - start, StandardCharsets.UTF_8), receiveTime, batch);
+                    start = i + 1;
+                    if (batch.size() >= MAX_BATCH_SIZE) {
+                        schedule(batch);
+                    }
+                }
+            }
+            schedule(batch);
+
+            // keep the partial line at the start of the buffer, and wait for the rest of it
+            end -= start;
+            System.arraycopy(buffer, start, buffer, 0, end);
+            scanned = end;
+            if (end == buffer.length) {
+                if (end >= MAX_LINE_LENGTH) {
+                    incomingSocket.close();
+                    throw new IOException("Closed a connection that sent a line longer than " + MAX_LINE_LENGTH + " bytes");
+                }
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            int read = input.read(buffer, end, buffer.length - end);
+            if (read < 0) {
+                return;
+            }
+            end += read;
         }
+    }
+
+    /** Read frames of the binary format from the socket until it is closed. Every complete frame in the
+     *  bytes that have arrived is processed, and the messages in them are scheduled before reading from
+     *  the socket again, so that no message waits for the rest of a frame that has only partly arrived.
+     *
+     * @param input the stream of the socket, is not null
+     * @param buffer the buffer holding the first bytes read from the socket, is not null
+     * @param start the position of the first byte after BinaryEventFormat.MAGIC in the buffer
+     * @param end the number of bytes in the buffer
+     * @param batch the list to collect the messages in, which is empty, is not null
+     * @throws IOException if reading from the socket fails, or the socket sent a frame with an invalid length
+     */
+    private void readBinaryFrames(InputStream input, byte[] buffer, int start, int end,
+                                  List<MessageHandlerEvent> batch) throws IOException {
+        BinaryEventReader reader = new BinaryEventReader(messageHandler.entityTypes::code);
+        while (true) {
+            double receiveTime = System.currentTimeMillis();
+            while (end - start >= Integer.BYTES) {
+                int length = ByteBuffer.wrap(buffer, start, Integer.BYTES).getInt();
+                if (length <= 0 || length > BinaryEventFormat.MAX_FRAME_LENGTH) {
+                    incomingSocket.close();
+                    throw new IOException("Closed a connection that sent a frame of " + length + " bytes");
+                }
+                if (end - start < Integer.BYTES + length) {
+                    if (Integer.BYTES + length > buffer.length) {
+                        buffer = Arrays.copyOf(buffer, Math.max(Integer.BYTES + length, buffer.length * 2));
+                    }
+                    break;
+                }
+                try {
+                    processFrame(messageHandler, reader, ByteBuffer.wrap(buffer, start + Integer.BYTES, length),
+                            receiveTime, batch);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                start += Integer.BYTES + length;
+                if (batch.size() >= MAX_BATCH_SIZE) {
+                    schedule(batch);
+                }
+            }
+            schedule(batch);
 
-        Server server = messageHandler.serverMap.get(clientID);
-        String[] returnSocketInfo = null;
-        if (parts.length > 3) {
-            returnSocketInfo = parts[3].split("/");
+            // keep the partial frame at the start of the buffer, and wait for the rest of it
+            end -= start;
+            System.arraycopy(buffer, start, buffer, 0, end);
+            start = 0;
+            int read = input.read(buffer, end, buffer.length - end);
+            if (read < 0) {
+                return;
+            }
+            end += read;
         }
+    }
 
-        String[] split = line.split("[{}]");
-        String[] fields = split[1].split(",");
-        String[] values = new String[5];
-        for (int i = 0; i < fields.length; i++) {
-            try {
-                values[i] = fields[i].trim().split("=")[1].trim();
-            } catch (Exception e) {
-                values[i] = "";
+    /** Takes a frame of the binary format from a socket as well as when the frame was received
+     *  by the MessageHandler, and processes it
+     *
+     * @param messageHandler the MessageHandler that received the frame, is not null
+     * @param reader the BinaryEventReader of the connection that the frame was received on, is not null
+     * @param frame the payload of the frame, from its position to its limit, is not null
+     * @param receiveTime the time at which the frame was received by the MessageHandler
+     * @param batch the list to add the message in the frame to, for the caller to schedule, is not null
+     * @throws UnknownHostException if the local host name could not be resolved into an address
+     */
+    static void processFrame(MessageHandler messageHandler, BinaryEventReader reader, ByteBuffer frame, double receiveTime,
+                             List<MessageHandlerEvent> batch) throws UnknownHostException {
+        if (!reader.readFrame(frame)) {
+            return;
+        }
+        int clientID = reader.getClientId();
+        double waitTimeMS = registerClient(messageHandler, clientID);
+        batch.add(new MessageHandlerEvent(reader.getEvent(), reader.getReturnSocketInfo(),
+                receiveTime + waitTimeMS, clientID, receiveTime));
+    }
+
+    /** Create a Server for a Client if the MessageHandler does not have one yet
+     *
+     * @param messageHandler the MessageHandler that received a message for the Client, is not null
+     * @param clientID the id of the Client
+     * @return the max wait time of the Client in milliseconds
+     * @throws UnknownHostException if the local host name could not be resolved into an address
+     */
+    private static double registerClient(MessageHandler messageHandler, int clientID) throws UnknownHostException {
+        if (!messageHandler.serverMap.containsKey(clientID)) {
+            Server server = new Server(new Client(clientID, clientID + "client@gmail.com", InetAddress.getLocalHost().getHostAddress(), messageHandler.getPort()));
+            Path logDirectory = messageHandler.getEventLogDirectory(clientID);
+            if (logDirectory != null) {
+                try {
+                    server.useEventLog(logDirectory, messageHandler.getHotEvents());
+                } catch (IOException e) {
+                    // the Server keeps all the events of the Client in the heap instead
+                    e.printStackTrace();
+                }
+            }
+            if (messageHandler.serverMap.putIfAbsent(clientID, server) != null) {
+                // another thread registered the Client first, and this log has not created any files
+                server.closeEventLog();
             }
+            messageHandler.waitTime.putIfAbsent(clientID, 2.0);
         }
+        return messageHandler.waitTime.get(clientID)*1000;
+    }
+
+    /** Takes a line of input from the message of the socket as well as when the message was received
+     *  by the MessageHandler, and  processes it
+     *
+     * @param messageHandler the MessageHandler that received the message, is not null
+     * @param parser the WireParser of the thread that received the message, is not null
+     * @param line the line of input from the socket, is not null
+     * @param receiveTime the time at which the message was received by the MessageHandler, is not null
+     * @param batch the list to add the messages in the line to, for the caller to schedule, is not null
+     * @throws UnknownHostException if the local host name could not be resolved into an address
+     */
+    static void processMessage(MessageHandler messageHandler, WireParser parser, CharSequence line, double receiveTime,
+                               List<MessageHandlerEvent> batch) throws UnknownHostException {
+        parser.parse(line);
+        int clientID = parser.getClientId();
+        double waitTimeMS = registerClient(messageHandler, clientID);
+
+        String[] returnSocketInfo = parser.getReturnSocketInfo();
 
         MessageHandlerEvent nextHandlerMessage = null;
-        double waitTimeMS = messageHandler.waitTime.get(clientID)*1000;
-        if (Objects.equals(name, "CLIENT")) {
-            RequestType rt;
-            RequestCommand rc;
-
-            rt = switch (values[1]) {
-                case "CONFIG" -> RequestType.CONFIG;
-                case "CONTROL" -> RequestType.CONTROL;
-                case "ANALYSIS" -> RequestType.ANALYSIS;
-                case "PREDICT" -> RequestType.PREDICT;
-                default -> throw new RuntimeException(values[0] + " is not a correct RequestType");
-            };
-            rc = switch (values[2]) {
-                case "CONFIG_UPDATE_MAX_WAIT_TIME" -> RequestCommand.CONFIG_UPDATE_MAX_WAIT_TIME;
-                case "CONTROL_SET_ACTUATOR_STATE" -> RequestCommand.CONTROL_SET_ACTUATOR_STATE;
-                case "CONTROL_TOGGLE_ACTUATOR_STATE" -> RequestCommand.CONTROL_TOGGLE_ACTUATOR_STATE;
-                case "CONTROL_NOTIFY_IF" -> RequestCommand.CONTROL_NOTIFY_IF;
-                case "ANALYSIS_GET_EVENTS_IN_WINDOW" -> RequestCommand.ANALYSIS_GET_EVENTS_IN_WINDOW;
-                case "ANALYSIS_GET_ALL_ENTITIES" -> RequestCommand.ANALYSIS_GET_ALL_ENTITIES;
-                case "ANALYSIS_GET_LATEST_EVENTS" -> RequestCommand.ANALYSIS_GET_LATEST_EVENTS;
-                case "ANALYSIS_GET_MOST_ACTIVE_ENTITY" -> RequestCommand.ANALYSIS_GET_MOST_ACTIVE_ENTITY;
-                case "PREDICT_NEXT_N_TIMESTAMPS" -> RequestCommand.PREDICT_NEXT_N_TIMESTAMPS;
-                case "PREDICT_NEXT_N_VALUES" -> RequestCommand.PREDICT_NEXT_N_VALUES;
-                default -> throw new RuntimeException(values[1] + " is not a correct RequestCommand");
-            };
-            nextHandlerMessage = new MessageHandlerEvent(new Request(rt, rc, values[3]), returnSocketInfo, receiveTime + waitTimeMS, clientID, receiveTime);
-        } else if (Objects.equals(name, "SENSOR")){
-            Event nextEvent = new SensorEvent(
-                    Double.parseDouble(values[0]),
-                    Integer.parseInt(values[1]),
-                    Integer.parseInt(values[2]),
-                    values[3],
-                    Double.parseDouble(values[4])
-            );
-            nextHandlerMessage = new MessageHandlerEvent(nextEvent, returnSocketInfo, receiveTime + waitTimeMS, clientID, receiveTime);
-        } else if (Objects.equals(name, "ACTUATOR")) {
-            Event nextEvent = new ActuatorEvent(
-                    Double.parseDouble(values[0]),
-                    Integer.parseInt(values[1]),
-                    Integer.parseInt(values[2]),
-                    values[3],
-                    Boolean.parseBoolean(values[4])
-            );
-            nextHandlerMessage = new MessageHandlerEvent(nextEvent, returnSocketInfo, receiveTime + waitTimeMS, clientID, receiveTime);
+        if (parser.nameIs("CLIENT")) {
+            RequestType rt = null;
+            RequestCommand rc = null;
+
+            for (RequestType requestType : REQUEST_TYPES) {
+                if (parser.valueIs(1, requestType.name())) {
+                    rt = requestType;
+                }
+            }
+            if (rt == null) {
+                throw new RuntimeException(parser.getString(1) + " is not a correct RequestType");
+            }
+            for (RequestCommand requestCommand : REQUEST_COMMANDS) {
+                if (parser.valueIs(2, requestCommand.name())) {
+                    rc = requestCommand;
+                }
+            }
+            if (rc == null) {
+                throw new RuntimeException(parser.getString(2) + " is not a correct RequestCommand");
+            }
+            nextHandlerMessage = new MessageHandlerEvent(new Request(rt, rc, parser.getString(3)), returnSocketInfo, receiveTime + waitTimeMS, clientID, receiveTime);
+        } else if (parser.nameIs("SENSOR")){
+            nextHandlerMessage = new MessageHandlerEvent(sensorEvent(parser, messageHandler.entityTypes), returnSocketInfo, receiveTime + waitTimeMS, clientID, receiveTime);
+        } else if (parser.nameIs("ACTUATOR")) {
+            nextHandlerMessage = new MessageHandlerEvent(actuatorEvent(parser, messageHandler.entityTypes), returnSocketInfo, receiveTime + waitTimeMS, clientID, receiveTime);
+        } else if (parser.nameIs("SENSOR_BATCH") || parser.nameIs("ACTUATOR_BATCH")) {
+            boolean actuator = parser.nameIs("ACTUATOR_BATCH");
+            do {
+                Event nextEvent = actuator ? actuatorEvent(parser, messageHandler.entityTypes) : sensorEvent(parser, messageHandler.entityTypes);
+                batch.add(new MessageHandlerEvent(nextEvent, returnSocketInfo, receiveTime + waitTimeMS, clientID, receiveTime));
+            } while (parser.nextGroup());
+            return;
         } else {
             System.out.println("something went really wrong in MessageHandlerThread, it received a new message that is from neither an entity or a server");
             return;
         }
-        messageHandler.messagePriorityQueue.add(nextHandlerMessage);
+        batch.add(nextHandlerMessage);
 
     }
-}
\ No newline at end of file
+
+    /** Create a SensorEvent from the values between the current pair of braces of a parsed message
+     *
+     * @param parser the parser of the message, is not null
+     * @param entityTypes the entity types that the MessageHandler accepts, is not null
+     * @return the SensorEvent
+     * @throws IllegalArgumentException if the entity type of the event is not accepted
+     */
+    private static Event sensorEvent(WireParser parser, EntityTypeLimit entityTypes) {
+        return new SensorEvent(
+                parser.getDouble(0),
+                parser.getInt(1),
+                parser.getInt(2),
+                parser.getEntityTypeCode(3, entityTypes),
+                parser.getDouble(4)
+        );
+    }
+
+    /** Create an ActuatorEvent from the values between the current pair of braces of a parsed message
+     *
+     * @param parser the parser of the message, is not null
+     * @param entityTypes the entity types that the MessageHandler accepts, is not null
+     * @return the ActuatorEvent
+     * @throws IllegalArgumentException if the entity type of the event is not accepted
+     */
+    private static Event actuatorEvent(WireParser parser, EntityTypeLimit entityTypes) {
+        return new ActuatorEvent(
+                parser.getDouble(0),
+                parser.getInt(1),
+                parser.getInt(2),
+                parser.getEntityTypeCode(3, entityTypes),
+                parser.getBoolean(4)
+        );
+    }
+}
@@ -0,0 +1,242 @@
+package cpen221.mp3.handler;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+class MessageScheduler {
+    private static final Comparator<MessageHandlerEvent> BY_DISPATCH_TIME =
+            Comparator.comparingDouble(MessageHandlerEvent::getDispatchTimestamp)
+                    .thenComparingLong(message -> message.sequence);
+    private static final Comparator<MessageHandlerEvent> BY_EVENT_TIME =
+            Comparator.comparingDouble((MessageHandlerEvent message) -> message.event.getTimeStamp())
+                    .thenComparingLong(message -> message.sequence);
+
+    private final Map<Integer, ClientQueue> clientQueues;
+    private final TreeSet<ClientQueue> readyClients;
+    private final ReentrantLock lock;
+    private final Condition available;
+    private long nextSequence;
+    private int size;
+
+    /*
+    Abstraction Function:
+    Represents the messages that the MessageHandler has received but not yet dispatched to a Server,
+    partitioned by client. Each client has its own queue of messages ordered by the time at which each
+    message is due to be dispatched, and its own index of events ordered by event timestamp.
+    readyClients orders the clients by the dispatch time of their earliest message, so the earliest
+    message overall belongs to readyClients.first(). A thread that takes a message is parked until the
+    earliest message is due, so that no CPU is used while nothing is due.
+
+    Representation Invariant:
+    - clientQueues, readyClients, lock and available are not null
+    - readyClients contains exactly the client queues in clientQueues that have at least one message
+    - a message is in eventsByTime of its client queue iff it is in byDispatchTime and it is an event
+    - size is the total number of messages in all the client queues
+    - every message has a unique sequence number < nextSequence
+
+    Thread Safety Arguments:
+    - clientQueues, readyClients and every client queue are only read or modified while lock is held
+    - available is only awaited or signalled while lock is held, and it is signalled whenever the
+      earliest message overall may have changed, so a thread parked in take() re-checks how long it has to wait
+     */
+
+    private static class ClientQueue {
+        final int clientID;
+        final TreeSet<MessageHandlerEvent> byDispatchTime;
+        final TreeSet<MessageHandlerEvent> eventsByTime;
+
+        /** Create an empty queue for a client
+         *
+         * @param clientID the ID of the client
+         */
+        ClientQueue(int clientID) {
+            this.clientID = clientID;
+            this.byDispatchTime = new TreeSet<>(BY_DISPATCH_TIME);
+            this.eventsByTime = new TreeSet<>(BY_EVENT_TIME);
+        }
+    }
+
+    /** Create a new empty MessageScheduler
+     *
+     */
+    MessageScheduler() {
+        this.clientQueues = new HashMap<>();
+        this.readyClients = new TreeSet<>(Comparator
+                .comparing((ClientQueue queue) -> queue.byDispatchTime.first(), BY_DISPATCH_TIME)
+                .thenComparingInt(queue -> queue.clientID));
+        this.lock = new ReentrantLock();
+        this.available = lock.newCondition();
+        this.nextSequence = 0;
+        this.size = 0;
+    }
+
+    /** Schedule a message to be dispatched at its dispatch timestamp
+     *
+     * @param message the message to schedule, is not null
+     */
+    void add(MessageHandlerEvent message) {
+        lock.lock();
+        try {
+            boolean earliest = insert(message);
+            if (earliest) {
+                available.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Schedule several messages to be dispatched at their dispatch timestamps, taking the lock only once
+     *
+     * @param messages the messages to schedule, in the order they were received, is not null
+     */
+    void addAll(List<MessageHandlerEvent> messages) {
+        lock.lock();
+        try {
+            boolean earliest = false;
+            for (MessageHandlerEvent message : messages) {
+                earliest |= insert(message);
+            }
+            if (earliest) {
+                available.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Insert a message into the queue of its client. Must be called while lock is held.
+     *
+     * @param message the message to insert, is not null
+     * @return true if the message is now the earliest message overall, false otherwise
+     */
+    private boolean insert(MessageHandlerEvent message) {
+        message.sequence = nextSequence++;
+        ClientQueue queue = clientQueues.computeIfAbsent(message.clientID, ClientQueue::new);
+        if (!queue.byDispatchTime.isEmpty()) {
+            readyClients.remove(queue);
+        }
+        queue.byDispatchTime.add(message);
+        if (message.isEvent) {
+            queue.eventsByTime.add(message);
+        }
+        readyClients.add(queue);
+        size++;
+        return readyClients.first() == queue && queue.byDispatchTime.first() == message;
+    }
+
+    /** Remove the message with the earliest dispatch timestamp, waiting until it is due.
+     *
+     * @return the message with the earliest dispatch timestamp, once it is due
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    MessageHandlerEvent take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            for (;;) {
+                if (readyClients.isEmpty()) {
+                    available.await();
+                    continue;
+                }
+                ClientQueue queue = readyClients.first();
+                MessageHandlerEvent first = queue.byDispatchTime.first();
+                double delayMillis = first.getDispatchTimestamp() - System.currentTimeMillis();
+                if (delayMillis <= 0) {
+                    readyClients.pollFirst();
+                    queue.byDispatchTime.pollFirst();
+                    if (first.isEvent) {
+                        queue.eventsByTime.remove(first);
+                    }
+                    if (!queue.byDispatchTime.isEmpty()) {
+                        readyClients.add(queue);
+                    }
+                    size--;
+                    return first;
+                }
+                available.awaitNanos((long) (delayMillis * TimeUnit.MILLISECONDS.toNanos(1)));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Remove all the scheduled events of a client with a timestamp no later than the given timestamp,
+     *  regardless of whether they are due yet. Only the queue of that client is touched.
+     *
+     * @param clientID the ID of the client whose events to remove
+     * @param eventTimestamp the latest event timestamp to remove
+     * @return the removed messages, sorted by the timestamps of their events
+     */
+    List<MessageHandlerEvent> removeEarlierEvents(int clientID, double eventTimestamp) {
+        List<MessageHandlerEvent> earlierEvents = new ArrayList<>();
+        lock.lock();
+        try {
+            ClientQueue queue = clientQueues.get(clientID);
+            if (queue == null || queue.eventsByTime.isEmpty()
+                    || queue.eventsByTime.first().event.getTimeStamp() > eventTimestamp) {
+                return earlierEvents;
+            }
+            readyClients.remove(queue);
+            while (!queue.eventsByTime.isEmpty() && queue.eventsByTime.first().event.getTimeStamp() <= eventTimestamp) {
+                MessageHandlerEvent message = queue.eventsByTime.pollFirst();
+                queue.byDispatchTime.remove(message);
+                earlierEvents.add(message);
+            }
+            size -= earlierEvents.size();
+            if (!queue.byDispatchTime.isEmpty()) {
+                readyClients.add(queue);
+            }
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+        return earlierEvents;
+    }
+
+    /** Change the max wait time of all the scheduled messages of a client.
+     *  Only the queue of that client is touched.
+     *
+     * @param clientID the ID of the client whose messages to reschedule
+     * @param waitTime the new max wait time of the client, in seconds
+     */
+    void reschedule(int clientID, double waitTime) {
+        lock.lock();
+        try {
+            ClientQueue queue = clientQueues.get(clientID);
+            if (queue == null || queue.byDispatchTime.isEmpty()) {
+                return;
+            }
+            readyClients.remove(queue);
+            List<MessageHandlerEvent> toModify = new ArrayList<>(queue.byDispatchTime);
+            queue.byDispatchTime.clear();
+            for (MessageHandlerEvent message : toModify) {
+                message.expirationTimestamp = message.timestamp + waitTime * 1000;
+                queue.byDispatchTime.add(message);
+            }
+            readyClients.add(queue);
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Get the number of scheduled messages
+     *
+     * @return the number of messages that have not been dispatched yet
+     */
+    int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package cpen221.mp3.handler;
+
+import cpen221.mp3.event.BinaryEventFormat;
+import cpen221.mp3.event.BinaryEventReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+class SelectorIngest {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_FRAME_LENGTH = 64 * 1024;
+    private static final int INITIAL_BINARY_BUFFER_SIZE = 512;
+    private static final int INITIAL_LINE_BUFFER_SIZE = 256;
+
+    private final ServerSocketChannel serverChannel;
+    private final MessageHandler messageHandler;
+    private final Reactor[] reactors;
+    private volatile boolean stopped = false;
+
+    /*
+    Abstraction Function:
+    Represents a non-blocking front end for a MessageHandler, that reads newline terminated UTF-8 messages from
+    many SocketChannels on a few reactor threads instead of one thread per connection. The accept thread
+    hands every accepted channel to one of the reactors in turn. Each reactor reads from all of its channels
+    into a single direct ByteBuffer that it reuses for every read. The bytes of a message are collected in
+    partialLine until its newline arrives, and the complete message is decoded with the channel's
+    CharsetDecoder into its reusable line buffer and parsed from there, without copying it into a String.
+    A newline byte is never part of a multi-byte UTF-8 character, so messages can be split before decoding.
+    A channel whose first byte is BinaryEventFormat.MAGIC sends length prefixed binary frames instead of
+    lines, which are collected in partialBinaryFrames until they are complete.
+
+    Representation Invariant:
+    - serverChannel, messageHandler and reactors are not null
+    - reactors has at least one element
+
+    Thread Safety Arguments:
+    - each channel is registered with exactly one reactor and is only read from by that reactor's thread
+    - channels are handed from the accept thread to a reactor through a ConcurrentLinkedQueue, and are
+      only registered with the reactor's Selector by the reactor's own thread
+    - each reactor's read buffer, WireParser and batch are only used by that reactor's thread
+    - the messages in each chunk that is read from a channel are collected in the reactor's batch, and
+      scheduled together so that each scheduler is locked once per chunk
+    - stopped is volatile, and each reactor closes its own channels and Selector once it sees it
+     */
+
+    private static class Connection {
+        final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer partialLine = ByteBuffer.allocate(INITIAL_LINE_BUFFER_SIZE);
+        CharBuffer line = CharBuffer.allocate(INITIAL_LINE_BUFFER_SIZE);
+        boolean detected = false;
+        BinaryEventReader binaryReader = null;
+        ByteBuffer partialBinaryFrames = null;
+    }
+
+    private class Reactor implements Runnable {
+        private final Selector selector;
+        private final Queue<SocketChannel> newChannels;
+        private final ByteBuffer readBuffer;
+        private final WireParser parser;
+        private final List<MessageHandlerEvent> batch;
+
+        Reactor() throws IOException {
+            this.selector = Selector.open();
+            this.newChannels = new ConcurrentLinkedQueue<>();
+            this.readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+            this.parser = new WireParser();
+            this.batch = new ArrayList<>();
+        }
+
+        /** Hand a newly accepted channel to this reactor
+         *
+         * @param channel the accepted channel, is not null
+         */
+        void register(SocketChannel channel) {
+            newChannels.add(channel);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (!stopped) {
+                try {
+                    selector.select();
+                    SocketChannel channel;
+                    while ((channel = newChannels.poll()) != null) {
+                        channel.configureBlocking(false);
+                        channel.register(selector, SelectionKey.OP_READ, new Connection());
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (key.isValid() && key.isReadable()) {
+                            read(key);
+                        }
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            try {
+                SocketChannel channel;
+                while ((channel = newChannels.poll()) != null) {
+                    channel.close();
+                }
+                for (SelectionKey key : selector.keys()) {
+                    key.channel().close();
+                }
+                selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        /** Read everything that is available from a channel, and process every complete message in it
+         *
+         * @param key the selection key of a readable channel, is not null
+         */
+        private void read(SelectionKey key) {
+            SocketChannel channel = (SocketChannel) key.channel();
+            Connection connection = (Connection) key.attachment();
+            try {
+                int read;
+                while ((read = channel.read(readBuffer)) > 0) {
+                    readBuffer.flip();
+                    double receiveTime = System.currentTimeMillis();
+                    if (!connection.detected) {
+                        connection.detected = true;
+                        if ((readBuffer.get(0) & 0xff) == BinaryEventFormat.MAGIC) {
+                            readBuffer.get();
+                            connection.binaryReader = new BinaryEventReader(messageHandler.entityTypes::code);
+                            connection.partialBinaryFrames = ByteBuffer.allocate(INITIAL_BINARY_BUFFER_SIZE);
+                        }
+                    }
+                    if (connection.binaryReader != null) {
+                        boolean wellFormed = readBinaryFrames(connection, receiveTime);
+                        readBuffer.clear();
+                        messageHandler.schedule(batch);
+                        batch.clear();
+                        if (!wellFormed) {
+                            read = -1;
+                            break;
+                        }
+                        continue;
+                    }
+                    while (readBuffer.hasRemaining()) {
+                        byte next = readBuffer.get();
+                        if (next == '\n') {
+                            processLine(connection, receiveTime);
+                        } else if (next != '\r') {
+                            if (!connection.partialLine.hasRemaining()) {
+                                connection.partialLine.flip();
+                                connection.partialLine = ByteBuffer.allocate(2 * connection.partialLine.capacity())
+                                        .put(connection.partialLine);
+                            }
+                            connection.partialLine.put(next);
+                        }
+                    }
+                    readBuffer.clear();
+                    messageHandler.schedule(batch);
+                    batch.clear();
+                    if (connection.partialLine.position() > MAX_FRAME_LENGTH) {
+                        new IOException("Closed a connection that sent a message longer than "
+                                + MAX_FRAME_LENGTH + " bytes").printStackTrace();
+                        read = -1;
+                        break;
+                    }
+                }
+                if (connection.partialLine.position() == 0 && connection.partialLine.capacity() > 1024) {
+                    connection.partialLine = ByteBuffer.allocate(INITIAL_LINE_BUFFER_SIZE);
+                    connection.line = CharBuffer.allocate(INITIAL_LINE_BUFFER_SIZE);
+                }
+                if (read < 0) {
+                    key.cancel();
+                    channel.close();
+                }
+            } catch (IOException e) {
+                readBuffer.clear();
+                key.cancel();
+                try {
+                    channel.close();
+                } catch (IOException closeException) {
+                    closeException.printStackTrace();
+                }
+            }
+        }
+
+        /** Move the bytes in the read buffer to the partial frames of a binary connection, and process
+         *  every complete frame
+         *
+         * @param connection the binary connection that the bytes were read from, is not null
+         * @param receiveTime the time at which the bytes were received
+         * @return false if the connection sent a frame with an invalid length, true otherwise
+         */
+        private boolean readBinaryFrames(Connection connection, double receiveTime) {
+            while (readBuffer.hasRemaining()) {
+                ByteBuffer pending = connection.partialBinaryFrames;
+                int count = Math.min(pending.remaining(), readBuffer.remaining());
+                int readLimit = readBuffer.limit();
+                readBuffer.limit(readBuffer.position() + count);
+                pending.put(readBuffer);
+                readBuffer.limit(readLimit);
+
+                pending.flip();
+                while (pending.remaining() >= Integer.BYTES) {
+                    int length = pending.getInt(pending.position());
+                    if (length <= 0 || length > BinaryEventFormat.MAX_FRAME_LENGTH) {
+                        new IOException("Closed a connection that sent a frame of " + length + " bytes").printStackTrace();
+                        return false;
+                    }
+                    if (pending.remaining() < Integer.BYTES + length) {
+                        break;
+                    }
+                    int frameEnd = pending.position() + Integer.BYTES + length;
+                    int pendingLimit = pending.limit();
+                    pending.position(pending.position() + Integer.BYTES);
+                    pending.limit(frameEnd);
+                    try {
+                        MessageHandlerThread.processFrame(messageHandler, connection.binaryReader, pending, receiveTime, batch);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                    pending.limit(pendingLimit);
+                    pending.position(frameEnd);
+                }
+                pending.compact();
+
+                // make room for the rest of a frame that does not fit, and give back room that is no longer needed
+                int needed = INITIAL_BINARY_BUFFER_SIZE;
+                if (pending.position() >= Integer.BYTES) {
+                    needed = Math.max(needed, Integer.BYTES + pending.getInt(0));
+                }
+                if (needed > pending.capacity() || (pending.position() == 0 && pending.capacity() > INITIAL_BINARY_BUFFER_SIZE)) {
+                    pending.flip();
+                    connection.partialBinaryFrames = ByteBuffer.allocate(needed).put(pending);
+                }
+            }
+            return true;
+        }
+
+        /** Decode the complete message in the partial line of a connection, process it, and empty
+         *  the partial line
+         *
+         * @param connection the connection whose partial line holds a message without its line terminator,
+         *                   is not null
+         * @param receiveTime the time at which the message was received
+         */
+        private void processLine(Connection connection, double receiveTime) {
+            ByteBuffer bytes = connection.partialLine;
+            if (bytes.position() == 0) {
+                return;
+            }
+            bytes.flip();
+            // a UTF-8 message never decodes to more chars than it has bytes
+            if (connection.line.capacity() < bytes.remaining()) {
+                connection.line = CharBuffer.allocate(bytes.capacity());
+            }
+            CharBuffer line = connection.line;
+            line.clear();
+            connection.decoder.reset();
+            connection.decoder.decode(bytes, line, true);
+            connection.decoder.flush(line);
+            line.flip();
+            bytes.clear();
+            try {
+                MessageHandlerThread.processMessage(messageHandler, parser, line, receiveTime, batch);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /** Create a new SelectorIngest that accepts connections from the given channel
+     *
+     * @param serverChannel the bound channel to accept connections from, is not null
+     * @param messageHandler the MessageHandler to hand received messages to, is not null
+     * @param reactorThreads the number of threads that read from connections, > 0
+     * @throws IOException if a Selector could not be opened
+     */
+    SelectorIngest(ServerSocketChannel serverChannel, MessageHandler messageHandler, int reactorThreads) throws IOException {
+        this.serverChannel = serverChannel;
+        this.messageHandler = messageHandler;
+        this.reactors = new Reactor[reactorThreads];
+        for (int i = 0; i < reactorThreads; i++) {
+            this.reactors[i] = new Reactor();
+        }
+    }
+
+    /** Start the accept thread and the reactor threads
+     *
+     */
+    void start() {
+        for (Reactor reactor : reactors) {
+            (new Thread(reactor)).start();
+        }
+        (new Thread(() -> {
+            int nextReactor = 0;
+            while (!stopped) {
+                try {
+                    SocketChannel channel = serverChannel.accept();
+                    System.out.println("Client/Entity connected: " + channel.socket().getInetAddress().getHostAddress());
+                    reactors[nextReactor].register(channel);
+                    nextReactor = (nextReactor + 1) % reactors.length;
+                } catch (IOException e) {
+                    if (!stopped) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        })).start();
+    }
+
+    /** Stop accepting connections, and make every reactor close its channels and stop
+     *
+     */
+    void stop() {
+        stopped = true;
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (Reactor reactor : reactors) {
+            reactor.selector.wakeup();
+        }
+    }
+}
@@ -0,0 +1,456 @@
+package cpen221.mp3.handler;
+
+import cpen221.mp3.event.EntityTypes;
+
+class WireParser {
+    private static final String SEPARATOR = "<()>";
+    private static final int MAX_FIELDS = 5;
+    private static final int MAX_FAST_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private CharSequence line;
+    private int nameEnd;
+    private int clientId;
+    private int returnInfoStart;
+    private int returnInfoEnd;
+    private int dataEnd;
+    private int groupEnd;
+    private int fieldCount;
+    private final int[] valueStarts;
+    private final int[] valueEnds;
+
+    /*
+    Abstraction Function:
+    Represents the most recently parsed message line, of the form
+    name<()>clientId<()>...{key=value, key=value, ...}...[<()>returnSocketInfo]. The name of the message
+    is line[0, nameEnd), the i-th value between the current pair of braces is line[valueStarts[i], valueEnds[i])
+    for 0 <= i < fieldCount, and the return socket information is line[returnInfoStart, returnInfoEnd),
+    or absent if returnInfoStart is -1. The current pair of braces is the first one of the message, until
+    nextGroup moves on to the next pair before dataEnd, which is how batches of several events are read.
+    groupEnd is the index of the closing brace of the current pair. The parser only records where things
+    are in the line, and only creates Strings or parses numbers when asked for a particular value, so
+    parsing a message does not create any intermediate Strings or arrays. A WireParser is reused for every message read by one thread.
+
+    Representation Invariant:
+    - valueStarts and valueEnds are not null and have MAX_FIELDS elements
+    - if line is not null:
+        - 0 < nameEnd <= line.length()
+        - nameEnd < groupEnd <= dataEnd <= line.length()
+        - 0 <= fieldCount <= MAX_FIELDS
+        - 0 <= valueStarts[i] <= valueEnds[i] <= line.length() for 0 <= i < fieldCount
+        - returnInfoStart is -1, or 0 <= returnInfoStart <= returnInfoEnd <= line.length()
+
+    Thread Safety Arguments:
+    - a WireParser is not thread safe, and is only used by the thread that created it
+     */
+
+    /** Create a new WireParser
+     *
+     */
+    WireParser() {
+        this.valueStarts = new int[MAX_FIELDS];
+        this.valueEnds = new int[MAX_FIELDS];
+    }
+
+    /** Parse a message line. The line must not be modified until this WireParser is done with it.
+     *
+     * @param line the message line, without its line terminator, is not null
+     * @throws IllegalArgumentException if the line is not a well formed message
+     */
+    void parse(CharSequence line) {
+        this.line = line;
+        int length = line.length();
+
+        nameEnd = indexOfSeparator(0);
+        if (nameEnd <= 0) {
+            throw new IllegalArgumentException("Message has no name: " + line);
+        }
+        int clientStart = nameEnd + SEPARATOR.length();
+        int clientEnd = indexOfSeparator(clientStart);
+        if (clientEnd < 0) {
+            throw new IllegalArgumentException("Message has no data: " + line);
+        }
+        clientId = parseInt(clientStart, clientEnd);
+
+        int dataStart = clientEnd + SEPARATOR.length();
+        dataEnd = indexOfSeparator(dataStart);
+        returnInfoStart = -1;
+        if (dataEnd < 0) {
+            dataEnd = length;
+        } else {
+            int infoStart = dataEnd + SEPARATOR.length();
+            int infoEnd = indexOfSeparator(infoStart);
+            if (infoEnd < 0) {
+                infoEnd = length;
+            }
+            if (infoEnd > infoStart) {
+                returnInfoStart = infoStart;
+                returnInfoEnd = infoEnd;
+            }
+        }
+
+        if (!parseGroup(dataStart)) {
+            throw new IllegalArgumentException("Message has no fields: " + line);
+        }
+    }
+
+    /** Move on to the next pair of braces of the last parsed message, so that the values of the fields
+     *  between them can be read
+     *
+     * @return true if the message has another pair of braces, false otherwise
+     */
+    boolean nextGroup() {
+        return parseGroup(groupEnd + 1);
+    }
+
+    /** Record where the values of the fields between the first pair of braces at or after from are
+     *
+     * @param from the index to start searching for an opening brace from
+     * @return true if there is an opening brace before the end of the data, false otherwise
+     */
+    private boolean parseGroup(int from) {
+        int open = from;
+        while (open < dataEnd && line.charAt(open) != '{') {
+            open++;
+        }
+        if (open >= dataEnd) {
+            return false;
+        }
+        int close = open + 1;
+        while (close < dataEnd && line.charAt(close) != '{' && line.charAt(close) != '}') {
+            close++;
+        }
+        groupEnd = close;
+
+        fieldCount = 0;
+        int fieldStart = open + 1;
+        while (fieldStart < close) {
+            int fieldEnd = fieldStart;
+            while (fieldEnd < close && line.charAt(fieldEnd) != ',') {
+                fieldEnd++;
+            }
+            if (fieldCount == MAX_FIELDS) {
+                throw new IllegalArgumentException("Message has too many fields: " + line);
+            }
+            recordValue(fieldCount++, fieldStart, fieldEnd);
+            fieldStart = fieldEnd + 1;
+        }
+        return true;
+    }
+
+    /** Determine if the name of the last parsed message is the given name
+     *
+     * @param name the name to compare against, is not null
+     * @return true if the name of the message is equal to name, false otherwise
+     */
+    boolean nameIs(String name) {
+        if (name.length() != nameEnd) {
+            return false;
+        }
+        for (int i = 0; i < nameEnd; i++) {
+            if (line.charAt(i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Get the name of the last parsed message
+     *
+     * @return the name of the message, is not null
+     */
+    String getName() {
+        return line.subSequence(0, nameEnd).toString();
+    }
+
+    /** Get the id of the Client that the last parsed message is for
+     *
+     * @return the client id of the message
+     */
+    int getClientId() {
+        return clientId;
+    }
+
+    /** Get the number of fields between the current pair of braces of the last parsed message
+     *
+     * @return the number of fields, between 0 and 5 inclusive
+     */
+    int getFieldCount() {
+        return fieldCount;
+    }
+
+    /** Get the return socket information of the last parsed message, split at every '/'
+     *
+     * @return the return socket information, or null if the message has none
+     */
+    String[] getReturnSocketInfo() {
+        if (returnInfoStart < 0) {
+            return null;
+        }
+        return line.subSequence(returnInfoStart, returnInfoEnd).toString().split("/");
+    }
+
+    /** Get a value of the last parsed message as a String
+     *
+     * @param field the index of the field, 0 <= field < getFieldCount()
+     * @return the trimmed value of the field, which is empty if the field has no value
+     */
+    String getString(int field) {
+        checkField(field);
+        return line.subSequence(valueStarts[field], valueEnds[field]).toString();
+    }
+
+    /** Get a value of the last parsed message as the code of an entity type in EntityTypes. A String is
+     *  only created for the value if no entity type has been given a code for it yet.
+     *
+     * @param field the index of the field, 0 <= field < getFieldCount()
+     * @return the code of the entity type that is the trimmed value of the field
+     */
+    int getEntityTypeCode(int field) {
+        checkField(field);
+        return EntityTypes.code(line, valueStarts[field], valueEnds[field]);
+    }
+
+    /** Get a value of the last parsed message as the code of an entity type in EntityTypes, which is only
+     *  given a code if the EntityTypeLimit accepts it
+     *
+     * @param field the index of the field, 0 <= field < getFieldCount()
+     * @param entityTypes the entity types to accept the value from, is not null
+     * @return the code of the entity type that is the trimmed value of the field
+     * @throws IllegalArgumentException if entityTypes does not accept the entity type
+     */
+    int getEntityTypeCode(int field, EntityTypeLimit entityTypes) {
+        checkField(field);
+        return entityTypes.code(line, valueStarts[field], valueEnds[field]);
+    }
+
+    /** Determine if a value of the last parsed message is equal to the given String
+     *
+     * @param field the index of the field, 0 <= field < getFieldCount()
+     * @param expected the String to compare against, is not null
+     * @return true if the value of the field is equal to expected, false otherwise
+     */
+    boolean valueIs(int field, String expected) {
+        checkField(field);
+        int start = valueStarts[field];
+        if (valueEnds[field] - start != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (line.charAt(start + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Get a value of the last parsed message as an int
+     *
+     * @param field the index of the field, 0 <= field < getFieldCount()
+     * @return the value of the field
+     * @throws NumberFormatException if the value is not an int
+     */
+    int getInt(int field) {
+        checkField(field);
+        return parseInt(valueStarts[field], valueEnds[field]);
+    }
+
+    /** Get a value of the last parsed message as a double
+     *
+     * @param field the index of the field, 0 <= field < getFieldCount()
+     * @return the value of the field, exactly as Double.parseDouble would parse it
+     * @throws NumberFormatException if the value is not a double
+     */
+    double getDouble(int field) {
+        checkField(field);
+        return parseDouble(valueStarts[field], valueEnds[field]);
+    }
+
+    /** Get a value of the last parsed message as a boolean
+     *
+     * @param field the index of the field, 0 <= field < getFieldCount()
+     * @return true if the value of the field is "true", ignoring case, false otherwise
+     */
+    boolean getBoolean(int field) {
+        checkField(field);
+        int start = valueStarts[field];
+        if (valueEnds[field] - start != 4) {
+            return false;
+        }
+        return Character.toLowerCase(line.charAt(start)) == 't'
+                && Character.toLowerCase(line.charAt(start + 1)) == 'r'
+                && Character.toLowerCase(line.charAt(start + 2)) == 'u'
+                && Character.toLowerCase(line.charAt(start + 3)) == 'e';
+    }
+
+    /** Record where the value of a key=value field is: between the first '=' and the next '=' or the end
+     *  of the field, with surrounding whitespace removed. A field without a value has an empty value.
+     *
+     * @param field the index of the field
+     * @param start the start of the field in the line, inclusive
+     * @param end the end of the field in the line, exclusive
+     */
+    private void recordValue(int field, int start, int end) {
+        int equals = start;
+        while (equals < end && line.charAt(equals) != '=') {
+            equals++;
+        }
+        int valueStart = equals + 1;
+        int valueEnd = valueStart;
+        while (valueEnd < end && line.charAt(valueEnd) != '=') {
+            valueEnd++;
+        }
+        while (valueStart < valueEnd && line.charAt(valueStart) <= ' ') {
+            valueStart++;
+        }
+        while (valueEnd > valueStart && line.charAt(valueEnd - 1) <= ' ') {
+            valueEnd--;
+        }
+        if (valueStart >= valueEnd) {
+            valueStart = valueEnd = Math.min(end, valueStart);
+        }
+        valueStarts[field] = valueStart;
+        valueEnds[field] = valueEnd;
+    }
+
+    private void checkField(int field) {
+        if (field < 0 || field >= fieldCount) {
+            throw new IllegalArgumentException("Message has no field " + field + ": " + line);
+        }
+    }
+
+    /** Find the next "<()>" separator in the line
+     *
+     * @param from the index to start searching from
+     * @return the index of the next separator at or after from, or -1 if there is none
+     */
+    private int indexOfSeparator(int from) {
+        int last = line.length() - SEPARATOR.length();
+        for (int i = from; i <= last; i++) {
+            if (line.charAt(i) == '<' && line.charAt(i + 1) == '(' && line.charAt(i + 2) == ')' && line.charAt(i + 3) == '>') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Parse an int from part of the line, the same way Integer.parseInt does
+     *
+     * @param start the start of the int in the line, inclusive
+     * @param end the end of the int in the line, exclusive
+     * @return the parsed int
+     * @throws NumberFormatException if the part of the line is not an int
+     */
+    private int parseInt(int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+            negative = line.charAt(i) == '-';
+            i++;
+        }
+        // up to 9 digits can not overflow an int
+        if (i == end || end - i > 9) {
+            return Integer.parseInt(line.subSequence(start, end).toString());
+        }
+        int result = 0;
+        for (; i < end; i++) {
+            int digit = line.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Integer.parseInt(line.subSequence(start, end).toString());
+            }
+            result = result * 10 + digit;
+        }
+        return negative ? -result : result;
+    }
+
+    /** Parse a double from part of the line, the same way Double.parseDouble does. Plain decimal numbers
+     *  with at most 15 significant digits, and a decimal exponent of at most 22 in size, are parsed
+     *  directly: both the digits and the power of ten are then exact doubles, so a single multiplication
+     *  or division rounds to the same double as Double.parseDouble. Everything else falls back to
+     *  Double.parseDouble.
+     *
+     * @param start the start of the double in the line, inclusive
+     * @param end the end of the double in the line, exclusive
+     * @return the parsed double
+     * @throws NumberFormatException if the part of the line is not a double
+     */
+    private double parseDouble(int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+            negative = line.charAt(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int significantDigits = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean seenPoint = false;
+        for (; i < end; i++) {
+            char next = line.charAt(i);
+            if (next >= '0' && next <= '9') {
+                digits++;
+                if (mantissa == 0 && next == '0') {
+                    if (seenPoint) {
+                        exponent--;
+                    }
+                    continue;
+                }
+                if (++significantDigits > MAX_FAST_DIGITS) {
+                    return Double.parseDouble(line.subSequence(start, end).toString());
+                }
+                mantissa = mantissa * 10 + (next - '0');
+                if (seenPoint) {
+                    exponent--;
+                }
+            } else if (next == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) {
+            return Double.parseDouble(line.subSequence(start, end).toString());
+        }
+
+        if (i < end && (line.charAt(i) == 'e' || line.charAt(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+                negativeExponent = line.charAt(i) == '-';
+                i++;
+            }
+            if (i == end || end - i > 3) {
+                return Double.parseDouble(line.subSequence(start, end).toString());
+            }
+            int explicitExponent = 0;
+            for (; i < end; i++) {
+                int digit = line.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    return Double.parseDouble(line.subSequence(start, end).toString());
+                }
+                explicitExponent = explicitExponent * 10 + digit;
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (i != end) {
+            return Double.parseDouble(line.subSequence(start, end).toString());
+        }
+
+        double value;
+        if (mantissa == 0) {
+            value = 0.0;
+        } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+            value = mantissa * POWERS_OF_TEN[exponent];
+        } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return Double.parseDouble(line.subSequence(start, end).toString());
+        }
+        return negative ? -value : value;
+    }
+}
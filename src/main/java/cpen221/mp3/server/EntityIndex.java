@@ -0,0 +1,133 @@
+package cpen221.mp3.server;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+class EntityIndex {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final Map<Integer, Positions> positions;
+    private int size;
+
+    /** The positions of the events of one entity, in increasing order */
+    private static class Positions {
+        int[] elements = new int[INITIAL_CAPACITY];
+        int count = 0;
+
+        /** Count the positions before a position
+         *
+         * @param to the position to count the positions before
+         * @return the number of the first count elements that are < to
+         */
+        int countBefore(int to) {
+            if (count == 0 || elements[count - 1] < to) {
+                return count;
+            }
+            int low = 0;
+            int high = count - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (elements[mid] < to) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /*
+    Abstraction Function:
+    Represents where the events of each entity are in a sequence of events, so that the events of one entity
+    can be found without checking the events of the others. The sequence has size events, and the positions
+    of the events of the entity with id e are the first positions.get(e).count elements of
+    positions.get(e).elements. An entity with no events in the sequence has no key.
+
+    Representation Invariant:
+    - positions is not null, and has no null values
+    - for every key e, 0 < positions.get(e).count <= positions.get(e).elements.length, and the first
+      positions.get(e).count elements of positions.get(e).elements are strictly increasing
+    - every position 0 <= p < size is among the positions of exactly one entity, and there are no other positions
+
+    Thread Safety Arguments:
+    - an EntityIndex is not thread safe, and is only used by the thread that uses its EventStore
+     */
+
+    /** Create a new EntityIndex of an empty sequence of events
+     *
+     */
+    EntityIndex() {
+        this.positions = new HashMap<>();
+        this.size = 0;
+    }
+
+    /** Get the number of events in the sequence
+     *
+     * @return the number of events in the sequence
+     */
+    int size() {
+        return size;
+    }
+
+    /** Record that an event was inserted into the sequence. The events from its position on move one
+     *  position later, which takes time proportional to the number of entities plus the number of events
+     *  that move, so an event added after all the others takes constant time.
+     *
+     * @param entityId the id of the entity of the event
+     * @param position the position of the event in the sequence, 0 <= position <= size()
+     */
+    void insert(int entityId, int position) {
+        if (position < size) {
+            for (Positions later : positions.values()) {
+                for (int i = later.countBefore(position); i < later.count; i++) {
+                    later.elements[i]++;
+                }
+            }
+        }
+        Positions entityPositions = positions.computeIfAbsent(entityId, id -> new Positions());
+        if (entityPositions.count == entityPositions.elements.length) {
+            entityPositions.elements = Arrays.copyOf(entityPositions.elements, entityPositions.count * 2);
+        }
+        int index = entityPositions.countBefore(position);
+        System.arraycopy(entityPositions.elements, index, entityPositions.elements, index + 1,
+                entityPositions.count - index);
+        entityPositions.elements[index] = position;
+        entityPositions.count++;
+        size++;
+    }
+
+    /** Forget the events from a position of the sequence on, so that they can be inserted again
+     *
+     * @param from the position of the first event to forget, 0 <= from <= size()
+     */
+    void truncate(int from) {
+        for (Positions entityPositions : positions.values()) {
+            entityPositions.count = entityPositions.countBefore(from);
+        }
+        positions.values().removeIf(entityPositions -> entityPositions.count == 0);
+        size = from;
+    }
+
+    /** Get the number of events of an entity before a position of the sequence
+     *
+     * @param entityId the id of the entity
+     * @param to the position after the last event to count, 0 <= to <= size()
+     * @return the number of events of the entity at positions < to
+     */
+    int countBefore(int entityId, int to) {
+        Positions entityPositions = positions.get(entityId);
+        return entityPositions == null ? 0 : entityPositions.countBefore(to);
+    }
+
+    /** Get the position of an event of an entity in the sequence
+     *
+     * @param entityId the id of the entity
+     * @param index the number of events of the entity before the event, 0 <= index < countBefore(entityId, size())
+     * @return the position of the event
+     */
+    int get(int entityId, int index) {
+        return positions.get(entityId).elements[index];
+    }
+}
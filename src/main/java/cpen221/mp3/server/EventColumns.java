@@ -0,0 +1,355 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.EntityTypes;
+import cpen221.mp3.event.Event;
+import cpen221.mp3.event.SensorEvent;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+class EventColumns {
+    private static final int INITIAL_CAPACITY = 64;
+    // the Vector API is an incubator module, which is only in the JVM if it was added with --add-modules
+    private static final boolean VECTOR_API_AVAILABLE =
+            ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    private static volatile boolean vectorized = VECTOR_API_AVAILABLE;
+
+    private double[] timeStamps;
+    private double[] values;
+    private int[] clientIds;
+    private int[] entityIds;
+    private short[] typeCodes;
+    private long[] actuators;
+    private long[] booleanValues;
+    private int size;
+
+    /*
+    Abstraction Function:
+    Represents a sequence of events stored column by column, so that Filters can check many events at once
+    by scanning primitive arrays instead of calling methods on each Event, and so that each event takes a
+    few primitive fields rather than an object of its own. The i-th event has timestamp timeStamps[i], double
+    value values[i], client id clientIds[i], entity id entityIds[i] and entity type
+    EntityTypes.name(typeCodes[i] & 0xFFFF), and is an ActuatorEvent iff bit i of actuators is set, in which
+    case its boolean value is bit i of booleanValues. Bit i of a bitmap is bit (i % 64) of word (i / 64).
+    Events are only created again from the columns when they are asked for.
+
+    The columns are scanned by the kernels of VectorKernels iff vectorized is true, and otherwise by scalar
+    loops that give the same results.
+
+    Representation Invariant:
+    - timeStamps, values, clientIds, entityIds, typeCodes, actuators, and booleanValues are not null
+    - 0 <= size <= timeStamps.length == values.length == clientIds.length == entityIds.length == typeCodes.length
+    - actuators.length == booleanValues.length >= timeStamps.length / 64
+    - bits >= size of actuators and booleanValues are not set
+    - for all 0 <= i < size, typeCodes[i] & 0xFFFF is a code given by EntityTypes
+    - vectorized is true only if VECTOR_API_AVAILABLE is true
+
+    Thread Safety Arguments:
+    - an EventColumns is not thread safe, and is only used by the thread that uses its EventStore or Filter
+    - vectorized is volatile, and either value of it gives the same results
+     */
+
+    /** Determine if the columns are scanned with the Vector API
+     *
+     * @return true if the kernels of VectorKernels are used, false if scalar loops are used
+     */
+    static boolean isVectorized() {
+        return vectorized;
+    }
+
+    /** Configure whether the columns are scanned with the Vector API, if it is in the running JVM
+     *
+     * @param useVectorApi true to use the kernels of VectorKernels when the Vector API is available,
+     *                     false to use scalar loops
+     * @return true if the Vector API is used from now on, false otherwise
+     */
+    static boolean setVectorized(boolean useVectorApi) {
+        vectorized = useVectorApi && VECTOR_API_AVAILABLE;
+        return vectorized;
+    }
+
+    /** Create a new empty EventColumns
+     *
+     */
+    EventColumns() {
+        this.timeStamps = new double[INITIAL_CAPACITY];
+        this.values = new double[INITIAL_CAPACITY];
+        this.clientIds = new int[INITIAL_CAPACITY];
+        this.entityIds = new int[INITIAL_CAPACITY];
+        this.typeCodes = new short[INITIAL_CAPACITY];
+        this.actuators = new long[INITIAL_CAPACITY / 64];
+        this.booleanValues = new long[INITIAL_CAPACITY / 64];
+        this.size = 0;
+    }
+
+    /** Create a new EventColumns holding the given events, in the same order
+     *
+     * @param events the events, is not null and contains no null elements
+     */
+    EventColumns(List<Event> events) {
+        this();
+        for (Event event : events) {
+            add(event);
+        }
+    }
+
+    /** Add an event after the last event
+     *
+     * @param event the event to add, is not null
+     */
+    void add(Event event) {
+        insert(size, event);
+    }
+
+    /** Insert an event at the given position, moving the events from that position on back by one
+     *
+     * @param index the position of the new event, 0 <= index <= size()
+     * @param event the event to insert, is not null
+     */
+    void insert(int index, Event event) {
+        boolean actuator = event instanceof ActuatorEvent;
+        insert(index, event.getTimeStamp(), event.getValueDouble(), event.getClientId(), event.getEntityId(),
+                event.getEntityTypeCode(), actuator, actuator && event.getValueBoolean());
+    }
+
+    /** Add an event after the last event, given by its fields
+     *
+     * @param timeStamp the timestamp of the event
+     * @param value the double value of the event
+     * @param clientId the client id of the event
+     * @param entityId the entity id of the event
+     * @param entityTypeCode the code of the entity type of the event, given by EntityTypes
+     * @param actuator true if the event is an ActuatorEvent, false otherwise
+     * @param booleanValue the boolean value of the event, false if it is not an ActuatorEvent
+     */
+    void add(double timeStamp, double value, int clientId, int entityId, int entityTypeCode,
+             boolean actuator, boolean booleanValue) {
+        insert(size, timeStamp, value, clientId, entityId, entityTypeCode, actuator, booleanValue);
+    }
+
+    private void insert(int index, double timeStamp, double value, int clientId, int entityId, int entityTypeCode,
+                        boolean actuator, boolean booleanValue) {
+        if (size == timeStamps.length) {
+            int capacity = timeStamps.length * 2;
+            timeStamps = Arrays.copyOf(timeStamps, capacity);
+            values = Arrays.copyOf(values, capacity);
+            clientIds = Arrays.copyOf(clientIds, capacity);
+            entityIds = Arrays.copyOf(entityIds, capacity);
+            typeCodes = Arrays.copyOf(typeCodes, capacity);
+            actuators = Arrays.copyOf(actuators, capacity / 64);
+            booleanValues = Arrays.copyOf(booleanValues, capacity / 64);
+        }
+        System.arraycopy(timeStamps, index, timeStamps, index + 1, size - index);
+        System.arraycopy(values, index, values, index + 1, size - index);
+        System.arraycopy(clientIds, index, clientIds, index + 1, size - index);
+        System.arraycopy(entityIds, index, entityIds, index + 1, size - index);
+        System.arraycopy(typeCodes, index, typeCodes, index + 1, size - index);
+        insertBit(actuators, index, size, actuator);
+        insertBit(booleanValues, index, size, booleanValue);
+        timeStamps[index] = timeStamp;
+        values[index] = value;
+        clientIds[index] = clientId;
+        entityIds[index] = entityId;
+        // EntityTypes.MAX_TYPES is 1 << 16, so every code fits in the bits of a short
+        typeCodes[index] = (short) entityTypeCode;
+        size++;
+    }
+
+    /** Remove the first events, moving the other events forward
+     *
+     * @param count the number of events to remove, 0 <= count <= size()
+     */
+    void removeFirst(int count) {
+        System.arraycopy(timeStamps, count, timeStamps, 0, size - count);
+        System.arraycopy(values, count, values, 0, size - count);
+        System.arraycopy(clientIds, count, clientIds, 0, size - count);
+        System.arraycopy(entityIds, count, entityIds, 0, size - count);
+        System.arraycopy(typeCodes, count, typeCodes, 0, size - count);
+        removeBits(actuators, count);
+        removeBits(booleanValues, count);
+        size -= count;
+    }
+
+    /** Remove the first bits of a bitmap, moving the other bits down
+     *
+     * @param words the bitmap, is not null
+     * @param count the number of bits to remove, >= 0
+     */
+    private static void removeBits(long[] words, int count) {
+        int wordShift = count >>> 6;
+        int bitShift = count & 63;
+        for (int k = 0; k < words.length; k++) {
+            int source = k + wordShift;
+            long low = source < words.length ? words[source] >>> bitShift : 0L;
+            long high = bitShift != 0 && source + 1 < words.length ? words[source + 1] << (64 - bitShift) : 0L;
+            words[k] = low | high;
+        }
+    }
+
+    /** Insert a bit into a bitmap, moving the bits from that position on up by one
+     *
+     * @param words the bitmap, with room for size + 1 bits, is not null
+     * @param index the position of the new bit, 0 <= index <= size
+     * @param size the number of bits in the bitmap before the insertion
+     * @param bit the value of the new bit
+     */
+    private static void insertBit(long[] words, int index, int size, boolean bit) {
+        int word = index >>> 6;
+        for (int k = size >>> 6; k > word; k--) {
+            words[k] = (words[k] << 1) | (words[k - 1] >>> 63);
+        }
+        long below = (1L << index) - 1;
+        words[word] = (words[word] & below) | ((words[word] & ~below) << 1) | (bit ? 1L << index : 0L);
+    }
+
+    /** Get the number of events
+     *
+     * @return the number of events
+     */
+    int size() {
+        return size;
+    }
+
+    /** Get the timestamp of an event
+     *
+     * @param index the position of the event, 0 <= index < size()
+     * @return the timestamp of the event
+     */
+    double getTimeStamp(int index) {
+        checkIndex(index);
+        return timeStamps[index];
+    }
+
+    /** Get the double value of an event
+     *
+     * @param index the position of the event, 0 <= index < size()
+     * @return the double value of the event, which is -1 for ActuatorEvents
+     */
+    double getValue(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    /** Determine if an event is an ActuatorEvent
+     *
+     * @param index the position of the event, 0 <= index < size()
+     * @return true if the event is an ActuatorEvent, false otherwise
+     */
+    boolean isActuator(int index) {
+        checkIndex(index);
+        return (actuators[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /** Get the boolean value of an event
+     *
+     * @param index the position of the event, 0 <= index < size()
+     * @return the boolean value of the event, which is false for events that are not ActuatorEvents
+     */
+    boolean getBooleanValue(int index) {
+        checkIndex(index);
+        return (booleanValues[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /** Get the client id of an event
+     *
+     * @param index the position of the event, 0 <= index < size()
+     * @return the client id of the event
+     */
+    int getClientId(int index) {
+        checkIndex(index);
+        return clientIds[index];
+    }
+
+    /** Get the code of the entity type of an event
+     *
+     * @param index the position of the event, 0 <= index < size()
+     * @return the code of the entity type of the event, given by EntityTypes
+     */
+    int getEntityTypeCode(int index) {
+        checkIndex(index);
+        return typeCodes[index] & 0xFFFF;
+    }
+
+    /** Get the entity id of an event
+     *
+     * @param index the position of the event, 0 <= index < size()
+     * @return the entity id of the event
+     */
+    int getEntityId(int index) {
+        checkIndex(index);
+        return entityIds[index];
+    }
+
+    /** Get an event, created from its columns
+     *
+     * @param index the position of the event, 0 <= index < size()
+     * @return a new Event equal to the event at that position
+     */
+    Event get(int index) {
+        checkIndex(index);
+        int entityTypeCode = typeCodes[index] & 0xFFFF;
+        if ((actuators[index >>> 6] & (1L << index)) != 0) {
+            boolean value = (booleanValues[index >>> 6] & (1L << index)) != 0;
+            return new ActuatorEvent(timeStamps[index], clientIds[index], entityIds[index], entityTypeCode, value);
+        }
+        return new SensorEvent(timeStamps[index], clientIds[index], entityIds[index], entityTypeCode, values[index]);
+    }
+
+    /** Get a read-only view of the events, which creates each event from its columns when it is read
+     *
+     * @return an unmodifiable list of the events, which reflects later changes to the columns
+     */
+    List<Event> asList() {
+        return new AbstractList<>() {
+            @Override
+            public Event get(int index) {
+                return EventColumns.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + size + " events");
+        }
+    }
+
+    /** Get the timestamp column. Only the first size() elements are events.
+     *
+     * @return the timestamp column, which must not be modified
+     */
+    double[] timeStampColumn() {
+        return timeStamps;
+    }
+
+    /** Get the double value column. Only the first size() elements are events.
+     *
+     * @return the double value column, which must not be modified
+     */
+    double[] valueColumn() {
+        return values;
+    }
+
+    /** Get the bitmap of ActuatorEvents
+     *
+     * @return the bitmap of ActuatorEvents, which must not be modified
+     */
+    long[] actuatorBitmap() {
+        return actuators;
+    }
+
+    /** Get the bitmap of boolean values
+     *
+     * @return the bitmap of boolean values, which must not be modified
+     */
+    long[] booleanValueBitmap() {
+        return booleanValues;
+    }
+}
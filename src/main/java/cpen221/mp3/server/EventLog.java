@@ -0,0 +1,327 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.Event;
+import cpen221.mp3.event.SensorEvent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+class EventLog {
+    static final int RECORD_BYTES = 32;
+    static final int SEGMENT_RECORDS = 1 << 15;
+
+    // the offsets of the fields in a record
+    private static final int TIME_STAMP = 0;
+    private static final int VALUE = 8;
+    private static final int CLIENT_ID = 16;
+    private static final int ENTITY_ID = 20;
+    private static final int TYPE_CODE = 24;
+    private static final int FLAGS = 26;
+
+    private static final byte ACTUATOR = 1;
+    private static final byte TRUE = 2;
+
+    private final Path directory;
+    private final boolean createdDirectory;
+    private final List<Path> files;
+    private final List<MappedByteBuffer> segments;
+    private int size;
+    private boolean closed;
+
+    /*
+    Abstraction Function:
+    Represents a sequence of events kept outside the Java heap, in files in directory that are
+    mapped into memory, so that the operating system pages them in when they are read and out when memory
+    is needed. The i-th event is the (i % SEGMENT_RECORDS)-th record of segments.get(i / SEGMENT_RECORDS),
+    which is mapped from files.get(i / SEGMENT_RECORDS). Every record is RECORD_BYTES long:
+
+    - TIME_STAMP: double timestamp
+    - VALUE: double value
+    - CLIENT_ID: int client id
+    - ENTITY_ID: int entity id
+    - TYPE_CODE: unsigned short code of the entity type, given by EntityTypes
+    - FLAGS: byte, with ACTUATOR set for an ActuatorEvent and TRUE set if its boolean value is true
+
+    The entity type codes are only meaningful in the running program, so a log is deleted when it is closed,
+    along with directory if the log created it.
+
+    Representation Invariant:
+    - directory, files, and segments are not null
+    - files.size() == segments.size(), and every segment holds SEGMENT_RECORDS records
+    - 0 <= size <= segments.size() * SEGMENT_RECORDS
+    - segments.size() == 0 or size > (segments.size() - 1) * SEGMENT_RECORDS
+    - if closed is true, files and segments are empty and size == 0
+
+    Thread Safety Arguments:
+    - an EventLog is not thread safe, and is only used by the thread that uses its Server
+     */
+
+    /** Create a new empty EventLog that keeps its files in a directory
+     *
+     * @param directory the directory to keep the files in, which is created if it does not exist, is not null
+     * @throws IOException if the directory could not be created
+     */
+    EventLog(Path directory) throws IOException {
+        this.createdDirectory = !Files.isDirectory(directory);
+        this.directory = Files.createDirectories(directory);
+        this.files = new ArrayList<>();
+        this.segments = new ArrayList<>();
+        this.size = 0;
+        this.closed = false;
+    }
+
+    /** Get the number of events in the log
+     *
+     * @return the number of events in the log
+     */
+    int size() {
+        return size;
+    }
+
+    /** Add an event after the last event of the log
+     *
+     * @param event the event to add, is not null
+     * @throws UncheckedIOException if a new file for the log could not be created
+     */
+    void append(Event event) {
+        boolean actuator = event instanceof ActuatorEvent;
+        append(event.getTimeStamp(), event.getValueDouble(), event.getClientId(), event.getEntityId(),
+                event.getEntityTypeCode(), actuator, actuator && event.getValueBoolean());
+    }
+
+    /** Add a range of the events of an EventColumns after the last event of the log
+     *
+     * @param columns the columns that hold the events, is not null
+     * @param from the position of the first event to add, 0 <= from <= to
+     * @param to the position after the last event to add, to <= columns.size()
+     * @throws UncheckedIOException if a new file for the log could not be created
+     */
+    void append(EventColumns columns, int from, int to) {
+        for (int i = from; i < to; i++) {
+            append(columns.getTimeStamp(i), columns.getValue(i), columns.getClientId(i), columns.getEntityId(i),
+                    columns.getEntityTypeCode(i), columns.isActuator(i), columns.getBooleanValue(i));
+        }
+    }
+
+    private void append(double timeStamp, double value, int clientId, int entityId, int entityTypeCode,
+                        boolean actuator, boolean booleanValue) {
+        reserve(1);
+        put(size, timeStamp, value, clientId, entityId, entityTypeCode, actuator, booleanValue);
+        size++;
+    }
+
+    /** Merge events into the log, each after the events of the log that it is equal to in the order of
+     *  timestamps, then entity ids. The records are merged from the last back, in place, so only the records
+     *  of the log from the position of the earliest of the events on are moved.
+     *
+     * @param columns the events to merge, in the order of timestamps, then entity ids, is not null
+     * @throws UncheckedIOException if a new file for the log could not be created
+     */
+    void merge(EventColumns columns) {
+        int count = columns.size();
+        reserve(count);
+        int i = size - 1;
+        int j = count - 1;
+        size += count;
+        byte[] record = new byte[RECORD_BYTES];
+        for (int w = size - 1; j >= 0; w--) {
+            if (i >= 0 && comesAfter(i, columns, j)) {
+                segments.get(i / SEGMENT_RECORDS).get((i % SEGMENT_RECORDS) * RECORD_BYTES, record);
+                segments.get(w / SEGMENT_RECORDS).put((w % SEGMENT_RECORDS) * RECORD_BYTES, record);
+                i--;
+            } else {
+                put(w, columns.getTimeStamp(j), columns.getValue(j), columns.getClientId(j), columns.getEntityId(j),
+                        columns.getEntityTypeCode(j), columns.isActuator(j), columns.getBooleanValue(j));
+                j--;
+            }
+        }
+    }
+
+    private boolean comesAfter(int index, EventColumns columns, int columnIndex) {
+        int byTime = Double.compare(getTimeStamp(index), columns.getTimeStamp(columnIndex));
+        if (byTime != 0) {
+            return byTime > 0;
+        }
+        return getEntityId(index) > columns.getEntityId(columnIndex);
+    }
+
+    /** Make sure that the segments have room for more records after the last event
+     *
+     * @param count the number of records to make room for, >= 0
+     */
+    private void reserve(int count) {
+        if (closed) {
+            throw new IllegalStateException("The event log is closed");
+        }
+        while ((long) segments.size() * SEGMENT_RECORDS < (long) size + count) {
+            addSegment();
+        }
+    }
+
+    private void put(int index, double timeStamp, double value, int clientId, int entityId, int entityTypeCode,
+                     boolean actuator, boolean booleanValue) {
+        MappedByteBuffer segment = segments.get(index / SEGMENT_RECORDS);
+        int offset = (index % SEGMENT_RECORDS) * RECORD_BYTES;
+        segment.putDouble(offset + TIME_STAMP, timeStamp);
+        segment.putDouble(offset + VALUE, value);
+        segment.putInt(offset + CLIENT_ID, clientId);
+        segment.putInt(offset + ENTITY_ID, entityId);
+        segment.putShort(offset + TYPE_CODE, (short) entityTypeCode);
+        segment.put(offset + FLAGS, (byte) ((actuator ? ACTUATOR : 0) | (booleanValue ? TRUE : 0)));
+    }
+
+    private void addSegment() {
+        Path file = directory.resolve(String.format("segment-%06d.log", segments.size()));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // the mapping stays valid after the channel is closed
+            segments.add(channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) SEGMENT_RECORDS * RECORD_BYTES));
+            files.add(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create " + file, e);
+        }
+    }
+
+    /** Get the timestamp of an event
+     *
+     * @param index the position of the event, 0 <= index < size()
+     * @return the timestamp of the event
+     */
+    double getTimeStamp(int index) {
+        checkIndex(index);
+        return segments.get(index / SEGMENT_RECORDS).getDouble((index % SEGMENT_RECORDS) * RECORD_BYTES + TIME_STAMP);
+    }
+
+    /** Get the entity id of an event
+     *
+     * @param index the position of the event, 0 <= index < size()
+     * @return the entity id of the event
+     */
+    int getEntityId(int index) {
+        checkIndex(index);
+        return segments.get(index / SEGMENT_RECORDS).getInt((index % SEGMENT_RECORDS) * RECORD_BYTES + ENTITY_ID);
+    }
+
+    /** Get an event, created from its record
+     *
+     * @param index the position of the event, 0 <= index < size()
+     * @return a new Event equal to the event at that position
+     */
+    Event get(int index) {
+        checkIndex(index);
+        MappedByteBuffer segment = segments.get(index / SEGMENT_RECORDS);
+        int offset = (index % SEGMENT_RECORDS) * RECORD_BYTES;
+        double timeStamp = segment.getDouble(offset + TIME_STAMP);
+        int clientId = segment.getInt(offset + CLIENT_ID);
+        int entityId = segment.getInt(offset + ENTITY_ID);
+        int entityTypeCode = Short.toUnsignedInt(segment.getShort(offset + TYPE_CODE));
+        byte flags = segment.get(offset + FLAGS);
+        if ((flags & ACTUATOR) != 0) {
+            return new ActuatorEvent(timeStamp, clientId, entityId, entityTypeCode, (flags & TRUE) != 0);
+        }
+        return new SensorEvent(timeStamp, clientId, entityId, entityTypeCode, segment.getDouble(offset + VALUE));
+    }
+
+    /** Add a range of the events of the log after the last event of an EventColumns
+     *
+     * @param columns the columns to add the events to, is not null
+     * @param from the position of the first event to add, 0 <= from <= to
+     * @param to the position after the last event to add, to <= size()
+     */
+    void readInto(EventColumns columns, int from, int to) {
+        if (from < to) {
+            checkIndex(from);
+            checkIndex(to - 1);
+        }
+        for (int i = from; i < to; i++) {
+            MappedByteBuffer segment = segments.get(i / SEGMENT_RECORDS);
+            int offset = (i % SEGMENT_RECORDS) * RECORD_BYTES;
+            byte flags = segment.get(offset + FLAGS);
+            columns.add(segment.getDouble(offset + TIME_STAMP), segment.getDouble(offset + VALUE),
+                    segment.getInt(offset + CLIENT_ID), segment.getInt(offset + ENTITY_ID),
+                    Short.toUnsignedInt(segment.getShort(offset + TYPE_CODE)),
+                    (flags & ACTUATOR) != 0, (flags & TRUE) != 0);
+        }
+    }
+
+    /** Find the position of the first event with a timestamp >= the given timestamp, in a log whose
+     *  events are in timestamp order
+     *
+     * @param timeStamp the timestamp to search for
+     * @return the position of the first event whose timestamp is >= timeStamp, or size() if there is none
+     */
+    int lowerBound(double timeStamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getTimeStamp(mid) < timeStamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** Find the position of the first event with a timestamp > the given timestamp, in a log whose
+     *  events are in timestamp order
+     *
+     * @param timeStamp the timestamp to search for
+     * @return the position of the first event whose timestamp is > timeStamp, or size() if there is none
+     */
+    int upperBound(double timeStamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getTimeStamp(mid) <= timeStamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** Remove all the events of the log and delete its files, and its directory if the log created it.
+     *  The log cannot be used afterwards. The mappings of the files are dropped first, so that they can be
+     *  unmapped; a file that cannot be deleted while it is still mapped is deleted when the JVM exits.
+     *
+     */
+    void close() {
+        segments.clear();
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                file.toFile().deleteOnExit();
+            }
+        }
+        files.clear();
+        size = 0;
+        closed = true;
+        if (createdDirectory) {
+            try {
+                Files.deleteIfExists(directory);
+            } catch (IOException e) {
+                // the directory is kept if a file in it could not be deleted yet
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + size + " events");
+        }
+    }
+}
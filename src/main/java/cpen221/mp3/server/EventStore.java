@@ -0,0 +1,589 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.event.Event;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+class EventStore {
+    private static final int LAST_N_BLOCK = 1024;
+    // the max number of events read from the log into the heap at once
+    private static final int LOG_BLOCK = EventLog.SEGMENT_RECORDS;
+
+    private final EventColumns hot;
+    private final EventColumns late;
+    private EventLog log;
+    private int hotCapacity;
+    private final EntityIndex index;
+    private final EntityIndex lateIndex;
+
+    /*
+    Abstraction Function:
+    Represents every event that a Server has received for its Client, kept in the order of the original
+    timestamps of the events. Events with equal timestamps are ordered by their entity id, so that the event
+    with the largest entity id comes last. The events are kept only column by column, so that timestamps can
+    be searched and Filters can check many events without calling methods on them, and Event objects are only
+    created for the events that a query returns.
+
+    If log is null, every event is in hot, and the i-th event of hot is the i-th event. Otherwise the older
+    events are moved out of the heap into log, which is followed by the latest events in hot: when hot holds
+    more than hotCapacity events, all but the latest hotCapacity / 2 are appended to log. An event that comes
+    before the last event of log cannot be appended to log, so it is kept in late instead, until hot and late
+    hold more than hotCapacity events together, when all of late is merged into log at once. The events are
+    then the events of log followed by the events of hot, merged with the events of late, where an event of
+    late comes after the events of log and hot that it is equal to in the order of compare.
+
+    index holds the positions of the events of each entity among the events of log followed by the events of
+    hot, where the i-th event of hot is at position log.size() + i, or i if log is null, and lateIndex holds
+    the positions of the events of each entity in late. Moving events from the start of hot to the end of log
+    does not change their positions.
+
+    Representation Invariant:
+    - hot, late, index, and lateIndex are not null
+    - index.size() == log.size() + hot.size(), or hot.size() if log is null, and lateIndex.size() == late.size()
+    - every position in index and lateIndex is the position of an event of the entity it is held for
+    - the events of hot, of late, and of log are each in the order of compare
+    - if log is null, late is empty
+    - if log is not null, hotCapacity >= 2, hot.size() + late.size() <= hotCapacity, and the last event of log,
+      if any, does not come after the first event of hot in the order of compare, and comes after every event
+      of late
+     */
+
+    /** Create a new empty EventStore that keeps all its events in the heap
+     *
+     */
+    EventStore() {
+        this.hot = new EventColumns();
+        this.late = new EventColumns();
+        this.log = null;
+        this.hotCapacity = Integer.MAX_VALUE;
+        this.index = new EntityIndex();
+        this.lateIndex = new EntityIndex();
+    }
+
+    /** Create a new empty EventStore that keeps only its latest events in the heap, and the older
+     *  events in an EventLog
+     *
+     * @param log the empty EventLog to move the older events into, is not null
+     * @param hotCapacity the max number of latest events to keep in the heap, >= 2
+     * @throws IllegalArgumentException if hotCapacity < 2
+     */
+    EventStore(EventLog log, int hotCapacity) {
+        this();
+        useLog(log, hotCapacity);
+    }
+
+    /** Keep only the latest events of the store in the heap from now on, and move the older events,
+     *  including the ones already in the store, into an EventLog
+     *
+     * @param log the empty EventLog to move the older events into, is not null
+     * @param hotCapacity the max number of latest events to keep in the heap, >= 2
+     * @throws IllegalArgumentException if hotCapacity < 2
+     * @throws IllegalStateException if the store already has a log
+     */
+    void useLog(EventLog log, int hotCapacity) {
+        if (hotCapacity < 2) {
+            throw new IllegalArgumentException("At least 2 events must be kept in the heap");
+        }
+        if (this.log != null) {
+            throw new IllegalStateException("The store already has an event log");
+        }
+        this.log = log;
+        this.hotCapacity = hotCapacity;
+        spill();
+    }
+
+    /** Move all the events of the store's log back into the heap, and close the log and delete its files.
+     *  Does nothing if the store has no log.
+     *
+     */
+    void closeLog() {
+        if (log == null) {
+            return;
+        }
+        List<Event> events = getEvents();
+        log.close();
+        log = null;
+        hotCapacity = Integer.MAX_VALUE;
+        hot.removeFirst(hot.size());
+        late.removeFirst(late.size());
+        index.truncate(0);
+        lateIndex.truncate(0);
+        for (Event event : events) {
+            index.insert(event.getEntityId(), hot.size());
+            hot.add(event);
+        }
+    }
+
+    /** Compare an event in some columns with another event by their timestamps, breaking ties by their entity ids
+     *
+     * @param columns the columns that hold the event, is not null
+     * @param index the position of the event in the columns, 0 <= index < columns.size()
+     * @param event the other event, is not null
+     * @return a negative number if the event in the columns comes before the other event, a positive number
+     *         if it comes after, 0 otherwise
+     */
+    private static int compare(EventColumns columns, int index, Event event) {
+        int byTime = Double.compare(columns.timeStampColumn()[index], event.getTimeStamp());
+        if (byTime != 0) {
+            return byTime;
+        }
+        return Integer.compare(columns.getEntityId(index), event.getEntityId());
+    }
+
+    /** Compare two events by their timestamps, breaking ties by their entity ids
+     *
+     * @return a negative number if a comes before b, a positive number if it comes after, 0 otherwise
+     */
+    private static int compare(Event a, Event b) {
+        int byTime = Double.compare(a.getTimeStamp(), b.getTimeStamp());
+        if (byTime != 0) {
+            return byTime;
+        }
+        return Integer.compare(a.getEntityId(), b.getEntityId());
+    }
+
+    /** Add an event to the store. Events normally arrive in timestamp order, in which case this
+     *  is an append, otherwise the event is inserted at its position found by binary search.
+     *
+     * @param event the event to add, is not null
+     */
+    void add(Event event) {
+        if (log != null && log.size() > 0 && comesBeforeLog(event)) {
+            lateIndex.insert(event.getEntityId(), insert(late, event));
+        } else {
+            index.insert(event.getEntityId(), logSize() + insert(hot, event));
+        }
+        spill();
+    }
+
+    private int logSize() {
+        return log == null ? 0 : log.size();
+    }
+
+    /** Get an event among the events of the log followed by the events of hot
+     *
+     * @param position the position of the event, 0 <= position < index.size()
+     * @return the event at that position
+     */
+    private Event get(int position) {
+        int logSize = logSize();
+        return position < logSize ? log.get(position) : hot.get(position - logSize);
+    }
+
+    /** Get the entity id of an event among the events of the log followed by the events of hot
+     *
+     * @param position the position of the event, 0 <= position < index.size()
+     * @return the entity id of the event at that position
+     */
+    private int getEntityId(int position) {
+        int logSize = logSize();
+        return position < logSize ? log.getEntityId(position) : hot.getEntityId(position - logSize);
+    }
+
+    /** If hot and late hold more than hotCapacity events together, merge the events of late into the log,
+     *  and move all but the latest hotCapacity / 2 events of hot to the end of the log
+     *
+     */
+    private void spill() {
+        if (log == null || hot.size() + late.size() <= hotCapacity) {
+            return;
+        }
+        if (late.size() > 0) {
+            // the events from the position of the earliest event of late on move, so their positions are
+            // indexed again
+            int from = log.size();
+            while (from > 0 && compare(late, 0, log.get(from - 1)) < 0) {
+                from--;
+            }
+            log.merge(late);
+            late.removeFirst(late.size());
+            lateIndex.truncate(0);
+            index.truncate(from);
+            for (int position = from; position < log.size() + hot.size(); position++) {
+                index.insert(getEntityId(position), position);
+            }
+        }
+        if (hot.size() > hotCapacity / 2) {
+            int count = hot.size() - hotCapacity / 2;
+            log.append(hot, 0, count);
+            hot.removeFirst(count);
+        }
+    }
+
+    /** Get the number of events that the store keeps in the heap
+     *
+     * @return the number of events kept in the heap, which is at most the max number of latest events to
+     *         keep in the heap if the store has a log
+     */
+    int heapSize() {
+        return hot.size() + late.size();
+    }
+
+    private boolean comesBeforeLog(Event event) {
+        int last = log.size() - 1;
+        int byTime = Double.compare(event.getTimeStamp(), log.getTimeStamp(last));
+        if (byTime != 0) {
+            return byTime < 0;
+        }
+        return event.getEntityId() < log.getEntityId(last);
+    }
+
+    /** Insert an event into some columns after the events that do not come after it
+     *
+     * @param columns the columns to insert the event into, which are in the order of compare, is not null
+     * @param event the event to insert, is not null
+     * @return the position of the event in the columns
+     */
+    private static int insert(EventColumns columns, Event event) {
+        int size = columns.size();
+        if (size == 0 || compare(columns, size - 1, event) <= 0) {
+            columns.add(event);
+            return size;
+        }
+        // find the first event that comes strictly after the new event
+        int low = 0;
+        int high = size - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(columns, mid, event) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        columns.insert(low, event);
+        return low;
+    }
+
+    /** Find the index of the first event with a timestamp >= the given timestamp
+     *
+     * @param columns the columns to search, which are in timestamp order, is not null
+     * @param timeStamp the timestamp to search for
+     * @return the index of the first event whose timestamp is >= timeStamp, or columns.size() if there is none
+     */
+    private static int lowerBound(EventColumns columns, double timeStamp) {
+        double[] timeStamps = columns.timeStampColumn();
+        int low = 0;
+        int high = columns.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timeStamps[mid] < timeStamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** Find the index of the first event with a timestamp > the given timestamp
+     *
+     * @param columns the columns to search, which are in timestamp order, is not null
+     * @param timeStamp the timestamp to search for
+     * @return the index of the first event whose timestamp is > timeStamp, or columns.size() if there is none
+     */
+    private static int upperBound(EventColumns columns, double timeStamp) {
+        double[] timeStamps = columns.timeStampColumn();
+        int low = 0;
+        int high = columns.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timeStamps[mid] <= timeStamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** Get the number of events in the store
+     *
+     * @return the number of events in the store
+     */
+    int size() {
+        return hot.size() + late.size() + (log == null ? 0 : log.size());
+    }
+
+    /** Check whether the store has any events
+     *
+     * @return true if the store has no events, false otherwise
+     */
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /** Check whether the store keeps its older events in an EventLog
+     *
+     * @return true if the store has an EventLog, false if it keeps all its events in the heap
+     */
+    boolean hasLog() {
+        return log != null;
+    }
+
+    /** Get the latest event in the store. If several events share the latest timestamp,
+     *  the one with the largest entity id is returned.
+     *
+     * @return the latest event, or null if the store is empty
+     */
+    Event latest() {
+        if (hot.size() > 0) {
+            return hot.get(hot.size() - 1);
+        }
+        List<Event> latest = lastN(1);
+        return latest.isEmpty() ? null : latest.get(0);
+    }
+
+    /** Get the latest n events in the store, in timestamp order. If several events share the
+     *  timestamp at the boundary, the ones with the largest entity ids are included.
+     *
+     * @param n the max number of events to return, >= 0
+     * @return a new list of the latest min(n, size()) events, earliest first
+     */
+    List<Event> lastN(int n) {
+        return latest(n, null);
+    }
+
+    /** Get the latest n events in the store that satisfy a filter, in timestamp order. The filter
+     *  checks the events in the columns of the store, from the latest back, in blocks that double
+     *  in size until n events are found. Events in the log are read back into the heap a block at a time.
+     *
+     * @param n the max number of events to return, >= 0
+     * @param filter the filter that the events must satisfy, is not null
+     * @return a new list of the latest min(n, number of events that satisfy the filter) events that
+     *         satisfy the filter, earliest first
+     */
+    List<Event> lastN(int n, Filter filter) {
+        return latest(n, filter);
+    }
+
+    private List<Event> latest(int n, Filter filter) {
+        List<Event> selected = new ArrayList<>();
+        selectLast(hot, n, filter, selected);
+        if (log != null) {
+            for (int to = log.size(); to > 0 && selected.size() < n; to -= LOG_BLOCK) {
+                EventColumns block = new EventColumns();
+                log.readInto(block, Math.max(0, to - LOG_BLOCK), to);
+                selectLast(block, n, filter, selected);
+            }
+        }
+        Collections.reverse(selected);
+        if (late.size() == 0) {
+            return selected;
+        }
+        List<Event> lateSelected = new ArrayList<>();
+        selectLast(late, n, filter, lateSelected);
+        Collections.reverse(lateSelected);
+        List<Event> merged = merge(selected, lateSelected);
+        return new ArrayList<>(merged.subList(Math.max(0, merged.size() - n), merged.size()));
+    }
+
+    /** Add the latest events of some columns that satisfy a filter to a list, latest first, until the
+     *  list has n events
+     *
+     * @param columns the columns that hold the events, is not null
+     * @param n the number of events the list may hold, >= 0
+     * @param filter the filter that the events must satisfy, or null if every event satisfies it
+     * @param selected the list to add the events to, is not null
+     */
+    private static void selectLast(EventColumns columns, int n, Filter filter, List<Event> selected) {
+        int to = columns.size();
+        int block = LAST_N_BLOCK;
+        while (to > 0 && selected.size() < n) {
+            int from = Math.max(0, to - block);
+            if (filter == null) {
+                for (int i = to - 1; i >= from && selected.size() < n; i--) {
+                    selected.add(columns.get(i));
+                }
+            } else {
+                BitSet satisfied = filter.select(columns, from, to);
+                for (int i = satisfied.previousSetBit(to - 1); i >= from && selected.size() < n; i = satisfied.previousSetBit(i - 1)) {
+                    selected.add(columns.get(i));
+                }
+            }
+            to = from;
+            block *= 2;
+        }
+    }
+
+    /** Get all the events whose timestamps are within the given bounds, in timestamp order.
+     *
+     * @param startTime the start of the window, inclusive
+     * @param endTime the end of the window, inclusive
+     * @return a new list of the events within the window, earliest first
+     */
+    List<Event> inWindow(double startTime, double endTime) {
+        return window(startTime, endTime, null);
+    }
+
+    /** Get all the events whose timestamps are within the given bounds and that satisfy a filter,
+     *  in timestamp order. The filter checks the events in the columns of the store, and events in
+     *  the log are read back into the heap a block at a time.
+     *
+     * @param startTime the start of the window, inclusive
+     * @param endTime the end of the window, inclusive
+     * @param filter the filter that the events must satisfy, is not null
+     * @return a new list of the events within the window that satisfy the filter, earliest first
+     */
+    List<Event> inWindow(double startTime, double endTime, Filter filter) {
+        return window(startTime, endTime, filter);
+    }
+
+    private List<Event> window(double startTime, double endTime, Filter filter) {
+        List<Event> selected = new ArrayList<>();
+        if (endTime < startTime) {
+            return selected;
+        }
+        if (log != null) {
+            int to = log.upperBound(endTime);
+            for (int from = log.lowerBound(startTime); from < to; from += LOG_BLOCK) {
+                EventColumns block = new EventColumns();
+                log.readInto(block, from, Math.min(to, from + LOG_BLOCK));
+                select(block, 0, block.size(), filter, selected);
+            }
+        }
+        select(hot, lowerBound(hot, startTime), upperBound(hot, endTime), filter, selected);
+        if (late.size() == 0) {
+            return selected;
+        }
+        List<Event> lateSelected = new ArrayList<>();
+        select(late, lowerBound(late, startTime), upperBound(late, endTime), filter, lateSelected);
+        return merge(selected, lateSelected);
+    }
+
+    /** Add the events in a range of some columns that satisfy a filter to a list, in order
+     *
+     * @param columns the columns that hold the events, is not null
+     * @param from the position of the first event to check, 0 <= from <= to
+     * @param to the position after the last event to check, to <= columns.size()
+     * @param filter the filter that the events must satisfy, or null if every event satisfies it
+     * @param selected the list to add the events to, is not null
+     */
+    private static void select(EventColumns columns, int from, int to, Filter filter, List<Event> selected) {
+        if (filter == null) {
+            selected.addAll(columns.asList().subList(from, to));
+            return;
+        }
+        BitSet satisfied = filter.select(columns, from, to);
+        for (int i = satisfied.nextSetBit(from); i >= 0; i = satisfied.nextSetBit(i + 1)) {
+            selected.add(columns.get(i));
+        }
+    }
+
+    /** Merge two lists of events that are in the order of compare
+     *
+     * @param events the first list, is not null
+     * @param lateEvents the second list, whose events come after the equal events of the first list, is not null
+     * @return a new list of the events of both lists, in the order of compare
+     */
+    private static List<Event> merge(List<Event> events, List<Event> lateEvents) {
+        List<Event> merged = new ArrayList<>(events.size() + lateEvents.size());
+        int i = 0;
+        int j = 0;
+        while (i < events.size() && j < lateEvents.size()) {
+            if (compare(lateEvents.get(j), events.get(i)) < 0) {
+                merged.add(lateEvents.get(j++));
+            } else {
+                merged.add(events.get(i++));
+            }
+        }
+        merged.addAll(events.subList(i, events.size()));
+        merged.addAll(lateEvents.subList(j, lateEvents.size()));
+        return merged;
+    }
+
+    /** Get the latest events of one entity up to a timestamp, in timestamp order. The events are found
+     *  from the positions of the events of the entity, so this takes time proportional to n and the
+     *  logarithm of the number of events, however many events the other entities have.
+     *
+     * @param entityId the id of the entity
+     * @param endTime the latest timestamp of the events to return, inclusive
+     * @param n the max number of events to return, >= 0
+     * @return a new list of the latest n events of the entity with timestamps <= endTime, earliest first
+     */
+    List<Event> lastOfEntity(int entityId, double endTime, int n) {
+        List<Event> selected = new ArrayList<>();
+        int count = index.countBefore(entityId, upperBound(endTime));
+        for (int i = Math.max(0, count - n); i < count; i++) {
+            selected.add(get(index.get(entityId, i)));
+        }
+        if (late.size() == 0) {
+            return selected;
+        }
+        List<Event> lateSelected = new ArrayList<>();
+        int lateCount = lateIndex.countBefore(entityId, upperBound(late, endTime));
+        for (int i = Math.max(0, lateCount - n); i < lateCount; i++) {
+            lateSelected.add(late.get(lateIndex.get(entityId, i)));
+        }
+        List<Event> merged = merge(selected, lateSelected);
+        return new ArrayList<>(merged.subList(Math.max(0, merged.size() - n), merged.size()));
+    }
+
+    /** Get the earliest event of one entity after a timestamp, found from the positions of the events
+     *  of the entity
+     *
+     * @param entityId the id of the entity
+     * @param timeStamp the timestamp that the event must come after
+     * @return the earliest event of the entity with a timestamp > timeStamp, the earliest to arrive if several
+     *         share that timestamp, or null if there is none
+     */
+    Event nextOfEntity(int entityId, double timeStamp) {
+        Event next = null;
+        int count = index.countBefore(entityId, upperBound(timeStamp));
+        if (count < index.countBefore(entityId, index.size())) {
+            next = get(index.get(entityId, count));
+        }
+        Event lateNext = null;
+        int lateCount = lateIndex.countBefore(entityId, upperBound(late, timeStamp));
+        if (lateCount < lateIndex.countBefore(entityId, lateIndex.size())) {
+            lateNext = late.get(lateIndex.get(entityId, lateCount));
+        }
+        if (next == null || (lateNext != null && compare(lateNext, next) < 0)) {
+            return lateNext;
+        }
+        return next;
+    }
+
+    /** Find the position of the first event with a timestamp > the given timestamp among the events of the
+     *  log followed by the events of hot
+     *
+     * @param timeStamp the timestamp to search for
+     * @return the position of the first event whose timestamp is > timeStamp, or index.size() if there is none
+     */
+    private int upperBound(double timeStamp) {
+        int logSize = logSize();
+        if (logSize > 0) {
+            int position = log.upperBound(timeStamp);
+            if (position < logSize) {
+                return position;
+            }
+        }
+        return logSize + upperBound(hot, timeStamp);
+    }
+
+    /** Get a read-only view of all the events in the store, in timestamp order. Each event is
+     *  created from the columns of the store when it is read. If the store has a log, the events
+     *  are instead all read from it into a new list.
+     *
+     * @return an unmodifiable list of all the events in the store, earliest first
+     */
+    List<Event> getEvents() {
+        if (log == null) {
+            return hot.asList();
+        }
+        return Collections.unmodifiableList(window(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, null));
+    }
+
+    /** Remove all the events of the store's log, if it has one, and delete the log's files.
+     *  The store cannot be used afterwards if it has a log.
+     *
+     */
+    void close() {
+        if (log != null) {
+            log.close();
+        }
+    }
+}
@@ -5,6 +5,8 @@ import cpen221.mp3.event.Event;
 import cpen221.mp3.event.SensorEvent;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Objects;
 
@@ -21,8 +23,32 @@ enum BooleanOperator {
     NOT_EQUALS
 }
 
+enum LogicalOperator {
+    AND,
+    OR,
+    NOT
+}
+
 public class Filter {
-    // these two fields represent if the filter is complex
+    // the compiled criteria of a filter, the double comparisons are in the order of DoubleOperator
+    static final int NEVER = 0;
+    static final int BOOLEAN_EQUALS = 1;
+    static final int BOOLEAN_NOT_EQUALS = 2;
+    static final int VALUE_EQUALS = 3;
+    static final int VALUE_GREATER_THAN = 4;
+    static final int VALUE_LESS_THAN = 5;
+    static final int VALUE_GREATER_THAN_OR_EQUALS = 6;
+    static final int VALUE_LESS_THAN_OR_EQUALS = 7;
+    static final int TIMESTAMP_EQUALS = 8;
+    static final int TIMESTAMP_GREATER_THAN = 9;
+    static final int TIMESTAMP_LESS_THAN = 10;
+    static final int TIMESTAMP_GREATER_THAN_OR_EQUALS = 11;
+    static final int TIMESTAMP_LESS_THAN_OR_EQUALS = 12;
+    static final int ALL_OF = 13;
+    static final int ANY_OF = 14;
+    static final int NEGATION = 15;
+
+    // these two fields represent if the filter is composed of other filters
     private boolean complex;
     ComplexFilter complexFilter;
     private boolean actuatorCompatible; // true if filter can sift through actuators
@@ -33,15 +59,21 @@ public class Filter {
     private double doubleValue;
     private DoubleOperator doubleOperator;
     private String field;
+    private int compiled;
 
     /*
     Abstraction Function:
     Represents a filter which can be used on Events to determine whether or not the fulfill
-    certain criteria in their value and timestamp fields.
+    certain criteria in their value and timestamp fields. The field and operator of the criteria are
+    compiled into a single code, compiled, when the filter is constructed, so that checking an event
+    takes one switch on it instead of comparing fields and operators.
 
     Representation Invariant:
-    - field is not null
+    - field is "value" or "timestamp" if the filter compares a double field of events, and is null if the
+      filter is a boolean filter or is complex
     - complex is true iff complexFilter is not null
+    - if complex is true, compiled is ALL_OF, ANY_OF or NEGATION for the LogicalOperator of complexFilter,
+      otherwise it is the code of the field and operator of the filter
      */
 
     /** Determine the Filter that a string representation of a Filter represents
@@ -50,39 +82,80 @@ public class Filter {
      * @return the Filer that the serializedFilter represents
      */
     public static Filter unserialize(String serializedFilter) {
-        String[] serializedFilters = serializedFilter.split(";");
         List<Filter> filters = new ArrayList<>();
-        for (String serialized : serializedFilters) {
-            if (serialized.isEmpty()) {
-                continue;
-            }
-            String[] fields = serialized.split(":");
-            String type = fields[0];
-            String op = fields[1];
-            String value = fields[2];
-            if (type.equals("0")) {
-                BooleanOperator operator = BooleanOperator.values()[Integer.parseInt(op)];
-                boolean boolVal = Boolean.parseBoolean(value);
-                filters.add(new Filter(operator, boolVal));
+        int end = unserializeList(serializedFilter, 0, filters);
+        if (end != serializedFilter.length()) {
+            throw new IllegalArgumentException("Unexpected ')' at " + end + " in " + serializedFilter);
+        }
+        if (filters.size() == 1) {
+            return filters.get(0);
+        }
+        return new Filter(filters);
+    }
+
+    /** Determine the Filters that a list of string representations separated by ';' represents.
+     *  The list ends at a ')' that closes the list or at the end of the string.
+     *
+     * @param serialized the string that holds the list, is not null
+     * @param start the position of the start of the list in serialized
+     * @param filters the list to add the Filters to, is not null
+     * @return the position of the ')' that closes the list, or serialized.length()
+     */
+    private static int unserializeList(String serialized, int start, List<Filter> filters) {
+        int position = start;
+        while (position < serialized.length() && serialized.charAt(position) != ')') {
+            char first = serialized.charAt(position);
+            if (first == ';') {
+                position++;
                 continue;
             }
-            if (type.equals("1")) {
-                DoubleOperator operator = DoubleOperator.values()[Integer.parseInt(op)];
-                double doubleVal = Double.parseDouble(value);
-                filters.add(new Filter("value", operator, doubleVal));
+            if ((first == '&' || first == '|' || first == '!')
+                    && position + 1 < serialized.length() && serialized.charAt(position + 1) == '(') {
+                List<Filter> children = new ArrayList<>();
+                int close = unserializeList(serialized, position + 2, children);
+                if (close == serialized.length()) {
+                    throw new IllegalArgumentException("Missing ')' in " + serialized);
+                }
+                LogicalOperator operator = first == '&' ? LogicalOperator.AND
+                        : first == '|' ? LogicalOperator.OR : LogicalOperator.NOT;
+                filters.add(new Filter(operator, children));
+                position = close + 1;
                 continue;
             }
-            if (type.equals("2")) {
-                DoubleOperator operator = DoubleOperator.values()[Integer.parseInt(op)];
-                double doubleVal = Double.parseDouble(value);
-                filters.add(new Filter("timestamp", operator, doubleVal));
-                continue;
+            int end = position;
+            while (end < serialized.length() && serialized.charAt(end) != ';' && serialized.charAt(end) != ')') {
+                end++;
             }
+            filters.add(unserializeSimple(serialized.substring(position, end)));
+            position = end;
         }
-        if (filters.size() == 1) {
-            return filters.get(0);
+        return position;
+    }
+
+    /** Determine the Filter on a single field that a string representation represents
+     *
+     * @param serialized the string representation of the filter, type:operator:value, is not null
+     * @return the Filter that serialized represents
+     */
+    private static Filter unserializeSimple(String serialized) {
+        String[] fields = serialized.split(":");
+        String type = fields[0];
+        String op = fields[1];
+        String value = fields[2];
+        if (type.equals("0")) {
+            BooleanOperator operator = BooleanOperator.values()[Integer.parseInt(op)];
+            boolean boolVal = Boolean.parseBoolean(value);
+            return new Filter(operator, boolVal);
         }
-        return new Filter(filters);
+        DoubleOperator operator = DoubleOperator.values()[Integer.parseInt(op)];
+        double doubleVal = Double.parseDouble(value);
+        if (type.equals("1")) {
+            return new Filter("value", operator, doubleVal);
+        }
+        if (type.equals("2")) {
+            return new Filter("timestamp", operator, doubleVal);
+        }
+        throw new IllegalArgumentException(type + " is not a correct filter type");
     }
 
     /**
@@ -103,6 +176,7 @@ public class Filter {
         this.booleanFilter = true;
         this.actuatorCompatible = true;
         this.sensorCompatible = false;
+        this.compiled = compileBoolean(operator);
     }
 
     /**
@@ -137,6 +211,7 @@ public class Filter {
         this.doubleOperator = operator;
         this.doubleValue = value;
         this.booleanFilter = false;
+        this.compiled = compileDouble(field, operator);
     }
     
     /**
@@ -147,63 +222,136 @@ public class Filter {
      * @param filters the list of filters to use in the composition
      */
     public Filter(List<Filter> filters) {
-        this.complexFilter = new ComplexFilter(filters);
-        this.complex = true;
+        this(LogicalOperator.AND, filters);
     }
 
     /**
-     * Returns true if the given event satisfies the filter criteria.
+     * Constructs a filter that combines other filters with the given LogicalOperator.
+     * A LogicalOperator can be one of the following:
      *
-     * @param event the event to check
-     * @return true if the event satisfies the filter criteria, false otherwise
+     * LogicalOperator.AND, satisfied if all the filters are satisfied
+     * LogicalOperator.OR, satisfied if any of the filters is satisfied
+     * LogicalOperator.NOT, satisfied if its only filter is not satisfied
+     *
+     * The filters are checked in the order that is cheapest for the events seen so far,
+     * which can differ from the order of the list.
+     *
+     * @param operator the LogicalOperator to combine the filters with, is not null
+     * @param filters the list of filters to combine, is not null
+     *
+     * @throws IllegalArgumentException if the operator is NOT and there is not exactly one filter
      */
-    public boolean satisfies(Event event) {
-        if (this.complex) {
-            return this.complexFilter.satisfies(event);
+    public Filter(LogicalOperator operator, List<Filter> filters) {
+        if (operator == LogicalOperator.NOT && filters.size() != 1) {
+            throw new IllegalArgumentException("NOT takes exactly one filter, not " + filters.size());
         }
-        // if the event is an actuator event and the filter is not actuator compatible
-        if (event instanceof ActuatorEvent && !this.actuatorCompatible) {
-            return false;
+        this.complexFilter = new ComplexFilter(operator, filters);
+        this.complex = true;
+        this.compiled = switch (operator) {
+            case AND -> ALL_OF;
+            case OR -> ANY_OF;
+            case NOT -> NEGATION;
+        };
+    }
+
+    /** Compile the criteria of a boolean filter
+     *
+     * @param operator the BooleanOperator to compare the event value with the given value
+     * @return the compiled criteria
+     */
+    private static int compileBoolean(BooleanOperator operator) {
+        if (operator == BooleanOperator.EQUALS) {
+            return BOOLEAN_EQUALS;
         }
-        // if the event is a sensor event and the filter is not sensor compatible
-        if (event instanceof SensorEvent && !this.sensorCompatible) {
-            return false;
+        if (operator == BooleanOperator.NOT_EQUALS) {
+            return BOOLEAN_NOT_EQUALS;
         }
+        return NEVER;
+    }
 
-        if (this.booleanFilter) {
-            if (this.booleanOperator.equals(BooleanOperator.EQUALS)) {
-                return event.getValueBoolean() == this.booleanValue;
-            } else if (this.booleanOperator.equals(BooleanOperator.NOT_EQUALS)) {
-                return event.getValueBoolean() != this.booleanValue;
-            }
+    /** Compile the criteria of a filter on a double field
+     *
+     * @param field the field to match, "value" or "timestamp"
+     * @param operator the DoubleOperator to compare the field with the given value, is not null
+     * @return the compiled criteria
+     */
+    private static int compileDouble(String field, DoubleOperator operator) {
+        int first = field.equals("value") ? VALUE_EQUALS : TIMESTAMP_EQUALS;
+        return first + operator.ordinal();
+    }
+
+    /** Get the compiled criteria of the filter
+     *
+     * @return the code of the field and operator of the filter, or if the filter is complex, ALL_OF
+     *         if its LogicalOperator is AND, ANY_OF if it is OR, and NEGATION if it is NOT
+     */
+    int getCriteria() {
+        return this.compiled;
+    }
+
+    /** Get the double value that a filter on a double field compares events with
+     *
+     * @return the double value of the criteria
+     */
+    double getDoubleValue() {
+        return this.doubleValue;
+    }
+
+    /** Get the boolean value that a boolean filter compares events with
+     *
+     * @return the boolean value of the criteria
+     */
+    boolean getBooleanValue() {
+        return this.booleanValue;
+    }
+
+    /** Estimate the cost of checking an event against the filter, in the number of
+     *  comparisons on event fields that it may take
+     *
+     * @return the estimated cost of checking an event, >= 1
+     */
+    int getCost() {
+        if (!this.complex) {
+            return 1;
         }
-        else if (this.field.equals("value")) {
-            if (this.doubleOperator.equals(DoubleOperator.EQUALS)) {
-                return event.getValueDouble() == this.doubleValue;
-            } else if (this.doubleOperator.equals(DoubleOperator.GREATER_THAN)) {
-                return event.getValueDouble() > this.doubleValue;
-            } else if (this.doubleOperator.equals(DoubleOperator.LESS_THAN)) {
-                return event.getValueDouble() < this.doubleValue;
-            } else if (this.doubleOperator.equals(DoubleOperator.GREATER_THAN_OR_EQUALS)) {
-                return event.getValueDouble() >= this.doubleValue;
-            } else if (this.doubleOperator.equals(DoubleOperator.LESS_THAN_OR_EQUALS)) {
-                return event.getValueDouble() <= this.doubleValue;
-            }
-        } else if (this.field.equals("timestamp")) {
-            if (this.doubleOperator.equals(DoubleOperator.EQUALS)) {
-                return event.getTimeStamp() == this.doubleValue;
-            } else if (this.doubleOperator.equals(DoubleOperator.GREATER_THAN)) {
-                return event.getTimeStamp() > this.doubleValue;
-            } else if (this.doubleOperator.equals(DoubleOperator.LESS_THAN)) {
-                return event.getTimeStamp() < this.doubleValue;
-            } else if (this.doubleOperator.equals(DoubleOperator.GREATER_THAN_OR_EQUALS)) {
-                return event.getTimeStamp() >= this.doubleValue;
-            } else if (this.doubleOperator.equals(DoubleOperator.LESS_THAN_OR_EQUALS)) {
-                return event.getTimeStamp() <= this.doubleValue;
-            }
+        return this.complexFilter.getCost();
+    }
+
+    /** Get the filters that a complex filter is composed of
+     *
+     * @return the filters of the complex filter, which must not be modified, or an empty array if
+     *         the filter is not complex
+     */
+    Filter[] getChildren() {
+        if (!this.complex) {
+            return new Filter[0];
         }
+        return this.complexFilter.getCompiledFilters();
+    }
 
-        return false;
+    /**
+     * Returns true if the given event satisfies the filter criteria.
+     *
+     * @param event the event to check
+     * @return true if the event satisfies the filter criteria, false otherwise
+     */
+    public boolean satisfies(Event event) {
+        return switch (this.compiled) {
+            case BOOLEAN_EQUALS -> !(event instanceof SensorEvent) && event.getValueBoolean() == this.booleanValue;
+            case BOOLEAN_NOT_EQUALS -> !(event instanceof SensorEvent) && event.getValueBoolean() != this.booleanValue;
+            case VALUE_EQUALS -> !(event instanceof ActuatorEvent) && event.getValueDouble() == this.doubleValue;
+            case VALUE_GREATER_THAN -> !(event instanceof ActuatorEvent) && event.getValueDouble() > this.doubleValue;
+            case VALUE_LESS_THAN -> !(event instanceof ActuatorEvent) && event.getValueDouble() < this.doubleValue;
+            case VALUE_GREATER_THAN_OR_EQUALS -> !(event instanceof ActuatorEvent) && event.getValueDouble() >= this.doubleValue;
+            case VALUE_LESS_THAN_OR_EQUALS -> !(event instanceof ActuatorEvent) && event.getValueDouble() <= this.doubleValue;
+            case TIMESTAMP_EQUALS -> event.getTimeStamp() == this.doubleValue;
+            case TIMESTAMP_GREATER_THAN -> event.getTimeStamp() > this.doubleValue;
+            case TIMESTAMP_LESS_THAN -> event.getTimeStamp() < this.doubleValue;
+            case TIMESTAMP_GREATER_THAN_OR_EQUALS -> event.getTimeStamp() >= this.doubleValue;
+            case TIMESTAMP_LESS_THAN_OR_EQUALS -> event.getTimeStamp() <= this.doubleValue;
+            case ALL_OF, ANY_OF, NEGATION -> this.complexFilter.satisfies(event);
+            default -> false;
+        };
     }
 
     /**
@@ -254,6 +402,148 @@ public class Filter {
         return validEvents;
     }
 
+    /**
+     * Returns a bitmap of the events in the given columns that satisfy the filter criteria.
+     * Bit i of the bitmap is set iff the i-th event satisfies the filter criteria. The events are checked
+     * 64 at a time, straight from the columns, without creating or calling any Event.
+     *
+     * @param columns the events to check, is not null
+     * @return the bitmap of the events that satisfy the filter criteria
+     */
+    BitSet select(EventColumns columns) {
+        return select(columns, 0, columns.size());
+    }
+
+    /**
+     * Returns a bitmap of the events in a range of the given columns that satisfy the filter criteria.
+     * Bit i of the bitmap is set iff from <= i < to and the i-th event satisfies the filter criteria.
+     *
+     * @param columns the events to check, is not null
+     * @param from the position of the first event to check, 0 <= from <= to
+     * @param to the position after the last event to check, to <= columns.size()
+     * @return the bitmap of the events in the range that satisfy the filter criteria
+     */
+    BitSet select(EventColumns columns, int from, int to) {
+        if (from < 0 || from > to || to > columns.size()) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for " + columns.size() + " events");
+        }
+        long[] words = new long[(to + 63) >>> 6];
+        selectInto(columns, from, to, words);
+        return BitSet.valueOf(words);
+    }
+
+    /** Write the bitmap of the events in a range of the given columns that satisfy the filter criteria
+     *  into the words that hold the range. Bits outside the range in those words are cleared.
+     *
+     * @param columns the events to check, is not null
+     * @param from the position of the first event to check, 0 <= from < to
+     * @param to the position after the last event to check, to <= columns.size()
+     * @param words the bitmap to write to, with room for at least to bits, is not null
+     */
+    void selectInto(EventColumns columns, int from, int to, long[] words) {
+        if (from >= to) {
+            return;
+        }
+        long[] actuators = columns.actuatorBitmap();
+        long[] booleans = columns.booleanValueBitmap();
+        int firstWord = from >>> 6;
+        int lastWord = (to - 1) >>> 6;
+        switch (this.compiled) {
+            case BOOLEAN_EQUALS, BOOLEAN_NOT_EQUALS -> {
+                // the bits that are set in a word are the events whose boolean value is true
+                boolean matchSet = (this.compiled == BOOLEAN_EQUALS) == this.booleanValue;
+                for (int w = firstWord; w <= lastWord; w++) {
+                    long matching = matchSet ? booleans[w] : ~booleans[w];
+                    words[w] = actuators[w] & matching & rangeMask(w, from, to);
+                }
+            }
+            case VALUE_EQUALS, VALUE_GREATER_THAN, VALUE_LESS_THAN, VALUE_GREATER_THAN_OR_EQUALS, VALUE_LESS_THAN_OR_EQUALS -> {
+                compareColumn(columns.valueColumn(), this.compiled - VALUE_EQUALS, this.doubleValue, from, to, words);
+                for (int w = firstWord; w <= lastWord; w++) {
+                    words[w] &= ~actuators[w];
+                }
+            }
+            case TIMESTAMP_EQUALS, TIMESTAMP_GREATER_THAN, TIMESTAMP_LESS_THAN, TIMESTAMP_GREATER_THAN_OR_EQUALS, TIMESTAMP_LESS_THAN_OR_EQUALS ->
+                    compareColumn(columns.timeStampColumn(), this.compiled - TIMESTAMP_EQUALS, this.doubleValue, from, to, words);
+            case ALL_OF, ANY_OF, NEGATION -> this.complexFilter.selectInto(columns, from, to, words);
+            default -> {
+                for (int w = firstWord; w <= lastWord; w++) {
+                    words[w] = 0;
+                }
+            }
+        }
+    }
+
+    /** Get the bits of a word of a bitmap that are within a range
+     *
+     * @param word the index of the word
+     * @param from the first bit of the range
+     * @param to the bit after the last bit of the range, > from
+     * @return the word with exactly the bits of the range set
+     */
+    static long rangeMask(int word, int from, int to) {
+        long mask = -1L;
+        if (word == from >>> 6) {
+            mask &= -1L << from;
+        }
+        if (word == (to - 1) >>> 6) {
+            mask &= -1L >>> (-to);
+        }
+        return mask;
+    }
+
+    /** Compare a range of a column with a value, 64 elements at a time, with VectorKernels.compare if the
+     *  columns are vectorized. Otherwise each loop compares one element per iteration without branching,
+     *  so the JIT compiles it to a tight loop.
+     *
+     * @param column the column to compare, is not null
+     * @param operator the ordinal of the DoubleOperator to compare with
+     * @param value the value to compare with
+     * @param from the first element of the range
+     * @param to the element after the last element of the range, > from
+     * @param words the bitmap to write the results to, with room for at least to bits, is not null
+     */
+    private static void compareColumn(double[] column, int operator, double value, int from, int to, long[] words) {
+        if (EventColumns.isVectorized()) {
+            VectorKernels.compare(column, operator, value, from, to, words);
+            return;
+        }
+        int i = from;
+        while (i < to) {
+            int w = i >>> 6;
+            int end = Math.min(to, (w + 1) << 6);
+            long bits = 0;
+            switch (operator) {
+                case 0 -> {
+                    for (; i < end; i++) {
+                        bits |= (column[i] == value ? 1L : 0L) << i;
+                    }
+                }
+                case 1 -> {
+                    for (; i < end; i++) {
+                        bits |= (column[i] > value ? 1L : 0L) << i;
+                    }
+                }
+                case 2 -> {
+                    for (; i < end; i++) {
+                        bits |= (column[i] < value ? 1L : 0L) << i;
+                    }
+                }
+                case 3 -> {
+                    for (; i < end; i++) {
+                        bits |= (column[i] >= value ? 1L : 0L) << i;
+                    }
+                }
+                default -> {
+                    for (; i < end; i++) {
+                        bits |= (column[i] <= value ? 1L : 0L) << i;
+                    }
+                }
+            }
+            words[w] = bits;
+        }
+    }
+
     /**
      * field1
      * 0-boolean
@@ -265,16 +555,29 @@ public class Filter {
      *
      * field3
      * value (either double or boolean)
+     *
+     * The filters of an AND are each followed by ';'. The filters of an OR are written the same way
+     * between "|(" and ")", the filter of a NOT between "!(" and ")", and an AND inside an OR or
+     * a NOT between "&(" and ")".
      * @return serialized
      */
     @Override
     public String toString() {
         if (this.complex) {
+            LogicalOperator operator = complexFilter.getOperator();
             StringBuilder builder = new StringBuilder();
+            if (operator != LogicalOperator.AND) {
+                builder.append(operator == LogicalOperator.OR ? "|(" : "!(");
+            }
             for (Filter f : complexFilter.getFilters()) {
-                builder.append(f.toString());
+                // the filters of an AND inside an OR or a NOT are grouped, so they are not taken as its own
+                boolean grouped = operator != LogicalOperator.AND && f.compiled == ALL_OF;
+                builder.append(grouped ? "&(" + f + ")" : f.toString());
                 builder.append(";");
             }
+            if (operator != LogicalOperator.AND) {
+                builder.append(")");
+            }
             return builder.toString();
         }
         String field1 = booleanFilter ? "0" : Objects.equals(field, "value") ? "1" : "2";
@@ -305,21 +608,89 @@ public class Filter {
     }
 }
 class ComplexFilter {
-    private List<Filter> filters;
+    // how often the filters are all checked to measure how often each one decides the result
+    private static final int SAMPLE_INTERVAL = 64;
+    // how many measurements are taken before the filters are put in a new order
+    private static final int SAMPLES_PER_ORDER = 64;
+
+    private final LogicalOperator operator;
+    private final List<Filter> filters;
+    private final Filter[] compiledFilters;
+    private final int[] costs;
+    private final int cost;
+    private final ThreadLocal<Sampler> samplers;
+
+    /** The order that one thread checks the filters in, and the samples that it chooses the order from.
+     *  It does not refer to its ComplexFilter, so that a thread does not keep ComplexFilters alive. */
+    private static final class Sampler {
+        Filter[] evaluationOrder;
+        final int[] decided;
+        int samples = 0;
+        int evaluations = 0;
+
+        Sampler(Filter[] filters) {
+            this.evaluationOrder = filters.clone();
+            this.decided = new int[filters.length];
+        }
+    }
+
     /*
     Abstraction Function:
-    Represents a Filter which is composed of one or more Filters.
+    Represents a Filter which is composed of other Filters combined with operator: AND is satisfied if all of
+    them are satisfied, OR if any of them is, and NOT if its only filter is not. filters is an unmodifiable
+    copy of the list that the ComplexFilter was made with, and compiledFilters holds the same filters in an
+    array, so that checking an event does not go through an iterator.
+
+    An AND stops at the first filter that is not satisfied and an OR at the first that is, so each thread
+    checks the filters in the evaluationOrder of its Sampler in samplers, which puts first the filters that
+    are cheap and often decide the result for the events that the thread checks. evaluations counts the
+    events that the thread has checked, and every SAMPLE_INTERVAL-th event is checked against all the
+    filters, where decided[i] counts the samples in which compiledFilters[i] alone would have decided the
+    result. costs[i] is the estimated cost of compiledFilters[i]. After SAMPLES_PER_ORDER samples, the
+    filters are ordered by costs[i] divided by the fraction of samples that they decided, and the counts
+    are halved so that the order follows changes in the events.
 
     Representation Invariant:
+    - operator is not null, and if operator is NOT then compiledFilters.length == 1
     - filters is not null
+    - compiledFilters is not null and has the same elements as filters, in the same order
+    - costs.length == compiledFilters.length
+    - in every Sampler, evaluationOrder is a permutation of compiledFilters,
+      decided.length == compiledFilters.length, and 0 <= decided[i] <= samples
+
+    Thread Safety Arguments:
+    - a Filter may be checked by several threads at once, for example by the dispatcher threads of a
+      MessageHandler. operator, filters, compiledFilters and costs are never modified after construction
+    - each thread has its own Sampler, which no other thread reads or writes, so no counts are lost
      */
 
-    /** Make a ComplexFilter with a list of filters
+    /** Make a ComplexFilter that combines a list of filters with AND
      *
      * @param filters the list of filters this ComplexFilter contains, is not null
      */
     public ComplexFilter(List<Filter> filters) {
-        this.filters = filters;
+        this(LogicalOperator.AND, filters);
+    }
+
+    /** Make a ComplexFilter that combines a list of filters with a LogicalOperator
+     *
+     * @param operator the LogicalOperator that combines the filters, is not null
+     * @param filters the list of filters this ComplexFilter contains, is not null,
+     *                and holds exactly one filter if the operator is NOT
+     */
+    public ComplexFilter(LogicalOperator operator, List<Filter> filters) {
+        this.operator = operator;
+        this.filters = List.copyOf(filters);
+        this.compiledFilters = this.filters.toArray(new Filter[0]);
+        this.costs = new int[compiledFilters.length];
+        int total = 1;
+        for (int i = 0; i < compiledFilters.length; i++) {
+            costs[i] = compiledFilters[i].getCost();
+            total += costs[i];
+        }
+        this.cost = total;
+        Filter[] compiled = this.compiledFilters;
+        this.samplers = ThreadLocal.withInitial(() -> new Sampler(compiled));
     }
 
     /** Get the list of filters this ComplexFilter contains
@@ -330,18 +701,145 @@ class ComplexFilter {
         return new ArrayList<>(this.filters);
     }
 
-    /** Determine if an event satisfies all the filters in this ComplexFilter
+    /** Get the LogicalOperator that combines the filters of this ComplexFilter
+     *
+     * @return the LogicalOperator of this ComplexFilter
+     */
+    public LogicalOperator getOperator() {
+        return this.operator;
+    }
+
+    /** Estimate the cost of checking an event against all the filters of this ComplexFilter
+     *
+     * @return the estimated cost of checking an event, >= 1
+     */
+    int getCost() {
+        return this.cost;
+    }
+
+    /** Write the bitmap of the events in a range of the given columns that satisfy this ComplexFilter
+     *  into the words that hold the range. Bits outside the range in those words are cleared.
+     *
+     * @param columns the events to check, is not null
+     * @param from the position of the first event to check, 0 <= from < to
+     * @param to the position after the last event to check, to <= columns.size()
+     * @param words the bitmap to write to, with room for at least to bits, is not null
+     */
+    void selectInto(EventColumns columns, int from, int to, long[] words) {
+        int firstWord = from >>> 6;
+        int lastWord = (to - 1) >>> 6;
+        if (compiledFilters.length == 0) {
+            // an empty AND is satisfied by every event, an empty OR by none
+            for (int w = firstWord; w <= lastWord; w++) {
+                words[w] = operator == LogicalOperator.AND ? Filter.rangeMask(w, from, to) : 0;
+            }
+            return;
+        }
+        compiledFilters[0].selectInto(columns, from, to, words);
+        if (operator == LogicalOperator.NOT) {
+            for (int w = firstWord; w <= lastWord; w++) {
+                words[w] = ~words[w] & Filter.rangeMask(w, from, to);
+            }
+            return;
+        }
+        long[] next = compiledFilters.length > 1 ? new long[words.length] : null;
+        for (int f = 1; f < compiledFilters.length; f++) {
+            compiledFilters[f].selectInto(columns, from, to, next);
+            for (int w = firstWord; w <= lastWord; w++) {
+                words[w] = operator == LogicalOperator.AND ? words[w] & next[w] : words[w] | next[w];
+            }
+        }
+    }
+
+    /** Get the filters this ComplexFilter contains, as they were when it was made
+     *
+     * @return the filters this ComplexFilter contains, which must not be modified
+     */
+    Filter[] getCompiledFilters() {
+        return this.compiledFilters;
+    }
+
+    /** Determine if an event satisfies this ComplexFilter
      *
      * @param event the event to be checked, is not null
-     * @return true if all the filters in this ComplexFilter are satisfied by the event, false otherwise
+     * @return true if the filters in this ComplexFilter, combined with its LogicalOperator,
+     *         are satisfied by the event, false otherwise
      */
     public boolean satisfies(Event event) {
-        for (Filter filter : filters) {
-            if (!filter.satisfies(event)) {
-                return false;
+        if (operator == LogicalOperator.NOT) {
+            return !compiledFilters[0].satisfies(event);
+        }
+        if (compiledFilters.length <= 1) {
+            // there is no order to choose
+            return compiledFilters.length == 1 ? compiledFilters[0].satisfies(event) : operator == LogicalOperator.AND;
+        }
+        Sampler sampler = samplers.get();
+        if (++sampler.evaluations % SAMPLE_INTERVAL == 0) {
+            return sample(sampler, event);
+        }
+        Filter[] order = sampler.evaluationOrder;
+        if (operator == LogicalOperator.AND) {
+            for (Filter filter : order) {
+                if (!filter.satisfies(event)) {
+                    return false;
+                }
             }
+            return true;
         }
-        return true;
+        for (Filter filter : order) {
+            if (filter.satisfies(event)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Check an event against every filter, counting the filters that decide the result,
+     *  and put the filters in a new order once enough samples have been taken
+     *
+     * @param sampler the Sampler of the current thread, is not null
+     * @param event the event to be checked, is not null
+     * @return true if the event satisfies this ComplexFilter, false otherwise
+     */
+    private boolean sample(Sampler sampler, Event event) {
+        boolean deciding = operator == LogicalOperator.OR;
+        boolean decidedBySome = false;
+        for (int i = 0; i < compiledFilters.length; i++) {
+            if (compiledFilters[i].satisfies(event) == deciding) {
+                sampler.decided[i]++;
+                decidedBySome = true;
+            }
+        }
+        if (++sampler.samples >= SAMPLES_PER_ORDER) {
+            reorder(sampler);
+        }
+        return decidedBySome == deciding;
+    }
+
+    /** Order the filters of a Sampler by their cost divided by how often they decide the result,
+     *  lowest first, and halve the counts of its samples
+     *
+     * @param sampler the Sampler of the current thread, is not null
+     */
+    private void reorder(Sampler sampler) {
+        int[] decided = sampler.decided;
+        int samples = sampler.samples;
+        int count = compiledFilters.length;
+        double[] ranks = new double[count];
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            // add one to each count so that a filter that never decided still has a finite rank
+            ranks[i] = costs[i] * (samples + 2.0) / (decided[i] + 1.0);
+            order[i] = i;
+            decided[i] /= 2;
+        }
+        sampler.samples = samples / 2;
+        Arrays.sort(order, (a, b) -> Double.compare(ranks[a], ranks[b]));
+        Filter[] newOrder = new Filter[count];
+        for (int i = 0; i < count; i++) {
+            newOrder[i] = compiledFilters[order[i]];
+        }
+        sampler.evaluationOrder = newOrder;
     }
 
     @Override
@@ -349,11 +847,11 @@ class ComplexFilter {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ComplexFilter that = (ComplexFilter) o;
-        return Objects.equals(filters, that.filters);
+        return operator == that.operator && Objects.equals(filters, that.filters);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(filters);
+        return Objects.hash(operator, filters);
     }
 }
@@ -0,0 +1,127 @@
+package cpen221.mp3.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class ForecastSelector {
+    // the weight of the newest forecast error in the moving average of the errors of a Forecaster
+    static final double ERROR_SMOOTHING = 0.1;
+
+    private final List<Forecaster> prototypes;
+    private final Forecaster[] forecasters;
+    private final double[] errors;
+    private int selected;
+    private int observed;
+
+    /*
+    Abstraction Function:
+    Represents a choice among Forecasters that observe the same values, made by backtesting: before each
+    value is observed, every Forecaster forecasts it, and errors[i] is the exponentially weighted moving
+    average of the absolute errors of forecasters[i], the newest weighted by ERROR_SMOOTHING. The selected
+    Forecaster, forecasters[selected], is the one with the smallest average error, the earliest one if several
+    are equal. forecasters[i] was created from prototypes.get(i), and observed is the number of values observed.
+
+    Representation Invariant:
+    - prototypes and forecasters are not null, are not empty, and have no null elements
+    - forecasters.length == errors.length == prototypes.size()
+    - every errors[i] >= 0 and is not NaN
+    - 0 <= selected < forecasters.length
+    - observed >= 0
+     */
+
+    /** Create a new ForecastSelector that has not observed any values
+     *
+     * @param prototypes the Forecasters to choose among, which are not used themselves but only to create
+     *                   new Forecasters of the same kinds, is not null or empty and has no null elements
+     */
+    ForecastSelector(List<Forecaster> prototypes) {
+        this.prototypes = prototypes;
+        this.forecasters = new Forecaster[prototypes.size()];
+        for (int i = 0; i < forecasters.length; i++) {
+            forecasters[i] = prototypes.get(i).create();
+        }
+        this.errors = new double[forecasters.length];
+        this.selected = 0;
+        this.observed = 0;
+    }
+
+    /** Create a new ForecastSelector that has observed the same values as this one, with copies of its
+     *  Forecasters, so that the two can observe different values afterwards
+     *
+     * @return a new ForecastSelector that makes the same choice and forecasts as this one
+     */
+    ForecastSelector copy() {
+        ForecastSelector copy = new ForecastSelector(prototypes);
+        for (int i = 0; i < forecasters.length; i++) {
+            copy.forecasters[i] = forecasters[i].copy();
+        }
+        System.arraycopy(errors, 0, copy.errors, 0, errors.length);
+        copy.selected = selected;
+        copy.observed = observed;
+        return copy;
+    }
+
+    /** Determine if this ForecastSelector chooses among Forecasters created from the given list
+     *
+     * @param prototypes the list of Forecasters, is not null
+     * @return true if this ForecastSelector was created from the same list object, false otherwise
+     */
+    boolean isCreatedFrom(List<Forecaster> prototypes) {
+        return this.prototypes == prototypes;
+    }
+
+    /** Observe the next value, after measuring the error of the forecast of each Forecaster for it
+     *
+     * @param value the value that follows the values observed so far
+     */
+    void observe(double value) {
+        double bestError = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < forecasters.length; i++) {
+            if (observed > 0) {
+                // an error that is too large or not a number counts as the largest possible error
+                double error = Math.abs(value - forecasters[i].forecast(1));
+                if (!(error <= Double.MAX_VALUE)) {
+                    error = Double.MAX_VALUE;
+                }
+                errors[i] += ERROR_SMOOTHING * (error - errors[i]);
+            }
+            forecasters[i].observe(value);
+            if (errors[i] < bestError) {
+                bestError = errors[i];
+                selected = i;
+            }
+        }
+        observed++;
+    }
+
+    /** Get the Forecaster with the smallest average error
+     *
+     * @return the selected Forecaster
+     */
+    Forecaster getSelected() {
+        return forecasters[selected];
+    }
+
+    /** Get the moving average of the absolute errors of the forecasts of a Forecaster
+     *
+     * @param index the position of the Forecaster in the list this ForecastSelector was created from,
+     *              0 <= index < the size of the list
+     * @return the moving average of the absolute errors of its forecasts, 0 before it has forecast any value
+     */
+    double getError(int index) {
+        return errors[index];
+    }
+
+    /** Forecast the values that follow the values observed so far with the selected Forecaster
+     *
+     * @param n the number of values to forecast, >= 0
+     * @return the list of the n forecast values
+     */
+    List<Double> forecast(int n) {
+        List<Double> forecasts = new ArrayList<>();
+        for (int step = 1; step <= n; step++) {
+            forecasts.add(forecasters[selected].forecast(step));
+        }
+        return forecasts;
+    }
+}
@@ -0,0 +1,38 @@
+package cpen221.mp3.server;
+
+public interface Forecaster {
+
+    /*
+    A Forecaster observes a sequence of double values one at a time, in order, and forecasts the values
+    that follow them. It keeps only the state that its forecasts need, so that observing a value and
+    forecasting take time that does not grow with the number of values observed.
+     */
+
+    /** Create a new Forecaster of the same kind and with the same parameters as this one,
+     *  which has not observed any values
+     *
+     * @return a new Forecaster that has not observed any values
+     */
+    Forecaster create();
+
+    /** Create a new Forecaster of the same kind and with the same parameters as this one, which has
+     *  observed the same values, so that the two can observe different values afterwards
+     *
+     * @return a new Forecaster that forecasts the same values as this one
+     */
+    Forecaster copy();
+
+    /** Observe the next value of the sequence
+     *
+     * @param value the value that follows the values observed so far
+     */
+    void observe(double value);
+
+    /** Forecast a value that follows the values observed so far
+     *
+     * @param step how many values ahead to forecast, where 1 is the value that directly follows
+     *             the values observed so far, >= 1
+     * @return the forecast value, NaN if no values have been observed
+     */
+    double forecast(int step);
+}
@@ -0,0 +1,72 @@
+package cpen221.mp3.server;
+
+public class HoltForecaster implements Forecaster {
+    private final double levelSmoothing;
+    private final double trendSmoothing;
+    private int count;
+    private double level;
+    private double trend;
+
+    /*
+    Abstraction Function:
+    Represents Holt's double exponential smoothing of the values observed so far: level is the smoothed
+    latest value and trend is the smoothed change from one value to the next, each new value weighted by
+    levelSmoothing and trendSmoothing. The forecast step values ahead is level + step * trend.
+
+    Representation Invariant:
+    - 0 < levelSmoothing <= 1 and 0 < trendSmoothing <= 1
+    - count >= 0
+     */
+
+    /** Create a new HoltForecaster that has not observed any values
+     *
+     * @param levelSmoothing the weight of each new value in the level, 0 < levelSmoothing <= 1
+     * @param trendSmoothing the weight of each new change in the trend, 0 < trendSmoothing <= 1
+     */
+    public HoltForecaster(double levelSmoothing, double trendSmoothing) {
+        if (!(levelSmoothing > 0 && levelSmoothing <= 1 && trendSmoothing > 0 && trendSmoothing <= 1)) {
+            throw new IllegalArgumentException("Smoothing weights must be in (0, 1]");
+        }
+        this.levelSmoothing = levelSmoothing;
+        this.trendSmoothing = trendSmoothing;
+        this.count = 0;
+    }
+
+    @Override
+    public Forecaster create() {
+        return new HoltForecaster(levelSmoothing, trendSmoothing);
+    }
+
+    @Override
+    public Forecaster copy() {
+        HoltForecaster copy = new HoltForecaster(levelSmoothing, trendSmoothing);
+        copy.count = count;
+        copy.level = level;
+        copy.trend = trend;
+        return copy;
+    }
+
+    @Override
+    public void observe(double value) {
+        if (count == 0) {
+            level = value;
+            trend = 0;
+        } else if (count == 1) {
+            trend = value - level;
+            level = value;
+        } else {
+            double previousLevel = level;
+            level = levelSmoothing * value + (1 - levelSmoothing) * (level + trend);
+            trend = trendSmoothing * (level - previousLevel) + (1 - trendSmoothing) * trend;
+        }
+        count++;
+    }
+
+    @Override
+    public double forecast(int step) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        return level + step * trend;
+    }
+}
@@ -0,0 +1,69 @@
+package cpen221.mp3.server;
+
+public class LagrangeForecaster implements Forecaster {
+    private final double[] window;
+    private int count;
+
+    /*
+    Abstraction Function:
+    Represents the polynomial through the points (i, value i) of the latest window.length values observed
+    so far, or of all of them if there are fewer, which is extended past the latest value to forecast, as
+    Predictor does. window[i % window.length] is the i-th value observed, for the latest window.length values.
+
+    Representation Invariant:
+    - window is not null and window.length > 0
+    - count >= 0
+     */
+
+    /** Create a new LagrangeForecaster that has not observed any values
+     *
+     * @param windowSize the max number of latest values to interpolate, > 0
+     */
+    public LagrangeForecaster(int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive");
+        }
+        this.window = new double[windowSize];
+        this.count = 0;
+    }
+
+    @Override
+    public Forecaster create() {
+        return new LagrangeForecaster(window.length);
+    }
+
+    @Override
+    public Forecaster copy() {
+        LagrangeForecaster copy = new LagrangeForecaster(window.length);
+        System.arraycopy(window, 0, copy.window, 0, window.length);
+        copy.count = count;
+        return copy;
+    }
+
+    @Override
+    public void observe(double value) {
+        window[count % window.length] = value;
+        count++;
+    }
+
+    @Override
+    public double forecast(int step) {
+        int points = Math.min(count, window.length);
+        if (points == 0) {
+            return Double.NaN;
+        }
+        int first = count - points;
+        double x = points - 1 + step;
+        double result = 0;
+        for (int i = 0; i < points; i++) {
+            double products = window[(first + i) % window.length];
+            for (int j = 0; j < points; j++) {
+                if (j != i) {
+                    products *= (x - j) / (i - j);
+                }
+            }
+            result += products;
+        }
+        return result;
+    }
+}
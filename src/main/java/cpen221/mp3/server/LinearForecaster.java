@@ -0,0 +1,64 @@
+package cpen221.mp3.server;
+
+public class LinearForecaster implements Forecaster {
+    private int count;
+    private double meanX;
+    private double meanY;
+    private double sumXX;
+    private double sumXY;
+
+    /*
+    Abstraction Function:
+    Represents the least squares line through the points (i, value i) of the values observed so far,
+    where the first value has i = 0. meanX and meanY are the means of the coordinates of the points,
+    and sumXX and sumXY are the sums of (i - meanX)^2 and (i - meanX) * (value i - meanY), which are
+    updated one point at a time so that they do not lose precision as the values accumulate.
+
+    Representation Invariant:
+    - count >= 0
+    - sumXX >= 0
+     */
+
+    /** Create a new LinearForecaster that has not observed any values
+     *
+     */
+    public LinearForecaster() {
+        this.count = 0;
+    }
+
+    @Override
+    public Forecaster create() {
+        return new LinearForecaster();
+    }
+
+    @Override
+    public Forecaster copy() {
+        LinearForecaster copy = new LinearForecaster();
+        copy.count = count;
+        copy.meanX = meanX;
+        copy.meanY = meanY;
+        copy.sumXX = sumXX;
+        copy.sumXY = sumXY;
+        return copy;
+    }
+
+    @Override
+    public void observe(double value) {
+        double x = count;
+        count++;
+        double dx = x - meanX;
+        meanX += dx / count;
+        meanY += (value - meanY) / count;
+        sumXX += dx * (x - meanX);
+        sumXY += dx * (value - meanY);
+    }
+
+    @Override
+    public double forecast(int step) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double slope = sumXX > 0 ? sumXY / sumXX : 0;
+        return meanY + slope * (count - 1 + step - meanX);
+    }
+}
@@ -0,0 +1,8 @@
+package cpen221.mp3.server;
+
+public enum PredictionMode {
+    // predictions are interpolated from the latest events of the entity
+    EXACT,
+    // predictions are extrapolated from statistics that each event updates in constant time
+    STREAMING
+}
@@ -2,22 +2,20 @@ package cpen221.mp3.server;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.stream.IntStream;
 
 public class Predictor {
     private int n;
-    private List<Double> doubleList = new ArrayList<>();
-    private List<Boolean> boolList = new ArrayList<>();
+    private double[] doubles = new double[0];
+    private boolean[] booleans = new boolean[0];
 
     /*
     Abstraction Function:
-    Represents the list of predictions
+    Represents the list of predictions of the next n values that follow either the double values in doubles
+    or the boolean values in booleans, both in the order they occurred.
 
     Representation Invariant:
     - n > 0
-    - doubleList and boolList are not null
+    - doubles and booleans are not null
      */
 
     /**
@@ -29,32 +27,56 @@ public class Predictor {
     public Predictor(List<Object> objList, boolean isDouble, int n){
         this.n = n;
         if(isDouble) {
-            for(Object obj : objList){
-                this.doubleList.add((Double)obj);
+            this.doubles = new double[objList.size()];
+            for(int i = 0; i < objList.size(); i++){
+                this.doubles[i] = (Double) objList.get(i);
             }
         }
         else {
-            for(Object obj : objList){
-                this.boolList.add((Boolean)obj);
+            this.booleans = new boolean[objList.size()];
+            for(int i = 0; i < objList.size(); i++){
+                this.booleans[i] = (Boolean) objList.get(i);
             }
         }
     }
 
+    /**
+     * Construct new predictor object for double values, without copying them
+     * @param values the values or timestamps from previous events, in the order they occurred,
+     *               is not null and must not be modified while the predictor is used
+     * @param n the number of predictions to make
+     */
+    public Predictor(double[] values, int n){
+        this.n = n;
+        this.doubles = values;
+    }
+
+    /**
+     * Construct new predictor object for boolean values, without copying them
+     * @param values the values from previous events, in the order they occurred,
+     *               is not null and must not be modified while the predictor is used
+     * @param n the number of predictions to make
+     */
+    public Predictor(boolean[] values, int n){
+        this.n = n;
+        this.booleans = values;
+    }
+
     /**
      * Predicts double values
      * @return the list of Doubles representing the predictions
      */
     public List<Double> predictDouble (){
         List<Double> predictions = new ArrayList<>();
-        if(this.doubleList.isEmpty()) return predictions;
+        if(this.doubles.length == 0) return predictions;
         if(detectPattern()){
             for(int i = 0; i < this.n; i++){
-                int index = this.doubleList.size()-(i+1)%2;
-                predictions.add(this.doubleList.get(index-1));
+                int index = this.doubles.length-(i+1)%2;
+                predictions.add(this.doubles[index-1]);
             }
         }
         else{
-            for(int i = this.doubleList.size(); i < this.doubleList.size()+this.n; i++){
+            for(int i = this.doubles.length; i < this.doubles.length+this.n; i++){
                 predictions.add(LagrangeInterpolation(i));
             }
         }
@@ -67,14 +89,13 @@ public class Predictor {
      * @return the value to be predicted
      */
     private double LagrangeInterpolation (int x){
-        int[] xArr = IntStream.range(0, this.doubleList.size()).toArray();
         double result = 0;
 
-        for(int i = 0; i < this.doubleList.size(); i++){
-            double products = this.doubleList.get(i);
-            for(int j = 0; j < this.doubleList.size(); j++){
+        for(int i = 0; i < this.doubles.length; i++){
+            double products = this.doubles[i];
+            for(int j = 0; j < this.doubles.length; j++){
                 if(j!=i){
-                    products*=((x-xArr[j])/(double)(xArr[i]-xArr[j]));
+                    products*=((x-j)/(double)(i-j));
                 }
             }
             result+=products;
@@ -87,10 +108,10 @@ public class Predictor {
      * @return true if the 6 most recent values has alternating values, false otherwise
      */
     private boolean detectPattern (){
-        int mostRecentInd = this.doubleList.size();
+        int mostRecentInd = this.doubles.length;
         if(mostRecentInd>=6){
-            boolean doub1 = this.doubleList.get(mostRecentInd-1).equals(this.doubleList.get(mostRecentInd-3))&&this.doubleList.get(mostRecentInd-1).equals(this.doubleList.get(mostRecentInd-5));
-            boolean doub2 = this.doubleList.get(mostRecentInd-2).equals(this.doubleList.get(mostRecentInd-4))&&this.doubleList.get(mostRecentInd-2).equals(this.doubleList.get(mostRecentInd-6));
+            boolean doub1 = sameValue(mostRecentInd-1, mostRecentInd-3)&&sameValue(mostRecentInd-1, mostRecentInd-5);
+            boolean doub2 = sameValue(mostRecentInd-2, mostRecentInd-4)&&sameValue(mostRecentInd-2, mostRecentInd-6);
             return doub1 && doub2;
         }
         else{
@@ -99,29 +120,48 @@ public class Predictor {
     }
 
     /**
-     * Predicts boolean values
+     * Determine whether two of the double values are the same, in the sense of Double.equals
+     * @param i the index of the first value
+     * @param j the index of the second value
+     * @return true if the values are the same, false otherwise
+     */
+    private boolean sameValue (int i, int j){
+        return Double.compare(this.doubles[i], this.doubles[j]) == 0;
+    }
+
+    /**
+     * Predicts boolean values. Each prediction is the value that most often followed the previous one,
+     * false if true and false followed it equally often, and the previous value again if no value
+     * ever followed it.
      * @return the list of Booleans representing the predictions
      */
     public List<Boolean> predictBool (){
 
-        Map<Boolean, Map<Boolean, Double>> transitionMatrix = new HashMap<>();
-        for (int i = 0; i < this.boolList.size()-1; i++){
-            boolean currState = this.boolList.get(i);
-            boolean nextState = this.boolList.get(i+1);
-
-            transitionMatrix.putIfAbsent(currState, new HashMap<>());
-            transitionMatrix.get(currState).merge(nextState, 1.0, Double::sum);
+        // transitions[from][to] counts how often the value to followed the value from, false = 0 and true = 1
+        int[][] transitions = new int[2][2];
+        for (int i = 0; i < this.booleans.length-1; i++){
+            transitions[this.booleans[i] ? 1 : 0][this.booleans[i+1] ? 1 : 0]++;
         }
-        List<Boolean> predictions = new ArrayList<>();
-        boolean currentState = this.boolList.get(this.boolList.size()-1);
-        for (int i = 0; i < this.n; i++) {
+        return predictBool(transitions, this.booleans[this.booleans.length-1], this.n);
+    }
 
-            Map<Boolean, Double> nextStateProbabilities = transitionMatrix.get(currentState);
+    /**
+     * Predicts boolean values from counts of the transitions between them, in the same way as predictBool()
+     * @param transitions transitions[from][to] is how often the value to followed the value from, where
+     *                    false is 0 and true is 1, is a 2 by 2 array of counts >= 0 and is not modified
+     * @param currentState the latest value
+     * @param n the number of predictions to make
+     * @return the list of Booleans representing the predictions
+     */
+    static List<Boolean> predictBool (int[][] transitions, boolean currentState, int n){
+        List<Boolean> predictions = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
 
-            boolean nextState = nextStateProbabilities.entrySet().stream()//make random
-                    .max(Map.Entry.comparingByValue())
-                    .map(Map.Entry::getKey)
-                    .orElse(currentState);
+            int[] next = transitions[currentState ? 1 : 0];
+            boolean nextState = currentState;
+            if (next[0] + next[1] > 0) {
+                nextState = next[1] > next[0];
+            }
 
             predictions.add(nextState);
             currentState = nextState;
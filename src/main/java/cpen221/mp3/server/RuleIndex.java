@@ -0,0 +1,338 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.Event;
+import cpen221.mp3.event.SensorEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+class RuleIndex {
+    // the operators of the predicates on a double field, as offsets from the field's EQUALS criteria
+    private static final int OPERATORS = Filter.VALUE_LESS_THAN_OR_EQUALS - Filter.VALUE_EQUALS + 1;
+    private static final int EQUALS = 0;
+    private static final int GREATER_THAN = Filter.VALUE_GREATER_THAN - Filter.VALUE_EQUALS;
+    private static final int LESS_THAN = Filter.VALUE_LESS_THAN - Filter.VALUE_EQUALS;
+    private static final int GREATER_THAN_OR_EQUALS = Filter.VALUE_GREATER_THAN_OR_EQUALS - Filter.VALUE_EQUALS;
+
+    private final Map<Integer, Filter> rules;
+    private boolean built;
+
+    private int[] ruleIds;
+    private int[] required;
+    private int[] counts;
+    private int[] countGeneration;
+    private int generation;
+    private double[][] valueThresholds;
+    private int[][] valueOwners;
+    private double[][] timeStampThresholds;
+    private int[][] timeStampOwners;
+    private int[] trueOwners;
+    private int[] falseOwners;
+    private int[] alwaysSatisfied;
+    private int[] residualOwners;
+    private Filter[] residualFilters;
+
+    /*
+    Abstraction Function:
+    Represents a set of rules, each an id and the Filter that decides whether it applies to an event, that
+    finds every rule whose filter an event satisfies without checking the filters one by one.
+
+    Each rule is given a slot, and its filter is split into simple predicates: a complex filter is the
+    predicates of all its filters, and is satisfied when all of them are. The predicates on a double
+    field are grouped by field and operator, with their thresholds sorted, so that the predicates that
+    an event satisfies in a group form a range of the group found by binary search. An event satisfies a
+    rule iff the number of its predicates that the event satisfies, counts[slot], reaches required[slot].
+
+    - ruleIds[slot] is the id of the rule in a slot
+    - valueThresholds[op] and valueOwners[op] are the thresholds, ascending, and the slots of the
+      predicates on the event value with the criteria Filter.VALUE_EQUALS + op; timeStampThresholds and
+      timeStampOwners are the same for the predicates on the event timestamp, with the criteria
+      Filter.TIMESTAMP_EQUALS + op
+    - trueOwners and falseOwners are the slots of the boolean predicates satisfied by the boolean
+      values true and false
+    - alwaysSatisfied are the slots of the rules with no predicates, which every event satisfies
+    - residualFilters are predicates that cannot be indexed, checked one by one for the slots in residualOwners
+    - counts[slot] is only valid when countGeneration[slot] == generation, otherwise it is 0
+
+    The index is built from rules the first time an event is matched after the rules change.
+
+    Representation Invariant:
+    - rules is not null and contains no null keys or values
+    - if built is true, the index holds exactly the rules in rules
+    - every valueThresholds[op] and timeStampThresholds[op] is sorted and contains no NaN
+    - residualOwners.length == residualFilters.length
+     */
+
+    /** Create a new RuleIndex with no rules
+     *
+     */
+    RuleIndex() {
+        this.rules = new LinkedHashMap<>();
+        this.built = false;
+    }
+
+    /** Add a rule, replacing the filter of the rule if it is already in the index
+     *
+     * @param ruleId the id of the rule
+     * @param filter the filter that an event must satisfy for the rule to apply, is not null
+     */
+    void put(int ruleId, Filter filter) {
+        rules.put(ruleId, filter);
+        built = false;
+    }
+
+    /** Determine if a rule is in the index
+     *
+     * @param ruleId the id of the rule
+     * @return true if the rule is in the index, false otherwise
+     */
+    boolean contains(int ruleId) {
+        return rules.containsKey(ruleId);
+    }
+
+    /** Get the number of rules in the index
+     *
+     * @return the number of rules in the index
+     */
+    int size() {
+        return rules.size();
+    }
+
+    /** Find every rule whose filter an event satisfies
+     *
+     * @param event the event to check, is not null
+     * @return the ids of the rules whose filters the event satisfies, in no particular order
+     */
+    List<Integer> matching(Event event) {
+        if (!built) {
+            build();
+        }
+        List<Integer> matched = new ArrayList<>();
+        if (++generation == 0) {
+            Arrays.fill(countGeneration, 0);
+            generation = 1;
+        }
+        for (int slot : alwaysSatisfied) {
+            matched.add(ruleIds[slot]);
+        }
+        // the same checks as Filter.satisfies: boolean predicates skip SensorEvents,
+        // value predicates skip ActuatorEvents, and timestamp predicates apply to every event
+        if (!(event instanceof SensorEvent)) {
+            int[] booleanOwners = event.getValueBoolean() ? trueOwners : falseOwners;
+            countRange(booleanOwners, 0, booleanOwners.length, matched);
+        }
+        if (!(event instanceof ActuatorEvent)) {
+            countSatisfied(valueThresholds, valueOwners, event.getValueDouble(), matched);
+        }
+        countSatisfied(timeStampThresholds, timeStampOwners, event.getTimeStamp(), matched);
+        for (int i = 0; i < residualFilters.length; i++) {
+            if (residualFilters[i].satisfies(event)) {
+                count(residualOwners[i], matched);
+            }
+        }
+        return matched;
+    }
+
+    /** Count the predicates on a double field that a value of the field satisfies
+     *
+     * @param thresholds the sorted thresholds of the predicates on the field, by operator, is not null
+     * @param owners the slots of the predicates on the field, by operator, is not null
+     * @param x the value of the field in the event
+     * @param matched the list to add the ids of the rules whose predicates are all satisfied to, is not null
+     */
+    private void countSatisfied(double[][] thresholds, int[][] owners, double x, List<Integer> matched) {
+        if (Double.isNaN(x)) {
+            return;
+        }
+        for (int op = 0; op < OPERATORS; op++) {
+            double[] group = thresholds[op];
+            if (group.length == 0) {
+                continue;
+            }
+            // the thresholds below lower are < x, and the thresholds from upper on are > x
+            int lower = firstNotLessThan(group, x);
+            int upper = firstGreaterThan(group, lower, x);
+            if (op == EQUALS) {
+                countRange(owners[op], lower, upper, matched);
+            } else if (op == GREATER_THAN) {
+                countRange(owners[op], 0, lower, matched);
+            } else if (op == GREATER_THAN_OR_EQUALS) {
+                countRange(owners[op], 0, upper, matched);
+            } else if (op == LESS_THAN) {
+                countRange(owners[op], upper, group.length, matched);
+            } else {
+                countRange(owners[op], lower, group.length, matched);
+            }
+        }
+    }
+
+    private static int firstNotLessThan(double[] sorted, double x) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < x) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int firstGreaterThan(double[] sorted, int from, double x) {
+        int low = from;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] <= x) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void countRange(int[] slots, int from, int to, List<Integer> matched) {
+        for (int i = from; i < to; i++) {
+            count(slots[i], matched);
+        }
+    }
+
+    /** Count a satisfied predicate of a rule
+     *
+     * @param slot the slot of the rule
+     * @param matched the list to add the id of the rule to once all its predicates are satisfied, is not null
+     */
+    private void count(int slot, List<Integer> matched) {
+        if (required[slot] == 1) {
+            matched.add(ruleIds[slot]);
+            return;
+        }
+        if (countGeneration[slot] != generation) {
+            countGeneration[slot] = generation;
+            counts[slot] = 0;
+        }
+        if (++counts[slot] == required[slot]) {
+            matched.add(ruleIds[slot]);
+        }
+    }
+
+    /** Build the index from the rules
+     *
+     */
+    private void build() {
+        int ruleCount = rules.size();
+        ruleIds = new int[ruleCount];
+        required = new int[ruleCount];
+        counts = new int[ruleCount];
+        countGeneration = new int[ruleCount];
+        generation = 0;
+
+        List<List<double[]>> valuePredicates = new ArrayList<>();
+        List<List<double[]>> timeStampPredicates = new ArrayList<>();
+        for (int op = 0; op < OPERATORS; op++) {
+            valuePredicates.add(new ArrayList<>());
+            timeStampPredicates.add(new ArrayList<>());
+        }
+        List<Integer> trueSlots = new ArrayList<>();
+        List<Integer> falseSlots = new ArrayList<>();
+        List<Integer> alwaysSlots = new ArrayList<>();
+        List<Integer> residualSlots = new ArrayList<>();
+        List<Filter> residuals = new ArrayList<>();
+
+        int slot = 0;
+        for (Map.Entry<Integer, Filter> rule : rules.entrySet()) {
+            ruleIds[slot] = rule.getKey();
+            List<Filter> predicates = new ArrayList<>();
+            addPredicates(rule.getValue(), predicates);
+            required[slot] = predicates.size();
+            if (predicates.isEmpty()) {
+                alwaysSlots.add(slot);
+            }
+            for (Filter predicate : predicates) {
+                int criteria = predicate.getCriteria();
+                double threshold = predicate.getDoubleValue();
+                if (criteria == Filter.BOOLEAN_EQUALS || criteria == Filter.BOOLEAN_NOT_EQUALS) {
+                    boolean satisfiedBy = (criteria == Filter.BOOLEAN_EQUALS) == predicate.getBooleanValue();
+                    (satisfiedBy ? trueSlots : falseSlots).add(slot);
+                } else if (criteria >= Filter.VALUE_EQUALS && criteria <= Filter.VALUE_LESS_THAN_OR_EQUALS) {
+                    // a predicate with a NaN threshold is never satisfied, so it is left out of the index
+                    if (!Double.isNaN(threshold)) {
+                        valuePredicates.get(criteria - Filter.VALUE_EQUALS).add(new double[]{threshold, slot});
+                    }
+                } else if (criteria >= Filter.TIMESTAMP_EQUALS && criteria <= Filter.TIMESTAMP_LESS_THAN_OR_EQUALS) {
+                    if (!Double.isNaN(threshold)) {
+                        timeStampPredicates.get(criteria - Filter.TIMESTAMP_EQUALS).add(new double[]{threshold, slot});
+                    }
+                } else if (criteria != Filter.NEVER) {
+                    residualSlots.add(slot);
+                    residuals.add(predicate);
+                }
+            }
+            slot++;
+        }
+
+        valueThresholds = new double[OPERATORS][];
+        valueOwners = new int[OPERATORS][];
+        timeStampThresholds = new double[OPERATORS][];
+        timeStampOwners = new int[OPERATORS][];
+        for (int op = 0; op < OPERATORS; op++) {
+            valueThresholds[op] = thresholds(valuePredicates.get(op));
+            valueOwners[op] = owners(valuePredicates.get(op));
+            timeStampThresholds[op] = thresholds(timeStampPredicates.get(op));
+            timeStampOwners[op] = owners(timeStampPredicates.get(op));
+        }
+        trueOwners = toArray(trueSlots);
+        falseOwners = toArray(falseSlots);
+        alwaysSatisfied = toArray(alwaysSlots);
+        residualOwners = toArray(residualSlots);
+        residualFilters = residuals.toArray(new Filter[0]);
+        built = true;
+    }
+
+    /** Add the simple predicates that a filter is composed of to a list
+     *
+     * @param filter the filter, is not null
+     * @param predicates the list to add the predicates of the filter to, is not null
+     */
+    private static void addPredicates(Filter filter, List<Filter> predicates) {
+        if (filter.getCriteria() == Filter.ALL_OF) {
+            for (Filter child : filter.getChildren()) {
+                addPredicates(child, predicates);
+            }
+        } else {
+            predicates.add(filter);
+        }
+    }
+
+    private static double[] thresholds(List<double[]> predicates) {
+        predicates.sort((a, b) -> Double.compare(a[0], b[0]));
+        double[] thresholds = new double[predicates.size()];
+        for (int i = 0; i < thresholds.length; i++) {
+            thresholds[i] = predicates.get(i)[0];
+        }
+        return thresholds;
+    }
+
+    private static int[] owners(List<double[]> sortedPredicates) {
+        int[] owners = new int[sortedPredicates.size()];
+        for (int i = 0; i < owners.length; i++) {
+            owners[i] = (int) sortedPredicates.get(i)[1];
+        }
+        return owners;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+}
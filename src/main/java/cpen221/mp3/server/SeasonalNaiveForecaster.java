@@ -0,0 +1,62 @@
+package cpen221.mp3.server;
+
+public class SeasonalNaiveForecaster implements Forecaster {
+    private final double[] season;
+    private int count;
+
+    /*
+    Abstraction Function:
+    Represents a forecast that repeats the latest season.length values observed so far, so that each value
+    is forecast to be the value one season before it. With a season of 2 values this continues a sequence
+    that alternates between two values. season[i % season.length] is the i-th value observed, for the
+    latest season.length values.
+
+    Representation Invariant:
+    - season is not null and season.length > 0
+    - count >= 0
+     */
+
+    /** Create a new SeasonalNaiveForecaster that has not observed any values
+     *
+     * @param period the number of values in a season, > 0
+     */
+    public SeasonalNaiveForecaster(int period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        this.season = new double[period];
+        this.count = 0;
+    }
+
+    @Override
+    public Forecaster create() {
+        return new SeasonalNaiveForecaster(season.length);
+    }
+
+    @Override
+    public Forecaster copy() {
+        SeasonalNaiveForecaster copy = new SeasonalNaiveForecaster(season.length);
+        System.arraycopy(season, 0, copy.season, 0, season.length);
+        copy.count = count;
+        return copy;
+    }
+
+    @Override
+    public void observe(double value) {
+        season[count % season.length] = value;
+        count++;
+    }
+
+    @Override
+    public double forecast(int step) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (count < season.length) {
+            // there is no full season yet, so the latest value is repeated
+            return season[count - 1];
+        }
+        int index = count - season.length + (step - 1) % season.length;
+        return season[index % season.length];
+    }
+}
@@ -15,28 +15,61 @@ import java.io.*;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Path;
 import java.util.*;
 
 public class Server {
+    // a prediction window that holds the whole history of every entity
+    public static final int WHOLE_HISTORY = Integer.MAX_VALUE;
+    // interpolating more points than this is numerically unstable
+    private static final int LAGRANGE_POINTS = 16;
+
     private Client client;
     private double maxWaitTime = 2; // in seconds
+    private PredictionMode predictionMode = PredictionMode.EXACT;
+    private int predictionWindow = WHOLE_HISTORY;
+    private List<Forecaster> forecasters = defaultForecasters();
+    private long predictionCacheHits = 0;
+    private long predictionCacheMisses = 0;
     public Map<Integer, ServerEntity> entities;
     private Filter logIfFilter = null;
     private List<Event> logList;
-    private List<Event> allEvents;
+    private final EventStore eventStore;
+    private TreeSet<ServerEntity> activityRanking;
+    private int mostActiveId = 0;
+    private int mostActiveCount = 0;
     private String clientIP = null;
     private int clientPort = -1;
     private Socket clientSocket = null;
     private PrintWriter clientPrintWriter;
+    private RuleIndex actuatorRules;
+    private Map<Integer, ServerEntity> pendingRules;
+    private double rulesTimeStamp = 0;
 
     /*
     Abstraction Function:
     Represents a server that handles events that are sent from entities which are registered under the
     Server's Client, and requests that are sent from the Server's Client.
 
+    The filters of the actuators are checked against the latest event whenever an event arrives with a
+    timestamp later than the lastEventTimeStamp of the actuator. rulesTimeStamp is the latest timestamp of
+    the events received so far. The actuators whose lastEventTimeStamp is rulesTimeStamp all check their
+    filters on the same events, so they are kept in actuatorRules, which finds all the satisfied filters at
+    once, and their lastEventTimeStamp fields are not updated. The other actuators with filters are kept in
+    pendingRules and checked one by one, until their lastEventTimeStamp catches up with rulesTimeStamp.
+
     Representation Invariant:
     - maxWaitTime > 0
-    -
+    - predictionWindow > 0
+    - forecasters is not null or empty, has no null elements, and is not modified
+    - the predictions cached by every entity were made with the current predictionMode, predictionWindow,
+      and forecasters
+    - actuatorRules and pendingRules have no ids in common, and hold exactly the actuator entities with filters
+    - the filter of every id in actuatorRules is the filter of the entity with that id
+    - activityRanking contains exactly the entities with at least one event, ordered by their number of
+      events (most first), then by their ids (largest first)
+    - mostActiveCount is the largest number of events of any entity, and mostActiveId is the largest id
+      of the entities with mostActiveCount events, if mostActiveCount > 0
      */
 
     /** Create a new Server object for the given Client.
@@ -47,8 +80,17 @@ public class Server {
         System.out.println("constructing server");
         this.client = client;
         this.entities = new HashMap<>();
-        this.allEvents = new ArrayList<>();
+        this.eventStore = new EventStore();
+        this.activityRanking = new TreeSet<>((a, b) -> {
+            int byCount = Integer.compare(b.getEventCount(), a.getEventCount());
+            if (byCount != 0) {
+                return byCount;
+            }
+            return Integer.compare(b.id, a.id);
+        });
         this.logList = new ArrayList<>();
+        this.actuatorRules = new RuleIndex();
+        this.pendingRules = new HashMap<>();
     }
 
     /**
@@ -72,6 +114,142 @@ public class Server {
         return maxWaitTime;
     }
 
+    /**
+     * Update how the server predicts the timestamps and double values of the next events of an entity.
+     * PredictionMode.EXACT interpolates the latest events of the entity in the prediction window, which
+     * takes time that grows with the window. PredictionMode.STREAMING extrapolates timestamps from a
+     * moving average of the intervals between the events of the entity, and forecasts double values with
+     * the most accurate of the server's Forecasters, which both take time proportional to the number of
+     * predictions only.
+     *
+     * @param predictionMode the new prediction mode, is not null
+     */
+    public void updatePredictionMode(PredictionMode predictionMode) {
+        this.predictionMode = predictionMode;
+        clearPredictionCaches();
+    }
+
+    /** Get how the server predicts the timestamps and double values of the next events of an entity
+     *
+     * @return the prediction mode of the server
+     */
+    public PredictionMode getPredictionMode() {
+        return predictionMode;
+    }
+
+    /**
+     * Update how many of the latest events of an entity the server predicts its next double values and
+     * timestamps from in PredictionMode.EXACT. By default the server predicts from the whole history of
+     * the entity. With a smaller window, the time and memory that a prediction takes are bounded by the
+     * window, however many events the entity has sent. Boolean values are predicted from counts over the
+     * whole history of the entity, which are kept up to date as events arrive.
+     *
+     * @param predictionWindow the number of latest events to predict from, > 0, or WHOLE_HISTORY to
+     *                         predict from all the events of the entity again
+     */
+    public void updatePredictionWindow(int predictionWindow) {
+        this.predictionWindow = predictionWindow;
+        for (ServerEntity entity : entities.values()) {
+            entity.updateWindowCapacity(windowCapacity());
+        }
+        clearPredictionCaches();
+    }
+
+    /** Get how many of the latest events of an entity the server predicts from
+     *
+     * @return the prediction window of the server, WHOLE_HISTORY if it has not been updated
+     */
+    public int getPredictionWindow() {
+        return predictionWindow;
+    }
+
+    /** Get how many of the latest samples of an entity its ServerEntity keeps. The older events of the
+     *  whole history are read from the events of the server when they are needed.
+     *
+     * @return the number of latest samples that every ServerEntity keeps, > 0
+     */
+    private int windowCapacity() {
+        return predictionWindow == WHOLE_HISTORY ? ServerEntity.DEFAULT_WINDOW_CAPACITY : predictionWindow;
+    }
+
+    /** Get the Forecasters that the server predicts values with by default
+     *
+     * @return a new list of one Forecaster of each built-in kind
+     */
+    static List<Forecaster> defaultForecasters() {
+        return List.of(
+                new LagrangeForecaster(LAGRANGE_POINTS),
+                new LinearForecaster(),
+                new HoltForecaster(0.5, 0.3),
+                new SeasonalNaiveForecaster(2));
+    }
+
+    /**
+     * Update the Forecasters that the server chooses among to predict the double values of an entity in
+     * PredictionMode.STREAMING. For each entity, the server uses the one whose forecasts of the past values
+     * of the entity have been the most accurate recently.
+     *
+     * @param forecasters the Forecasters to choose among, in order of preference when they are equally
+     *                    accurate, is not null or empty and has no null elements
+     */
+    public void updateForecasters(List<Forecaster> forecasters) {
+        if (forecasters.isEmpty()) {
+            throw new IllegalArgumentException("At least one Forecaster is needed");
+        }
+        this.forecasters = List.copyOf(forecasters);
+        clearPredictionCaches();
+    }
+
+    /** Get the Forecasters that the server chooses among to predict the double values of an entity
+     *
+     * @return an unmodifiable list of the Forecasters
+     */
+    public List<Forecaster> getForecasters() {
+        return forecasters;
+    }
+
+    /**
+     * Keep only the latest events of the client in the heap, and move the older events into an append-only
+     * log of memory-mapped files, which the operating system pages in when queries read them. The events
+     * received so far are moved into the log too. The files are only meant to be read by this server, and
+     * are deleted when the log is closed.
+     *
+     * @param directory the directory to keep the files of the log in, which is created if it does not exist
+     *                  and is not used by any other log, is not null
+     * @param hotEvents the max number of latest events to keep in the heap, >= 2
+     * @throws IOException if the directory could not be created
+     * @throws IllegalStateException if the server already has a log
+     */
+    public void useEventLog(Path directory, int hotEvents) throws IOException {
+        if (eventStore.hasLog()) {
+            throw new IllegalStateException("The server already has an event log");
+        }
+        eventStore.useLog(new EventLog(directory), hotEvents);
+    }
+
+    /**
+     * Move all the events of the client back into the heap, and close the log of the server and delete
+     * its files. Does nothing if the server has no log.
+     */
+    public void closeEventLog() {
+        eventStore.closeLog();
+    }
+
+    /**
+     * Shut the server down: delete the files of its event log without moving its events back into the heap,
+     * and close its connection to the client. The server cannot be used afterwards if it has a log.
+     */
+    public void close() {
+        eventStore.close();
+        if (clientSocket != null) {
+            try {
+                clientSocket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
     /**
      * Set the actuator state if the given filter is satisfied by the latest event.
      * Here the latest event is the event with the latest timestamp not the event 
@@ -88,18 +266,19 @@ public class Server {
             return;
         }
 
-        if (allEvents.isEmpty()) {
+        if (eventStore.isEmpty()) {
             return;
         }
 
         ServerEntity actuatorEntity = this.entities.get(actuator.getId());
         if (actuatorEntity == null) {
-            entities.put(actuator.getId(), new ServerEntity(actuator.getId(), true));
+            entities.put(actuator.getId(), newEntity(actuator.getId(), true));
             actuatorEntity = this.entities.get(actuator.getId());
         }
         actuatorEntity.filter = filter;
         actuatorEntity.localActuator = actuator;
         actuatorEntity.isToggle = false;
+        registerActuatorRule(actuatorEntity);
 
 //        Event latestEvent = lastNEvents(1).get(0);
 //
@@ -131,12 +310,13 @@ public class Server {
             return;
         }
 
-        if (allEvents.isEmpty()) {
+        if (eventStore.isEmpty()) {
             return;
         }
         actuatorEntity.filter = filter;
         actuatorEntity.localActuator = actuator;
         actuatorEntity.isToggle = true;
+        registerActuatorRule(actuatorEntity);
 //        Event latestEvent = lastNEvents(1).get(0);
 
 //        if (filter.satisfies(latestEvent)) {
@@ -146,6 +326,25 @@ public class Server {
 //        }
     }
 
+    /** Start checking the filter of an actuator entity for every new event, replacing its previous filter
+     *
+     * @param entity the entity of the actuator, whose filter is not null
+     */
+    private void registerActuatorRule(ServerEntity entity) {
+        if (!entity.isActuator) {
+            return;
+        }
+        if (actuatorRules.contains(entity.id)) {
+            actuatorRules.put(entity.id, entity.filter);
+        } else if (!pendingRules.containsKey(entity.id)) {
+            if (entity.lastEventTimeStamp >= rulesTimeStamp) {
+                actuatorRules.put(entity.id, entity.filter);
+            } else {
+                pendingRules.put(entity.id, entity);
+            }
+        }
+    }
+
     /**
      * Log the event ID for which a given filter was satisfied.
      * This method is checked for every event received by the server.
@@ -180,6 +379,20 @@ public class Server {
         return logIDs;
     }
 
+    /**
+     * List all the events of the client that occurred in the given time window and satisfy the given filter.
+     * The filter is checked while the events of the client are scanned, so only the events that satisfy
+     * it are collected.
+     * If no such events occurred in the given time window, then this method returns an empty list.
+     *
+     * @param timeWindow the time window of events, inclusive of the start and end times, is not null
+     * @param filter the filter that the events must satisfy, is not null
+     * @return list of the events for the client in the given time window that satisfy the filter
+     */
+    public List<Event> eventsInTimeWindow(TimeWindow timeWindow, Filter filter) {
+        return eventStore.inWindow(timeWindow.startTime, timeWindow.endTime, filter);
+    }
+
     /**
      * List all the events of the client that occurred in the given time window.
      * Here the timestamp of an event is the time at which the event occurred, not 
@@ -190,23 +403,7 @@ public class Server {
      * @return list of the events for the client in the given time window
      */
     public List<Event> eventsInTimeWindow(TimeWindow timeWindow) {
-        List<Event> validEvents = new ArrayList<>();
-        for (Event event : allEvents) {
-            if (event.getTimeStamp() >= timeWindow.startTime && event.getTimeStamp() <= timeWindow.endTime) {
-                validEvents.add(event);
-            }
-        }
-        validEvents.sort((a, b) -> {
-            double diff = a.getTimeStamp() - b.getTimeStamp();
-            if (diff == 0) {
-                return 0;
-            } else if (diff < 0) {
-                return -1;
-            } else {
-                return 1;
-            }
-        });
-        return validEvents;
+        return eventStore.inWindow(timeWindow.startTime, timeWindow.endTime);
     }
 
      /**
@@ -232,22 +429,21 @@ public class Server {
      * @return list of the latest n events of the client
      */
     public List<Event> lastNEvents(int n) {
-        List<Event> lastEvents = new ArrayList<>();
-        this.allEvents.sort((a, b) -> {
-            double diff = b.getTimeStamp() - a.getTimeStamp();
-            if (diff == 0) {
-                return b.getEntityId() - a.getEntityId();
-            } else if (diff < 0) {
-                return -1;
-            } else {
-                return 1;
-            }
-        });
-        for (int i = 0; i < this.allEvents.size() && i < n ; i++) {
-            lastEvents.add(this.allEvents.get(i));
-        }
-        Collections.reverse(lastEvents);
-        return lastEvents;
+        return eventStore.lastN(n);
+    }
+
+    /**
+     * List the latest n events of the client that satisfy the given filter, in the order of their
+     * original timestamps. If fewer than n events of the client satisfy the filter, then all of them
+     * are returned. If there are multiple such events with the same timestamp in the boundary,
+     * the ones with largest EntityId are included in the list.
+     *
+     * @param n the max number of events to list, > 0
+     * @param filter the filter that the events must satisfy, is not null
+     * @return list of the latest n events of the client that satisfy the filter
+     */
+    public List<Event> lastNEvents(int n, Filter filter) {
+        return eventStore.lastN(n, filter);
     }
 
     /**
@@ -258,33 +454,38 @@ public class Server {
      * @return the most active entity ID of the client
      */
     public int mostActiveEntity() {
-        int max = 0;
-
-        for (Integer id : entities.keySet()) {
-            if (entities.get(id).eventList.size() > max) {
-                max = entities.get(id).eventList.size();
-            }
+        if (mostActiveCount > 0) {
+            return mostActiveId;
         }
-
-        List<Integer> allEntitiesWithMax = new ArrayList<>();
-
-        for (Integer id : entities.keySet()) {
-            if (entities.get(id).eventList.size() == max) {
-                allEntitiesWithMax.add(id);
-            }
-        }
-
         int maxId = 0;
-
-        for (Integer id : allEntitiesWithMax) {
+        for (Integer id : entities.keySet()) {
             if (id > maxId) {
                 maxId = id;
             }
         }
-
         return maxId;
     }
 
+    /**
+     * Get the IDs of the k most active entities of the client in terms of the number of events
+     * they have generated, most active first. Entities with the same number of events are
+     * ordered by their IDs, largest first. Only entities that have generated at least one event
+     * are included, so fewer than k IDs are returned if fewer entities have generated events.
+     *
+     * @param k the max number of entity IDs to return, >= 0
+     * @return list of the IDs of the k most active entities of the client
+     */
+    public List<Integer> mostActiveEntities(int k) {
+        List<Integer> mostActive = new ArrayList<>();
+        for (ServerEntity entity : activityRanking) {
+            if (mostActive.size() >= k) {
+                break;
+            }
+            mostActive.add(entity.id);
+        }
+        return mostActive;
+    }
+
     /**
      * Checks if the server has not received any events for an entity with that ID,
      * or if that Entity is not registered for the client
@@ -293,22 +494,8 @@ public class Server {
      * and if that Entity is registered for the client, false otherwise
      */
     private boolean entityEventExists (int entityId){
-        boolean hasEvents = false;
-        boolean clientHasEntity = false;
-
-        for(Event event: this.allEvents){
-            if(event.getEntityId()==entityId){
-                hasEvents = true;
-                break;
-            }
-        }
-        for(Integer id : this.getAllEntities()){
-            if(id==entityId){
-                clientHasEntity = true;
-                break;
-            }
-        }
-        return hasEvents&&clientHasEntity;
+        ServerEntity entity = this.entities.get(entityId);
+        return entity != null && entity.getEventCount() > 0;
     }
 
     /** Get the predictions of the next n timestamps for the next n events of the given entity
@@ -320,23 +507,28 @@ public class Server {
      * @return list of the predicted timestamps
      */
     public List<Double> predictNextNTimeStamps(int entityId, int n) {
-        List<Double> prevTimeStamps = new ArrayList<>();
-
         if(!this.entityEventExists(entityId)){
             return new ArrayList<>();
         }
 
-        for(Event event : this.allEvents){
-            if(event.getEntityId()==entityId){
-                prevTimeStamps.add(event.getTimeStamp());
-            }
+        ServerEntity entity = this.entities.get(entityId);
+        List<Double> cached = entity.getCachedTimeStamps(n);
+        if (cached != null) {
+            predictionCacheHits++;
+            return cached;
         }
+        predictionCacheMisses++;
 
-        Collections.sort(prevTimeStamps);
-
-        Predictor predictor = new Predictor(new ArrayList<>(prevTimeStamps), true, n);
-
-        return predictor.predictDouble();
+        List<Double> predictions;
+        if (predictionMode == PredictionMode.STREAMING) {
+            predictions = entity.extrapolateTimeStamps(n);
+        }
+        else {
+            Predictor predictor = new Predictor(entity.getLastTimeStamps(predictionWindow), n);
+            predictions = predictor.predictDouble();
+        }
+        entity.cacheTimeStamps(predictions);
+        return predictions;
     }
 
     /**
@@ -351,54 +543,98 @@ public class Server {
      * @return list of the predicted timestamps
      */
     public List<Object> predictNextNValues(int entityId, int n) {
-        List<Object> prevValues = new ArrayList<>();
-        List<Event> prevEvents = new ArrayList<>();
-        boolean isDouble = true;
-
         if(!this.entityEventExists(entityId)){
             return new ArrayList<>();
         }
 
-        for (Integer ID : this.getAllEntities()){
-            if(ID == entityId){
-                if(this.entities.get(ID).isActuator){
-                    isDouble=false;
-                }
-                break;
-            }
+        ServerEntity entity = this.entities.get(entityId);
+        List<Object> cached = entity.getCachedValues(n);
+        if (cached != null) {
+            predictionCacheHits++;
+            return cached;
         }
+        predictionCacheMisses++;
 
-        for(Event event : this.allEvents){
-            if(event.getEntityId()==entityId){
-                prevEvents.add(event);
-            }
+        boolean isDouble = !entity.isActuator;
+        List<Object> predictions;
+        if(isDouble && predictionMode == PredictionMode.STREAMING){
+            predictions = new ArrayList<>(entity.forecastValues(n, forecasters));
+        }
+        else if(isDouble){
+            Predictor predictor = new Predictor(entity.getLastValues(predictionWindow), n);
+            predictions = new ArrayList<>(predictor.predictDouble());
         }
+        else{
+            predictions = new ArrayList<>(entity.predictBooleanValues(n));
+        }
+        entity.cacheValues(predictions);
+        return predictions;
+    }
 
-        prevEvents.sort((a, b) -> {
-            double diff = a.getTimeStamp() - b.getTimeStamp();
-            if (diff == 0) {
-                return 0;
-            } else if (diff < 0) {
-                return -1;
-            } else {
-                return 1;
-            }
-        });
+    /** Get the number of prediction requests that were answered from the predictions cached for an
+     *  entity, without predicting again
+     *
+     * @return the number of predictions of timestamps or values answered from the cache
+     */
+    public long getPredictionCacheHits() {
+        return predictionCacheHits;
+    }
 
-        if(isDouble){
-            for(Event event : prevEvents){
-                prevValues.add(event.getValueDouble());
-            }
-            Predictor predictor = new Predictor(new ArrayList<>(prevValues), isDouble, n);
-            return new ArrayList<>(predictor.predictDouble());
+    /** Get the number of prediction requests that could not be answered from the predictions cached
+     *  for an entity, and were predicted
+     *
+     * @return the number of predictions of timestamps or values that were not answered from the cache
+     */
+    public long getPredictionCacheMisses() {
+        return predictionCacheMisses;
+    }
+
+    /** Forget the predictions cached for every entity, after a change to how predictions are made
+     *
+     */
+    private void clearPredictionCaches() {
+        for (ServerEntity entity : entities.values()) {
+            entity.clearCachedPredictions();
         }
-        else{
-            for(Event event : prevEvents){
-                prevValues.add(event.getValueBoolean());
+    }
+
+    /**
+     * Get the probabilities that the next boolean value of the given entity of the client, identified
+     * by its ID, is false or true, given its current boolean value. They are estimated from how often
+     * each value has followed the other among the events of the entity, in timestamp order. If the server
+     * has not received any events for an entity with that ID, then this method returns an empty array.
+     *
+     * @param entityId the ID of the entity
+     * @return a 2 by 2 array where element [from][to] is the probability that the value to follows the
+     *         value from, with false as 0 and true as 1. A row is all 0 if the value from has never been
+     *         followed by another value.
+     */
+    public double[][] transitionProbabilities(int entityId) {
+        if(!this.entityEventExists(entityId)){
+            return new double[0][];
+        }
+
+        ServerEntity entity = this.entities.get(entityId);
+        double[][] probabilities = new double[2][2];
+        for (int from = 0; from < 2; from++) {
+            int toFalse = entity.getTransitionCount(from == 1, false);
+            int toTrue = entity.getTransitionCount(from == 1, true);
+            if (toFalse + toTrue > 0) {
+                probabilities[from][0] = toFalse / (double) (toFalse + toTrue);
+                probabilities[from][1] = toTrue / (double) (toFalse + toTrue);
             }
-            Predictor predictor = new Predictor(new ArrayList<>(prevValues), isDouble, n);
-            return new ArrayList<>(predictor.predictBool());
         }
+        return probabilities;
+    }
+
+    /** Create a new ServerEntity that reads its older events from the events of the server
+     *
+     * @param entityId the id of the Entity
+     * @param isActuator whether the Entity is an Actuator or not
+     * @return a new ServerEntity that keeps the latest windowCapacity() samples of the Entity
+     */
+    private ServerEntity newEntity(int entityId, boolean isActuator) {
+        return new ServerEntity(entityId, isActuator, eventStore, windowCapacity());
     }
 
     /** Process an incoming event from an Entity to the Server.
@@ -413,11 +649,19 @@ public class Server {
         boolean isActuator = event instanceof ActuatorEvent;
         int entityId = event.getEntityId();
         if (!entities.containsKey(entityId)) {
-            entities.put(entityId, new ServerEntity(entityId, isActuator));
+            entities.put(entityId, newEntity(entityId, isActuator));
         }
 
-        entities.get(entityId).eventList.add(event);
-        allEvents.add(event);
+        ServerEntity eventEntity = entities.get(entityId);
+        activityRanking.remove(eventEntity);
+        eventEntity.addEvent(event);
+        activityRanking.add(eventEntity);
+        int eventCount = eventEntity.getEventCount();
+        if (eventCount > mostActiveCount || (eventCount == mostActiveCount && entityId > mostActiveId)) {
+            mostActiveCount = eventCount;
+            mostActiveId = entityId;
+        }
+        eventStore.add(event);
         if (logIfFilter != null) {
             if (logIfFilter.satisfies(event)) {
                 logList.add(event);
@@ -425,29 +669,40 @@ public class Server {
         }
 
         //actuator update things
-        for (ServerEntity entity : entities.values()) {
-            if (entity.isActuator && entity.filter != null) {
-                double eventTimeStamp = event.getTimeStamp();
-                if (eventTimeStamp > entity.lastEventTimeStamp && entity.filter != null) {
-                    entity.lastEventTimeStamp = eventTimeStamp;
-                    Event latestEvent = lastNEvents(1).get(0);
-
-                    if (entity.isToggle) {
-                        //toggleActuatorStateIf(entity.filter, entity.localActuator);
-                        if (entity.filter.satisfies(latestEvent)) {
-                            boolean actuatorLatestBoolean = entity.getLatestEvent().getValueBoolean();
-                            entity.localActuator.updateState(!actuatorLatestBoolean);
-                            sendCommandToActuator(SeverCommandToActuator.TOGGLE_STATE, !actuatorLatestBoolean, entity.id);
-                        }
-                    } else {
-//                        setActuatorStateIf(entity.filter, entity.localActuator);
-                        if (entity.filter.satisfies(latestEvent)) {
-                            entity.localActuator.updateState(true);
-                            sendCommandToActuator(SeverCommandToActuator.SET_STATE, true, entity.id);
-                        }
-                    }
+        double eventTimeStamp = event.getTimeStamp();
+        Event latestEvent = eventStore.latest();
+        List<ServerEntity> satisfied = new ArrayList<>();
+        if (eventTimeStamp > rulesTimeStamp) {
+            rulesTimeStamp = eventTimeStamp;
+            for (int id : actuatorRules.matching(latestEvent)) {
+                satisfied.add(entities.get(id));
+            }
+        }
+        Iterator<ServerEntity> pending = pendingRules.values().iterator();
+        while (pending.hasNext()) {
+            ServerEntity entity = pending.next();
+            if (eventTimeStamp > entity.lastEventTimeStamp) {
+                entity.lastEventTimeStamp = eventTimeStamp;
+                if (entity.filter.satisfies(latestEvent)) {
+                    satisfied.add(entity);
                 }
             }
+            if (entity.lastEventTimeStamp >= rulesTimeStamp) {
+                pending.remove();
+                actuatorRules.put(entity.id, entity.filter);
+            }
+        }
+        for (ServerEntity entity : satisfied) {
+            if (entity.isToggle) {
+                //toggleActuatorStateIf(entity.filter, entity.localActuator);
+                boolean actuatorLatestBoolean = entity.getLatestEvent().getValueBoolean();
+                entity.localActuator.updateState(!actuatorLatestBoolean);
+                sendCommandToActuator(SeverCommandToActuator.TOGGLE_STATE, !actuatorLatestBoolean, entity.id);
+            } else {
+//                setActuatorStateIf(entity.filter, entity.localActuator);
+                entity.localActuator.updateState(true);
+                sendCommandToActuator(SeverCommandToActuator.SET_STATE, true, entity.id);
+            }
         }
     }
 
@@ -464,6 +719,12 @@ public class Server {
             if (requestCommand.equals(RequestCommand.CONFIG_UPDATE_MAX_WAIT_TIME)) {
                 updateMaxWaitTime(Double.parseDouble(requestData));
             }
+            if (requestCommand.equals(RequestCommand.CONFIG_UPDATE_PREDICTION_MODE)) {
+                updatePredictionMode(PredictionMode.valueOf(requestData));
+            }
+            if (requestCommand.equals(RequestCommand.CONFIG_UPDATE_PREDICTION_WINDOW)) {
+                updatePredictionWindow(Integer.parseInt(requestData));
+            }
         }
         if (requestType.equals( RequestType.CONTROL)) {
             if (requestCommand.equals(RequestCommand.CONTROL_NOTIFY_IF)) {
@@ -498,12 +759,38 @@ public class Server {
                 int entityId = mostActiveEntity();
                 sendToClient(String.valueOf(entityId), requestCommand);
             }
+            if (requestCommand.equals(RequestCommand.ANALYSIS_GET_MOST_ACTIVE_ENTITIES)) {
+                List<Integer> output = mostActiveEntities(Integer.parseInt(requestData));
+                sendToClient(output.toString(), requestCommand);
+            }
             if (requestCommand.equals(RequestCommand.ANALYSIS_GET_EVENTS_IN_WINDOW)) {
                 double startTime = Double.parseDouble(requestData.split("<>")[0]);
                 double endTime = Double.parseDouble(requestData.split("<>")[1]);
                 List<Event> output = eventsInTimeWindow(new TimeWindow(startTime, endTime));
                 sendToClient(output.toString(), requestCommand);
             }
+            if (requestCommand.equals(RequestCommand.ANALYSIS_GET_EVENTS_IN_WINDOW_IF)) {
+                String[] data = requestData.split("<>", 3);
+                double startTime = Double.parseDouble(data[0]);
+                double endTime = Double.parseDouble(data[1]);
+                Filter filter = Filter.unserialize(data.length > 2 ? data[2] : "");
+                List<Event> output = eventsInTimeWindow(new TimeWindow(startTime, endTime), filter);
+                sendToClient(output.toString(), requestCommand);
+            }
+            if (requestCommand.equals(RequestCommand.ANALYSIS_GET_LATEST_EVENTS_IF)) {
+                String[] data = requestData.split("<>", 2);
+                Filter filter = Filter.unserialize(data.length > 1 ? data[1] : "");
+                List<Event> output = lastNEvents(Integer.parseInt(data[0]), filter);
+                sendToClient(output.toString(), requestCommand);
+            }
+            if (requestCommand.equals(RequestCommand.ANALYSIS_GET_TRANSITION_PROBABILITIES)) {
+                double[][] output = transitionProbabilities(Integer.parseInt(requestData));
+                sendToClient(Arrays.deepToString(output), requestCommand);
+            }
+            if (requestCommand.equals(RequestCommand.ANALYSIS_GET_PREDICTION_CACHE_STATS)) {
+                List<Long> output = List.of(getPredictionCacheHits(), getPredictionCacheMisses());
+                sendToClient(output.toString(), requestCommand);
+            }
 
         }
         if (requestType.equals( RequestType.PREDICT)) {
@@ -547,7 +834,7 @@ public class Server {
 
             int entityId = event.getEntityId();
             if (entities.get(entityId) == null) {
-                entities.put(entityId, new ServerEntity(entityId, true));
+                entities.put(entityId, newEntity(entityId, true));
             }
 
             ServerEntity entity = entities.get(entityId);
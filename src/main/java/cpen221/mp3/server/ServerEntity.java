@@ -9,8 +9,14 @@ import java.util.ArrayList;
 import java.util.List;
 
 class ServerEntity {
+    // the weight of the newest interval between events in the moving average of the intervals
+    static final double INTERVAL_SMOOTHING = 0.25;
+    // the number of latest samples kept by a ServerEntity that is not given a window
+    static final int DEFAULT_WINDOW_CAPACITY = 16;
+    private static final int INITIAL_WINDOW_LENGTH = 8;
+
     public final int id;
-    public final List<Event> eventList;
+    private Event latestEvent;
     public final boolean isActuator;
     public PrintWriter pWriter;
     public Socket actuatorSocket;
@@ -20,6 +26,22 @@ class ServerEntity {
     public Filter filter;
     public Actuator localActuator;
     public boolean isToggle;
+    private final EventStore history;
+    private final boolean ownsHistory;
+    private int windowCapacity;
+    private double[] timeStamps;
+    private double[] values;
+    private boolean[] booleanValues;
+    private int windowStart;
+    private int windowSize;
+    private int eventCount;
+    private double averageInterval;
+    private int intervalCount;
+    private final int[][] transitions;
+    private ForecastSelector forecasts;
+    private ForecastSelector settled;
+    private List<Double> cachedTimeStamps;
+    private List<Object> cachedValues;
 
     /*
     Abstraction Function:
@@ -27,25 +49,87 @@ class ServerEntity {
     Entity has previously sent to the server, and allows for the server to send messages back to the
     Entity, if the Entity is an Actuator.
 
+    Every event that the Entity has sent is kept in history, which holds the events of the whole Client,
+    and only the latest windowSize = min(eventCount, windowCapacity) events of the Entity, the ones that
+    predictions are made from, are also kept here, as primitive samples in a ring: the i-th latest but
+    windowSize - 1 - i sample, for 0 <= i < windowSize, is timeStamps[j], values[j] and booleanValues[j]
+    where j = (windowStart + i) % timeStamps.length. Older events are read from history when they are needed.
+    If ownsHistory is true, history belongs to this ServerEntity alone, and events are added to it here,
+    otherwise the Server adds each event to history right after it is recorded here.
+    latestEvent is the event with the latest timestamp, the one that arrived last if several share it,
+    or null if there are no events.
+
+    averageInterval is the exponentially weighted moving average of the intervals between the latest
+    timestamp and each event that arrived with a later timestamp, the newest weighted by INTERVAL_SMOOTHING,
+    and intervalCount is the number of such intervals. Events that arrive out of order do not change it.
+
+    transitions[from][to] is the number of events whose boolean value is to that directly follow, in timestamp
+    order, an event whose boolean value is from, where false is 0 and true is 1. It is updated in constant time
+    as events are recorded, so that the boolean values can be predicted without reading them, except for an
+    event that arrives before all the samples, whose neighbours are read from history.
+
+    forecasts, once a forecast of the double values has been asked for, has observed the double values of
+    the events in timestamp order, and observes each event that arrives with the latest timestamp. settled
+    is created with it, and has observed the double values of the events before the samples, in timestamp
+    order, so that it observes each sample that is dropped from the window. When an event arrives out of
+    order among the samples, forecasts is replaced by a copy of settled that observes the samples again.
+    Both are null before a forecast is asked for, and after an event arrives before all the samples or the
+    window changes, and are created again from history when they are next needed.
+
+    cachedTimeStamps and cachedValues are the latest predictions of the next timestamps and values of the
+    Entity, or null if none have been made since the latest event was recorded. A prediction of fewer values
+    is a prefix of one of more values, so a cached list also answers every request for fewer predictions.
+
     Representation Invariant:
-    - eventList is not null
+    - history is not null, and holds exactly the events of the Entity that have been recorded
+    - windowCapacity > 0, and windowSize == min(eventCount, windowCapacity)
+    - timeStamps.length == values.length == booleanValues.length, and windowSize <= timeStamps.length <= windowCapacity
+    - 0 <= windowStart < timeStamps.length
+    - the samples are the latest windowSize events of history with the id of the Entity, in timestamp order
+    - latestEvent is null iff eventCount == 0
+    - 0 <= intervalCount < max(eventCount, 1), and averageInterval >= 0
+    - transitions is a 2 by 2 array, and the sum of its counts is max(eventCount - 1, 0)
+    - forecasts is null iff settled is null, and both were created from the same Forecasters
     - if isActuator is true, then actuatorSocket is not null and pWriter is not null and actuatorSocketIP is not null
     - if isActuator is false, then actuatorSocket is null and pWriter is null and actuatorSocketIP is null
 
      */
 
-    /** Construct a new ServerEntity object representing an Entity on the server
+    /** Construct a new ServerEntity object representing an Entity on the server, which keeps its own events
      *
      * @param id the id of the Entity that this ServerEntity represents
      * @param isActuator whether the Entity is an Actuator or not
      */
     ServerEntity(int id, boolean isActuator) {
+        this(id, isActuator, new EventStore(), true, DEFAULT_WINDOW_CAPACITY);
+    }
+
+    /** Construct a new ServerEntity object representing an Entity on the server, which reads its older
+     *  events from the events of its Server
+     *
+     * @param id the id of the Entity that this ServerEntity represents
+     * @param isActuator whether the Entity is an Actuator or not
+     * @param history the events of the Server, which the Server adds each event of the Entity to right after
+     *                it is recorded by this ServerEntity, is not null
+     * @param windowCapacity the number of latest samples of the Entity to keep, > 0
+     */
+    ServerEntity(int id, boolean isActuator, EventStore history, int windowCapacity) {
+        this(id, isActuator, history, false, windowCapacity);
+    }
+
+    private ServerEntity(int id, boolean isActuator, EventStore history, boolean ownsHistory, int windowCapacity) {
         this.id = id;
         this.isActuator = isActuator;
-        this.eventList = new ArrayList<>();
+        this.latestEvent = null;
         this.pWriter = null;
         this.lastEventTimeStamp = 0;
         this.filter = null;
+        this.history = history;
+        this.ownsHistory = ownsHistory;
+        this.windowCapacity = windowCapacity;
+        allocateWindow(Math.min(INITIAL_WINDOW_LENGTH, windowCapacity));
+        this.eventCount = 0;
+        this.transitions = new int[2][2];
     }
 
     /** Construct a new ServerEntity object representing an Entity on the server, with an http
@@ -59,15 +143,418 @@ class ServerEntity {
      * @param pWriter the PrintWriter of the Entity, is not null
      */
     ServerEntity(int id, boolean isActuator, String IP, int port, Socket actuatorSocket, PrintWriter pWriter) {
-        this.id = id;
-        this.isActuator = isActuator;
-        this.eventList = new ArrayList<>();
+        this(id, isActuator);
         this.actuatorSocketIP = IP;
         this.actuatorSocketPort = port;
         this.actuatorSocket = actuatorSocket;
         this.pWriter = pWriter;
-        this.lastEventTimeStamp = 0;
-        this.filter = null;
+    }
+
+    private void allocateWindow(int length) {
+        timeStamps = new double[length];
+        values = new double[length];
+        booleanValues = new boolean[length];
+        windowStart = 0;
+        windowSize = 0;
+    }
+
+    private int slot(int index) {
+        return (windowStart + index) % timeStamps.length;
+    }
+
+    /** Record an event that the Entity represented by this ServerEntity has sent to the server.
+     *  Events normally arrive in timestamp order and are appended to the samples, otherwise the event
+     *  is inserted at its position found by binary search, if it is among the latest events.
+     *
+     * @param event the event to record, is not null, has the same entity id as this ServerEntity,
+     *              and has not been added to the history of the Server yet
+     */
+    void addEvent(Event event) {
+        double timeStamp = event.getTimeStamp();
+        int value = event.getValueBoolean() ? 1 : 0;
+        int index = windowSize;
+        if (windowSize > 0 && timeStamps[slot(windowSize - 1)] < timeStamp) {
+            double interval = timeStamp - timeStamps[slot(windowSize - 1)];
+            averageInterval = intervalCount == 0 ? interval
+                    : averageInterval + INTERVAL_SMOOTHING * (interval - averageInterval);
+            intervalCount++;
+        }
+        if (windowSize > 0 && timeStamps[slot(windowSize - 1)] > timeStamp) {
+            int low = 0;
+            int high = windowSize - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timeStamps[slot(mid)] <= timeStamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            index = low;
+        }
+
+        int previous = -1;
+        int next = -1;
+        if (index > 0) {
+            previous = bit(index - 1);
+            next = index < windowSize ? bit(index) : -1;
+        } else if (eventCount > windowSize) {
+            // the event comes before all the samples, so its neighbours may be older events
+            List<Event> before = history.lastOfEntity(id, timeStamp, 1);
+            previous = before.isEmpty() ? -1 : (before.get(0).getValueBoolean() ? 1 : 0);
+            Event after = history.nextOfEntity(id, timeStamp);
+            next = after == null ? -1 : (after.getValueBoolean() ? 1 : 0);
+        } else if (windowSize > 0) {
+            next = bit(0);
+        }
+        if (previous >= 0 && next >= 0) {
+            // the new event comes between two events, so the transition between them is replaced
+            transitions[previous][next]--;
+        }
+        if (previous >= 0) {
+            transitions[previous][value]++;
+        }
+        if (next >= 0) {
+            transitions[value][next]++;
+        }
+
+        boolean latest = index == windowSize;
+        insertSample(index, timeStamp, event.getValueDouble(), value == 1);
+        if (latest) {
+            latestEvent = event;
+        }
+        eventCount++;
+        if (ownsHistory) {
+            history.add(event);
+        }
+        clearCachedPredictions();
+        if (forecasts != null) {
+            if (latest) {
+                forecasts.observe(event.getValueDouble());
+            } else if (index > 0 || windowSize == eventCount) {
+                // roll back to the values before the samples, and observe the samples again with the new one
+                forecasts = settled.copy();
+                for (int i = 0; i < windowSize; i++) {
+                    forecasts.observe(values[slot(i)]);
+                }
+            } else {
+                forecasts = null;
+                settled = null;
+            }
+        }
+    }
+
+    /** Insert a sample among the samples, dropping the earliest sample if there are windowCapacity samples.
+     *  A sample that would be dropped itself is not inserted.
+     *
+     * @param index the position of the new sample, 0 <= index <= windowSize
+     */
+    private void insertSample(int index, double timeStamp, double value, boolean booleanValue) {
+        if (windowSize == windowCapacity) {
+            if (index == 0) {
+                return;
+            }
+            if (settled != null) {
+                settled.observe(values[slot(0)]);
+            }
+            windowStart = slot(1);
+            windowSize--;
+            index--;
+        } else if (windowSize == timeStamps.length) {
+            growWindow(Math.min(windowCapacity, timeStamps.length * 2));
+        }
+        for (int i = windowSize; i > index; i--) {
+            timeStamps[slot(i)] = timeStamps[slot(i - 1)];
+            values[slot(i)] = values[slot(i - 1)];
+            booleanValues[slot(i)] = booleanValues[slot(i - 1)];
+        }
+        timeStamps[slot(index)] = timeStamp;
+        values[slot(index)] = value;
+        booleanValues[slot(index)] = booleanValue;
+        windowSize++;
+    }
+
+    private void growWindow(int length) {
+        double[] oldTimeStamps = getLastTimeStamps(windowSize);
+        double[] oldValues = getLastValues(windowSize);
+        boolean[] oldBooleanValues = getLastBooleanValues(windowSize);
+        allocateWindow(length);
+        for (int i = 0; i < oldTimeStamps.length; i++) {
+            insertSample(i, oldTimeStamps[i], oldValues[i], oldBooleanValues[i]);
+        }
+    }
+
+    private int bit(int index) {
+        return booleanValues[slot(index)] ? 1 : 0;
+    }
+
+    /** Update how many of the latest samples of the Entity are kept, reading them from history if more
+     *  are needed than are kept
+     *
+     * @param windowCapacity the number of latest samples of the Entity to keep, > 0
+     */
+    void updateWindowCapacity(int windowCapacity) {
+        if (windowCapacity == this.windowCapacity) {
+            return;
+        }
+        this.windowCapacity = windowCapacity;
+        forecasts = null;
+        settled = null;
+        int size = Math.min(eventCount, windowCapacity);
+        double[] newTimeStamps = getLastTimeStamps(size);
+        double[] newValues = getLastValues(size);
+        boolean[] newBooleanValues = getLastBooleanValues(size);
+        allocateWindow(Math.max(size, Math.min(INITIAL_WINDOW_LENGTH, windowCapacity)));
+        for (int i = 0; i < size; i++) {
+            insertSample(i, newTimeStamps[i], newValues[i], newBooleanValues[i]);
+        }
+    }
+
+    /** Get the number of events that the Entity represented by this ServerEntity has sent to the server
+     *
+     * @return the number of events received from the Entity
+     */
+    int getEventCount() {
+        return eventCount;
+    }
+
+    /** Get the latest events of the Entity from history, for more events than the samples hold
+     *
+     * @param count the max number of events to get, >= 0
+     * @return a new list of the latest min(count, getEventCount()) events of the Entity, earliest first
+     */
+    private List<Event> lastEvents(int count) {
+        return history.lastOfEntity(id, Double.POSITIVE_INFINITY, count);
+    }
+
+    /** Get the timestamps of all the events received from the Entity, in increasing order
+     *
+     * @return a new array of the timestamps of the events received from the Entity
+     */
+    double[] getTimeStamps() {
+        return getLastTimeStamps(eventCount);
+    }
+
+    /** Get the timestamps of the latest events received from the Entity, in increasing order. Only the
+     *  latest samples are kept, so older events are read from the events of the Server.
+     *
+     * @param count the max number of timestamps to get, >= 0
+     * @return a new array of the timestamps of the latest min(count, getEventCount()) events
+     */
+    double[] getLastTimeStamps(int count) {
+        double[] result = new double[Math.min(count, eventCount)];
+        if (result.length > windowSize) {
+            List<Event> events = lastEvents(result.length);
+            for (int i = 0; i < result.length; i++) {
+                result[i] = events.get(i).getTimeStamp();
+            }
+            return result;
+        }
+        for (int i = 0; i < result.length; i++) {
+            result[i] = timeStamps[slot(windowSize - result.length + i)];
+        }
+        return result;
+    }
+
+    /** Get the double values of all the events received from the Entity, in timestamp order
+     *
+     * @return a new array of the double values of the events received from the Entity
+     */
+    double[] getValues() {
+        return getLastValues(eventCount);
+    }
+
+    /** Get the double values of the latest events received from the Entity, in timestamp order. Only the
+     *  latest samples are kept, so older events are read from the events of the Server.
+     *
+     * @param count the max number of values to get, >= 0
+     * @return a new array of the double values of the latest min(count, getEventCount()) events
+     */
+    double[] getLastValues(int count) {
+        double[] result = new double[Math.min(count, eventCount)];
+        if (result.length > windowSize) {
+            List<Event> events = lastEvents(result.length);
+            for (int i = 0; i < result.length; i++) {
+                result[i] = events.get(i).getValueDouble();
+            }
+            return result;
+        }
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values[slot(windowSize - result.length + i)];
+        }
+        return result;
+    }
+
+    /** Get the boolean values of all the events received from the Entity, in timestamp order
+     *
+     * @return a new array of the boolean values of the events received from the Entity
+     */
+    boolean[] getBooleanValues() {
+        return getLastBooleanValues(eventCount);
+    }
+
+    /** Get the boolean values of the latest events received from the Entity, in timestamp order. Only the
+     *  latest samples are kept, so older events are read from the events of the Server.
+     *
+     * @param count the max number of values to get, >= 0
+     * @return a new array of the boolean values of the latest min(count, getEventCount()) events
+     */
+    boolean[] getLastBooleanValues(int count) {
+        boolean[] result = new boolean[Math.min(count, eventCount)];
+        if (result.length > windowSize) {
+            List<Event> events = lastEvents(result.length);
+            for (int i = 0; i < result.length; i++) {
+                result[i] = events.get(i).getValueBoolean();
+            }
+            return result;
+        }
+        for (int i = 0; i < result.length; i++) {
+            result[i] = booleanValues[slot(windowSize - result.length + i)];
+        }
+        return result;
+    }
+
+    /** Get the moving average of the intervals between the events of the Entity, which is updated
+     *  in constant time by every event that arrives with a later timestamp than the ones before
+     *
+     * @return the moving average of the intervals between events, 0 if there has been no interval yet
+     */
+    double getAverageInterval() {
+        return averageInterval;
+    }
+
+    /** Predict the timestamps of the next events of the Entity, one average interval apart after the
+     *  latest timestamp. This takes time proportional to n, however many events the Entity has sent.
+     *
+     * @param n the number of timestamps to predict, >= 0
+     * @return the list of the n predicted timestamps, empty if the Entity has not sent any events
+     */
+    List<Double> extrapolateTimeStamps(int n) {
+        List<Double> predictions = new ArrayList<>();
+        if (eventCount == 0) {
+            return predictions;
+        }
+        double latest = timeStamps[slot(windowSize - 1)];
+        for (int i = 1; i <= n; i++) {
+            predictions.add(latest + i * averageInterval);
+        }
+        return predictions;
+    }
+
+    /** Get how often a boolean value followed another among the events of the Entity, in timestamp order
+     *
+     * @param from the boolean value of the earlier event
+     * @param to the boolean value of the event that directly follows it
+     * @return the number of times an event with the boolean value to directly followed an event
+     *         with the boolean value from
+     */
+    int getTransitionCount(boolean from, boolean to) {
+        return transitions[from ? 1 : 0][to ? 1 : 0];
+    }
+
+    /** Predict the boolean values of the next events of the Entity from how often each value has
+     *  followed the other, as Predictor.predictBool() does from the whole history of the Entity.
+     *  This takes time proportional to n, however many events the Entity has sent.
+     *
+     * @param n the number of values to predict, >= 0
+     * @return the list of the n predicted values, empty if the Entity has not sent any events
+     */
+    List<Boolean> predictBooleanValues(int n) {
+        if (eventCount == 0) {
+            return new ArrayList<>();
+        }
+        return Predictor.predictBool(transitions, booleanValues[slot(windowSize - 1)], n);
+    }
+
+    /** Forecast the double values of the next events of the Entity with whichever of the given Forecasters
+     *  has forecast its past values best. The Forecasters observe each event as it arrives, so this takes
+     *  time that does not grow with the number of events, except the first time it is called with a list,
+     *  and after an event arrives before all the samples, when they observe all the events of the Entity
+     *  again. An event that arrives out of order among the samples only makes them observe the samples again.
+     *
+     * @param n the number of values to forecast, >= 0
+     * @param forecasters the Forecasters to choose among, is not null or empty and has no null elements.
+     *                    It must not be modified afterwards, and a new list must be given instead.
+     * @return the list of the n forecast values, empty if the Entity has not sent any events
+     */
+    List<Double> forecastValues(int n, List<Forecaster> forecasters) {
+        if (eventCount == 0) {
+            return new ArrayList<>();
+        }
+        return getForecasts(forecasters).forecast(n);
+    }
+
+    /** Get the ForecastSelector that chooses among the given Forecasters for the double values of the
+     *  Entity, creating it if needed
+     *
+     * @param forecasters the Forecasters to choose among, is not null or empty and has no null elements
+     * @return the ForecastSelector, which has observed the double values of all the events of the Entity
+     */
+    ForecastSelector getForecasts(List<Forecaster> forecasters) {
+        if (forecasts == null || !forecasts.isCreatedFrom(forecasters)) {
+            settled = new ForecastSelector(forecasters);
+            double[] history = getValues();
+            for (int i = 0; i < history.length - windowSize; i++) {
+                settled.observe(history[i]);
+            }
+            forecasts = settled.copy();
+            for (int i = 0; i < windowSize; i++) {
+                forecasts.observe(values[slot(i)]);
+            }
+        }
+        return forecasts;
+    }
+
+    /** Get the first predictions of the cached predictions of the next timestamps of the Entity
+     *
+     * @param n the number of predictions, >= 0
+     * @return a new list of the first n cached predictions, or null if fewer than n predictions are cached
+     */
+    List<Double> getCachedTimeStamps(int n) {
+        if (cachedTimeStamps == null || cachedTimeStamps.size() < n) {
+            return null;
+        }
+        return new ArrayList<>(cachedTimeStamps.subList(0, n));
+    }
+
+    /** Cache predictions of the next timestamps of the Entity, until the next event is recorded
+     *
+     * @param predictions the predictions, made from all the events recorded so far, is not null
+     */
+    void cacheTimeStamps(List<Double> predictions) {
+        if (cachedTimeStamps == null || cachedTimeStamps.size() < predictions.size()) {
+            cachedTimeStamps = new ArrayList<>(predictions);
+        }
+    }
+
+    /** Get the first predictions of the cached predictions of the next values of the Entity
+     *
+     * @param n the number of predictions, >= 0
+     * @return a new list of the first n cached predictions, or null if fewer than n predictions are cached
+     */
+    List<Object> getCachedValues(int n) {
+        if (cachedValues == null || cachedValues.size() < n) {
+            return null;
+        }
+        return new ArrayList<>(cachedValues.subList(0, n));
+    }
+
+    /** Cache predictions of the next values of the Entity, until the next event is recorded
+     *
+     * @param predictions the predictions, made from all the events recorded so far, is not null
+     */
+    void cacheValues(List<Object> predictions) {
+        if (cachedValues == null || cachedValues.size() < predictions.size()) {
+            cachedValues = new ArrayList<>(predictions);
+        }
+    }
+
+    /** Forget the cached predictions of the Entity
+     *
+     */
+    void clearCachedPredictions() {
+        cachedTimeStamps = null;
+        cachedValues = null;
     }
 
     /** Get the most recent event that has been sent to the server by the Entity which this ServerEntity
@@ -77,10 +564,6 @@ class ServerEntity {
      *         this ServerEntity has sent to the server, null if the Entity has not sent any events to the server
      */
     public Event getLatestEvent() {
-        if (this.eventList.isEmpty()) {
-            return null;
-        }
-        this.eventList.sort((a, b) -> (int) (a.getTimeStamp() - b.getTimeStamp()));
-        return this.eventList.get(this.eventList.size()-1);
+        return this.latestEvent;
     }
 }
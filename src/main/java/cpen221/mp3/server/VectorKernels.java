@@ -0,0 +1,90 @@
+package cpen221.mp3.server;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+final class VectorKernels {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+
+    /*
+    Abstraction Function:
+    Represents the loops over the columns of an EventColumns written with the Vector API, which compare
+    as many elements at once as the widest vectors of the CPU hold. Each kernel gives the same result as
+    the scalar loop it replaces. The Vector API is in the incubator module jdk.incubator.vector, so this
+    class must only be used after EventColumns.isVectorized() has returned true, which checks that the
+    module is in the running JVM.
+
+    Representation Invariant:
+    - DOUBLES.length() is a power of two no larger than 64
+
+    Thread Safety Arguments:
+    - the kernels keep no state, and only read the columns that they are given
+     */
+
+    private VectorKernels() {
+    }
+
+    /** Compare a range of a column with a value, and write a bit per element to the words of a bitmap
+     *  that hold the range. Bits outside the range in those words are cleared.
+     *
+     * @param column the column to compare, is not null
+     * @param operator the ordinal of the DoubleOperator to compare with
+     * @param value the value to compare with
+     * @param from the first element of the range
+     * @param to the element after the last element of the range, > from
+     * @param words the bitmap to write the results to, with room for at least to bits, is not null
+     */
+    static void compare(double[] column, int operator, double value, int from, int to, long[] words) {
+        int lanes = DOUBLES.length();
+        int i = from;
+        while (i < to) {
+            int w = i >>> 6;
+            int end = Math.min(to, (w + 1) << 6);
+            long bits = 0;
+            // a vector never crosses a word, because the lanes of a vector divide 64, and the comparison
+            // is a constant in each loop so that the JIT compiles it to vector instructions
+            switch (operator) {
+                case 0 -> {
+                    for (; i + lanes <= end; i += lanes) {
+                        bits |= DoubleVector.fromArray(DOUBLES, column, i).eq(value).toLong() << i;
+                    }
+                }
+                case 1 -> {
+                    for (; i + lanes <= end; i += lanes) {
+                        bits |= DoubleVector.fromArray(DOUBLES, column, i).compare(VectorOperators.GT, value).toLong() << i;
+                    }
+                }
+                case 2 -> {
+                    for (; i + lanes <= end; i += lanes) {
+                        bits |= DoubleVector.fromArray(DOUBLES, column, i).lt(value).toLong() << i;
+                    }
+                }
+                case 3 -> {
+                    for (; i + lanes <= end; i += lanes) {
+                        bits |= DoubleVector.fromArray(DOUBLES, column, i).compare(VectorOperators.GE, value).toLong() << i;
+                    }
+                }
+                default -> {
+                    for (; i + lanes <= end; i += lanes) {
+                        bits |= DoubleVector.fromArray(DOUBLES, column, i).compare(VectorOperators.LE, value).toLong() << i;
+                    }
+                }
+            }
+            for (; i < end; i++) {
+                bits |= (satisfies(column[i], operator, value) ? 1L : 0L) << i;
+            }
+            words[w] = bits;
+        }
+    }
+
+    private static boolean satisfies(double element, int operator, double value) {
+        return switch (operator) {
+            case 0 -> element == value;
+            case 1 -> element > value;
+            case 2 -> element < value;
+            case 3 -> element >= value;
+            default -> element <= value;
+        };
+    }
+}
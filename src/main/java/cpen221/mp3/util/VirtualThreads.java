@@ -0,0 +1,87 @@
+package cpen221.mp3.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+public final class VirtualThreads {
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY = lookupVirtualThreadFactory();
+    private static volatile boolean entitiesUseVirtualThreads = Boolean.getBoolean("cpen221.mp3.virtualThreads");
+    private static volatile boolean warnedUnsupported = false;
+
+    /*
+    Abstraction Function:
+    Represents the choice between platform threads and virtual threads for the threads that handle
+    connections. Virtual threads are only available when running on Java 21 or later, so the factory
+    for them is looked up reflectively, and platform threads are used instead when it is not available.
+    Entities (Sensors and Actuators) use virtual threads iff entitiesUseVirtualThreads is true, which
+    defaults to the value of the system property cpen221.mp3.virtualThreads.
+
+    Representation Invariant:
+    - VIRTUAL_THREAD_FACTORY is null iff virtual threads are not supported by the running JVM
+     */
+
+    private VirtualThreads() {
+    }
+
+    /** Look up the factory for virtual threads of the running JVM
+     *
+     * @return a factory that creates unstarted virtual threads, or null if virtual threads are not supported
+     */
+    private static ThreadFactory lookupVirtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /** Determine if the running JVM supports virtual threads
+     *
+     * @return true if virtual threads are supported, false otherwise
+     */
+    public static boolean isSupported() {
+        return VIRTUAL_THREAD_FACTORY != null;
+    }
+
+    /** Start a new thread running the given task. If a virtual thread is requested but
+     *  virtual threads are not supported, a platform thread is started instead.
+     *
+     * @param task the task for the new thread to run, is not null
+     * @param virtual true to start a virtual thread, false to start a platform thread
+     * @return the started thread
+     */
+    public static Thread start(Runnable task, boolean virtual) {
+        Thread thread;
+        if (virtual && VIRTUAL_THREAD_FACTORY != null) {
+            thread = VIRTUAL_THREAD_FACTORY.newThread(task);
+        } else {
+            if (virtual && !warnedUnsupported) {
+                warnedUnsupported = true;
+                System.out.println("Virtual threads are not supported by this JVM, using platform threads instead");
+            }
+            thread = new Thread(task);
+        }
+        thread.start();
+        return thread;
+    }
+
+    /** Start a new thread for an entity running the given task, which is a virtual thread
+     *  iff entities have been configured to use virtual threads.
+     *
+     * @param task the task for the new thread to run, is not null
+     * @return the started thread
+     */
+    public static Thread startForEntity(Runnable task) {
+        return start(task, entitiesUseVirtualThreads);
+    }
+
+    /** Configure whether entities should use virtual threads for sending and receiving messages
+     *
+     * @param useVirtualThreads true if threads started by entities from now on should be virtual threads
+     */
+    public static void setEntitiesUseVirtualThreads(boolean useVirtualThreads) {
+        entitiesUseVirtualThreads = useVirtualThreads;
+    }
+}
@@ -131,4 +131,29 @@ public class Task4Test {
 
         assertEquals(new ArrayList<Object>(predictor.predictBool()), new ArrayList<Object>(check));
     }
+    @Test
+    public void testPrimitiveArraysMatchLists(){
+        Random random = new Random(19);
+        double[] doubles = new double[12];
+        boolean[] booleans = new boolean[40];
+        List<Object> doubleList = new ArrayList<>();
+        List<Object> booleanList = new ArrayList<>();
+        for(int i = 0; i < doubles.length; i++){
+            doubles[i] = random.nextInt(5);
+            doubleList.add(doubles[i]);
+        }
+        for(int i = 0; i < booleans.length; i++){
+            booleans[i] = random.nextInt(3) > 0;
+            booleanList.add(booleans[i]);
+        }
+
+        assertEquals(new Predictor(doubleList, true, 4).predictDouble(), new Predictor(doubles, 4).predictDouble());
+        assertEquals(new Predictor(booleanList, false, 6).predictBool(), new Predictor(booleans, 6).predictBool());
+    }
+    @Test
+    public void testBooleanNeverFollowed(){
+        Predictor predictor = new Predictor(new boolean[]{false, false, true}, 3);
+        assertEquals(List.of(true, true, true), predictor.predictBool());
+        assertEquals(List.of(false, false), new Predictor(new boolean[]{false}, 2).predictBool());
+    }
 }
@@ -0,0 +1,56 @@
+package cpen221.mp3.event;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryEventTests {
+
+    @Test
+    public void testRoundTripEvents() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryEventWriter writer = new BinaryEventWriter(bytes);
+        writer.writeSensorEvent(7, new SensorEvent(1.697558400123E12, 7, 3, "TempSensor", 21.5));
+        writer.writeSensorEvent(7, new SensorEvent(1.697558400124E12, 7, 3, "TempSensor", 22.25));
+        writer.writeActuatorEvent(7, new ActuatorEvent(1.697558400125E12, 7, 4, "Switch", true), "10.0.0.2", 20488);
+        writer.flush();
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        assertEquals(BinaryEventFormat.MAGIC, buffer.get() & 0xff);
+        BinaryEventReader reader = new BinaryEventReader();
+        int events = 0;
+        Event[] read = new Event[3];
+        String[] returnSocketInfo = null;
+        while (buffer.hasRemaining()) {
+            int length = buffer.getInt();
+            ByteBuffer frame = buffer.slice();
+            frame.limit(length);
+            buffer.position(buffer.position() + length);
+            if (reader.readFrame(frame)) {
+                assertEquals(7, reader.getClientId());
+                read[events++] = reader.getEvent();
+                returnSocketInfo = reader.getReturnSocketInfo();
+            }
+        }
+
+        assertEquals(3, events);
+        assertEquals("SensorEvent: {timeStamp=1.697558400123E12, clientId=7, entityId=3, entityType=TempSensor, value=21.5}", read[0].toString());
+        assertEquals(22.25, read[1].getValueDouble());
+        assertSame(read[0].getEntityType(), read[1].getEntityType());
+        assertEquals(4, read[2].getEntityId());
+        assertTrue(read[2].getValueBoolean());
+        assertArrayEquals(new String[]{"10.0.0.2", "20488"}, returnSocketInfo);
+    }
+
+    @Test
+    public void testRejectUndefinedString() {
+        ByteBuffer frame = ByteBuffer.allocate(64);
+        frame.put(BinaryEventFormat.SENSOR_EVENT).putInt(1).putDouble(0).putInt(1).putInt(2).putShort((short) 5).putDouble(0);
+        frame.flip();
+        BinaryEventReader reader = new BinaryEventReader();
+        assertThrows(IllegalArgumentException.class, () -> reader.readFrame(frame));
+    }
+}
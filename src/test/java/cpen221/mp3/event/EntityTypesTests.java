@@ -0,0 +1,68 @@
+package cpen221.mp3.event;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EntityTypesTests {
+
+    @Test
+    public void testSameTypeSameCode() {
+        int code = EntityTypes.code("HumiditySensor");
+        assertEquals(code, EntityTypes.code(new String("HumiditySensor")));
+        assertEquals(code, EntityTypes.code(new StringBuilder("x=HumiditySensor, y"), 2, 16));
+        assertNotEquals(code, EntityTypes.code("HumiditySenso"));
+        assertEquals("HumiditySensor", EntityTypes.name(code));
+        assertSame(EntityTypes.name(code), EntityTypes.name(EntityTypes.code(new String("HumiditySensor"))));
+
+        assertEquals(EntityTypes.NULL_TYPE, EntityTypes.code(null));
+        assertNull(EntityTypes.name(EntityTypes.NULL_TYPE));
+        assertNotEquals(EntityTypes.NULL_TYPE, EntityTypes.code(""));
+        assertThrows(IllegalArgumentException.class, () -> EntityTypes.name(-1));
+    }
+
+    @Test
+    public void testEventsShareTypes() {
+        Event first = new SensorEvent(1, 0, 1, new String("CO2Sensor"), 400);
+        Event second = new SensorEvent(1, 0, 1, new String("CO2Sensor"), 400);
+        assertSame(first.getEntityType(), second.getEntityType());
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+
+        Event coded = new ActuatorEvent(2, 0, 3, EntityTypes.code("Switch"), true);
+        assertEquals(new ActuatorEvent(2, 0, 3, "Switch", true), coded);
+        assertEquals("Switch", coded.getEntityType());
+    }
+
+    @Test
+    public void testManyTypesFromManyThreads() throws InterruptedException {
+        int types = 2000;
+        // multipliers that share no factor with types, so each thread sees every type once
+        int[] orders = {1, 7919, 7927, 7933};
+        int threads = orders.length;
+        int[][] codes = new int[threads][types];
+        List<Thread> started = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Thread worker = new Thread(() -> {
+                for (int i = 0; i < types; i++) {
+                    int type = (int) ((long) i * orders[thread] % types);
+                    codes[thread][type] = EntityTypes.code("ManyTypes" + type);
+                }
+            });
+            worker.start();
+            started.add(worker);
+        }
+        for (Thread worker : started) {
+            worker.join();
+        }
+        for (int i = 0; i < types; i++) {
+            for (int t = 1; t < threads; t++) {
+                assertEquals(codes[0][i], codes[t][i]);
+            }
+            assertEquals("ManyTypes" + i, EntityTypes.name(codes[0][i]));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package cpen221.mp3.handler;
+
+import cpen221.mp3.entity.Sensor;
+import cpen221.mp3.util.VirtualThreads;
+import cpen221.mp3.server.Server;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
+/**
+ * Connects many Sensors to a single MessageHandler running in the given IngestMode (IngestMode.VIRTUAL_THREADS
+ * by default), with the Sensors using virtual threads, and reports how many of them got an event through to
+ * their Server. It is not part of the unit tests: run it with gradle connectionLoadTest, which uses a Java 21
+ * toolchain for virtual threads. It needs a file descriptor limit of at least twice the number of sensors
+ * (e.g. ulimit -n 200000).
+ * Connections are spread over several loopback addresses so that the ephemeral ports of a single
+ * address are not exhausted.
+ *
+ * usage: ConnectionLoadTest [sensors, default 50000] [clients, default 100] [ingest mode, default VIRTUAL_THREADS]
+ */
+public class ConnectionLoadTest {
+    private static final int CONNECTIONS_PER_ADDRESS = 20000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int sensors = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        IngestMode ingestMode = args.length > 2 ? IngestMode.valueOf(args[2]) : IngestMode.VIRTUAL_THREADS;
+        if (!VirtualThreads.isSupported()) {
+            System.out.println("WARNING: virtual threads are not supported by this JVM, platform threads will be used");
+        }
+
+        MessageHandler messageHandler = new MessageHandler(0, Runtime.getRuntime().availableProcessors(), ingestMode);
+        messageHandler.start();
+        VirtualThreads.setEntitiesUseVirtualThreads(true);
+
+        long start = System.currentTimeMillis();
+        List<Sensor> connected = new ArrayList<>();
+        for (int i = 0; i < sensors; i++) {
+            String address = "127.0.0." + (1 + i / CONNECTIONS_PER_ADDRESS);
+            Sensor sensor = new Sensor(i, i % clients, "TempSensor");
+            sensor.setEventGenerationFrequency(0.000000001);
+            sensor.setEndpoint(address, messageHandler.getPort());
+            connected.add(sensor);
+        }
+        long connectMillis = System.currentTimeMillis() - start;
+
+        // every sensor sends one event when it connects, wait for all of them to be processed
+        int received = 0;
+        for (int attempt = 0; attempt < 60 && received < sensors; attempt++) {
+            Thread.sleep(1000);
+            received = 0;
+            for (int clientId = 0; clientId < clients; clientId++) {
+                Server server = messageHandler.serverMap.get(clientId);
+                try {
+                    if (server != null) {
+                        received += server.mostActiveEntities(Integer.MAX_VALUE).size();
+                    }
+                } catch (ConcurrentModificationException e) {
+                    // still being processed, check again later
+                }
+            }
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        System.err.printf("mode=%s sensors=%d connected in %d ms, entities with events=%d, platform threads=%d, heap used=%d MB%n",
+                ingestMode, connected.size(), connectMillis, received, ManagementFactory.getThreadMXBean().getThreadCount(),
+                (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024));
+        System.exit(received == sensors ? 0 : 1);
+    }
+}
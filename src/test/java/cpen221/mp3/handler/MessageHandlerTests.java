@@ -0,0 +1,155 @@
+package cpen221.mp3.handler;
+
+import cpen221.mp3.client.Client;
+import cpen221.mp3.client.Request;
+import cpen221.mp3.event.Event;
+import cpen221.mp3.event.SensorEvent;
+import cpen221.mp3.server.Server;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageHandlerTests {
+    private static final int DISPATCHERS = 4;
+    private static final int CLIENTS = 8;
+    private static final int EVENTS_PER_CLIENT = 20;
+    private static final int SLOW_CLIENT = 0;
+    private static final long SLOW_MILLIS = 100;
+
+    /** A Server that records the timestamps of the events it processes, and takes SLOW_MILLIS
+     *  for every event if it is the Server of SLOW_CLIENT
+     */
+    private static class RecordingServer extends Server {
+        private final List<Double> timeStamps = Collections.synchronizedList(new ArrayList<>());
+        private final boolean slow;
+
+        RecordingServer(int clientID) {
+            super(new Client(clientID, clientID + "client@gmail.com", "127.0.0.1", 0));
+            this.slow = clientID == SLOW_CLIENT;
+        }
+
+        @Override
+        public void processInput(Event event, Request request, String[] actuatorSocketInfo) {
+            if (slow) {
+                try {
+                    Thread.sleep(SLOW_MILLIS);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            timeStamps.add(event.getTimeStamp());
+        }
+    }
+
+    private static boolean waitFor(List<RecordingServer> servers, int events, long timeoutMillis)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (System.currentTimeMillis() < deadline) {
+            boolean done = true;
+            for (RecordingServer server : servers) {
+                done &= server.timeStamps.size() == events;
+            }
+            if (done) {
+                return true;
+            }
+            Thread.sleep(5);
+        }
+        return false;
+    }
+
+    @Test
+    public void testSlowClientOnlyDelaysItsOwnDispatcher() throws InterruptedException {
+        MessageHandler messageHandler = new MessageHandler(0, DISPATCHERS);
+        Map<Integer, RecordingServer> servers = new ConcurrentHashMap<>();
+        for (int clientID = 0; clientID < CLIENTS; clientID++) {
+            RecordingServer server = new RecordingServer(clientID);
+            servers.put(clientID, server);
+            messageHandler.serverMap.put(clientID, server);
+            messageHandler.waitTime.put(clientID, server.getMaxWaitTime());
+        }
+        messageHandler.start();
+
+        // every client's events arrive out of order, and are all due at once
+        double now = System.currentTimeMillis();
+        List<MessageHandlerEvent> messages = new ArrayList<>();
+        for (int i = 0; i < EVENTS_PER_CLIENT; i++) {
+            double timeStamp = (i * 7) % EVENTS_PER_CLIENT;
+            for (int clientID = 0; clientID < CLIENTS; clientID++) {
+                messages.add(new MessageHandlerEvent(new SensorEvent(timeStamp, clientID, 1, "TempSensor", i),
+                        null, now, clientID, now - 1));
+            }
+        }
+        messageHandler.schedule(messages);
+
+        List<RecordingServer> otherShards = new ArrayList<>();
+        for (int clientID = 0; clientID < CLIENTS; clientID++) {
+            if (messageHandler.schedulerFor(clientID) != messageHandler.schedulerFor(SLOW_CLIENT)) {
+                otherShards.add(servers.get(clientID));
+            }
+        }
+        assertEquals(CLIENTS - CLIENTS / DISPATCHERS, otherShards.size());
+        // the clients on other dispatchers are done long before the slow client
+        assertTrue(waitFor(otherShards, EVENTS_PER_CLIENT, SLOW_MILLIS * EVENTS_PER_CLIENT / 2));
+        assertTrue(servers.get(SLOW_CLIENT).timeStamps.size() < EVENTS_PER_CLIENT);
+
+        assertTrue(waitFor(new ArrayList<>(servers.values()), EVENTS_PER_CLIENT, SLOW_MILLIS * EVENTS_PER_CLIENT * 3));
+        List<Double> expected = new ArrayList<>();
+        for (int i = 0; i < EVENTS_PER_CLIENT; i++) {
+            expected.add((double) i);
+        }
+        for (RecordingServer server : servers.values()) {
+            assertEquals(expected, server.timeStamps);
+        }
+    }
+
+    @Test
+    public void testStopDeletesEventLogs() throws IOException, InterruptedException {
+        for (IngestMode ingestMode : List.of(IngestMode.PLATFORM_THREADS, IngestMode.NIO_SELECTOR)) {
+            Path directory = Files.createTempDirectory("event-logs");
+            MessageHandler messageHandler = new MessageHandler(0, 2, ingestMode, 1);
+            messageHandler.useEventLogs(directory, 4);
+            messageHandler.start();
+            Path logDirectory = messageHandler.getEventLogDirectory(3);
+
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), messageHandler.getPort())) {
+                PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true);
+                for (int i = 0; i < 20; i++) {
+                    out.println("SENSOR<()>3<()>" + new SensorEvent(i, 3, 1, "TempSensor", i));
+                }
+                // the events are processed once the wait time of the client has passed
+                long deadline = System.currentTimeMillis() + 10000;
+                while (!hasFiles(logDirectory) && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(20);
+                }
+                assertTrue(hasFiles(logDirectory));
+            }
+
+            messageHandler.stop();
+            assertFalse(Files.exists(logDirectory));
+            Files.delete(directory);
+        }
+    }
+
+    private static boolean hasFiles(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return false;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.findAny().isPresent();
+        }
+    }
+}
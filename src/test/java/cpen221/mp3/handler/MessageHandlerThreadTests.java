@@ -0,0 +1,167 @@
+package cpen221.mp3.handler;
+
+import cpen221.mp3.event.BinaryEventReader;
+import cpen221.mp3.event.BinaryEventWriter;
+import cpen221.mp3.event.EntityTypes;
+import cpen221.mp3.event.SensorEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageHandlerThreadTests {
+
+    private static boolean waitForSize(MessageScheduler scheduler, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        return scheduler.size() == size;
+    }
+
+    /** Connect a socket to a new MessageHandlerThread, send bytes through it in two parts,
+     *  and check how many messages are scheduled after each part
+     */
+    private static void sendInParts(MessageHandler messageHandler, byte[] first, byte[] second,
+                                    int afterFirst, int afterSecond) throws IOException, InterruptedException {
+        MessageScheduler scheduler = messageHandler.messageSchedulers[0];
+        try (ServerSocket serverSocket = new ServerSocket(0);
+             Socket client = new Socket("localhost", serverSocket.getLocalPort());
+             Socket accepted = serverSocket.accept()) {
+            Thread thread = new Thread(new MessageHandlerThread(accepted, messageHandler));
+            thread.start();
+            OutputStream out = client.getOutputStream();
+            out.write(first);
+            out.flush();
+            // the complete messages are scheduled without waiting for the rest of the partial one
+            assertTrue(waitForSize(scheduler, afterFirst));
+            out.write(second);
+            out.flush();
+            assertTrue(waitForSize(scheduler, afterSecond));
+            client.close();
+            thread.join(5000);
+            assertFalse(thread.isAlive());
+        }
+    }
+
+    @Test
+    public void testPartialLineDoesNotDelayCompleteLines() throws IOException, InterruptedException {
+        String line1 = "SENSOR<()>3<()>" + new SensorEvent(1, 3, 17, "TempSensor", 21) + "\n";
+        String line2 = "SENSOR<()>3<()>" + new SensorEvent(2, 3, 17, "TempSensor", 22) + "\r\n";
+        String line3 = "SENSOR<()>3<()>" + new SensorEvent(3, 3, 17, "TempSensor", 23) + "\n";
+        String sent = line1 + line2 + line3;
+        int split = line1.length() + line2.length() + 10;
+        sendInParts(new MessageHandler(0, 1), sent.substring(0, split).getBytes(StandardCharsets.UTF_8),
+                sent.substring(split).getBytes(StandardCharsets.UTF_8), 2, 3);
+    }
+
+    @Test
+    public void testPartialFrameDoesNotDelayCompleteFrames() throws IOException, InterruptedException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryEventWriter writer = new BinaryEventWriter(bytes);
+        for (int i = 0; i < 3; i++) {
+            writer.writeSensorEvent(3, new SensorEvent(i, 3, 17, "TempSensor", 20 + i));
+        }
+        writer.flush();
+        byte[] sent = bytes.toByteArray();
+        int split = sent.length - 5;
+        byte[] first = new byte[split];
+        byte[] second = new byte[sent.length - split];
+        System.arraycopy(sent, 0, first, 0, split);
+        System.arraycopy(sent, split, second, 0, second.length);
+        sendInParts(new MessageHandler(0, 1), first, second, 2, 3);
+    }
+
+    @Test
+    public void testLinesAreDecodedAsUtf8() throws IOException, InterruptedException {
+        String line = "SENSOR<()>3<()>" + new SensorEvent(1, 3, 17, "Temp\u00e9rature\u00b0", 21) + "\n";
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        // split the line inside the two bytes of the e with an acute accent
+        int split = line.indexOf('\u00e9') + 1;
+        byte[] first = new byte[split];
+        byte[] second = new byte[bytes.length - split];
+        System.arraycopy(bytes, 0, first, 0, split);
+        System.arraycopy(bytes, split, second, 0, second.length);
+
+        MessageHandler messageHandler = new MessageHandler(0, 1);
+        MessageScheduler scheduler = messageHandler.messageSchedulers[0];
+        sendInParts(messageHandler, first, second, 0, 1);
+        assertEquals("Temp\u00e9rature\u00b0", scheduler.take().event.getEntityType());
+
+        messageHandler = new MessageHandler(0, 1);
+        scheduler = messageHandler.messageSchedulers[0];
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(0));
+        SelectorIngest selectorIngest = new SelectorIngest(serverChannel, messageHandler, 1);
+        selectorIngest.start();
+        try (SocketChannel client = SocketChannel.open(serverChannel.getLocalAddress())) {
+            client.write(ByteBuffer.wrap(first));
+            Thread.sleep(50);
+            client.write(ByteBuffer.wrap(second));
+            assertTrue(waitForSize(scheduler, 1));
+        } finally {
+            selectorIngest.stop();
+        }
+        assertEquals("Temp\u00e9rature\u00b0", scheduler.take().event.getEntityType());
+    }
+
+    @Test
+    public void testNewEntityTypesAreLimited() throws IOException {
+        MessageHandler messageHandler = new MessageHandler(0, 1);
+        WireParser parser = new WireParser();
+        List<MessageHandlerEvent> batch = new ArrayList<>();
+        String prefix = "Junk" + System.nanoTime() + "-";
+        MessageHandlerThread.processMessage(messageHandler, parser,
+                "SENSOR<()>3<()>" + new SensorEvent(0, 3, 1, "TempSensor", 20), 0, batch);
+        for (int i = 1; i < MessageHandler.MAX_ENTITY_TYPES; i++) {
+            MessageHandlerThread.processMessage(messageHandler, parser,
+                    "SENSOR<()>3<()>" + new SensorEvent(i, 3, 1, prefix + i, 20), 0, batch);
+        }
+        assertEquals(MessageHandler.MAX_ENTITY_TYPES, batch.size());
+
+        // a type that has not been accepted is rejected without being given a code
+        String rejected = prefix + "rejected";
+        assertThrows(IllegalArgumentException.class, () -> MessageHandlerThread.processMessage(messageHandler,
+                parser, "SENSOR<()>3<()>" + new SensorEvent(0, 3, 1, "CO2Sensor", 400).toString()
+                        .replace("CO2Sensor", rejected), 0, batch));
+        assertEquals(-1, EntityTypes.existingCode(rejected, 0, rejected.length()));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryEventWriter writer = new BinaryEventWriter(bytes);
+        writer.writeSensorEvent(3, new SensorEvent(1, 3, 1, prefix + 5, 20));
+        writer.writeSensorEvent(3, new SensorEvent(2, 3, 1, "TempSensor", 21));
+        // a type that has a code, but has not been accepted by this MessageHandler
+        writer.writeSensorEvent(3, new SensorEvent(3, 3, 1, prefix + "binary", 22));
+        writer.flush();
+        ByteBuffer frames = ByteBuffer.wrap(bytes.toByteArray());
+        frames.get();
+        BinaryEventReader reader = new BinaryEventReader(messageHandler.entityTypes::code);
+        int rejectedFrames = 0;
+        while (frames.hasRemaining()) {
+            int length = frames.getInt();
+            ByteBuffer frame = frames.slice();
+            frame.limit(length);
+            try {
+                MessageHandlerThread.processFrame(messageHandler, reader, frame, 0, batch);
+            } catch (IllegalArgumentException e) {
+                rejectedFrames++;
+            }
+            frames.position(frames.position() + length);
+        }
+        assertEquals(1, rejectedFrames);
+        assertEquals(MessageHandler.MAX_ENTITY_TYPES + 2, batch.size());
+        assertEquals(prefix + 5, batch.get(batch.size() - 2).event.getEntityType());
+    }
+}
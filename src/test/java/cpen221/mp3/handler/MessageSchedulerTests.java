@@ -0,0 +1,86 @@
+package cpen221.mp3.handler;
+
+import cpen221.mp3.client.Request;
+import cpen221.mp3.client.RequestCommand;
+import cpen221.mp3.client.RequestType;
+import cpen221.mp3.event.SensorEvent;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageSchedulerTests {
+
+    private MessageHandlerEvent event(int clientID, double eventTime, double receiveTime, double waitTime) {
+        return new MessageHandlerEvent(new SensorEvent(eventTime, clientID, 1, "TempSensor", 20),
+                null, receiveTime + waitTime * 1000, clientID, receiveTime);
+    }
+
+    @Test
+    public void testTakeInDispatchOrder() throws InterruptedException {
+        MessageScheduler scheduler = new MessageScheduler();
+        double now = System.currentTimeMillis();
+        MessageHandlerEvent a = event(1, 3, now - 300, 0.2);
+        MessageHandlerEvent b = event(2, 1, now - 100, 0.1);
+        MessageHandlerEvent c = event(1, 2, now - 200, 0.2);
+        scheduler.add(a);
+        scheduler.add(b);
+        scheduler.add(c);
+
+        assertEquals(3, scheduler.size());
+        assertEquals(a, scheduler.take());
+        assertEquals(c, scheduler.take());
+        assertEquals(b, scheduler.take());
+        assertEquals(0, scheduler.size());
+    }
+
+    @Test
+    public void testRemoveEarlierEventsOfOneClient() {
+        MessageScheduler scheduler = new MessageScheduler();
+        double now = System.currentTimeMillis();
+        MessageHandlerEvent a = event(1, 5, now, 10);
+        MessageHandlerEvent b = event(1, 2, now, 10);
+        MessageHandlerEvent c = event(2, 1, now, 10);
+        MessageHandlerEvent d = event(1, 9, now, 10);
+        scheduler.add(a);
+        scheduler.add(b);
+        scheduler.add(c);
+        scheduler.add(d);
+        scheduler.add(new MessageHandlerEvent(new Request(RequestType.ANALYSIS,
+                RequestCommand.ANALYSIS_GET_ALL_ENTITIES, ""), null, now + 10000, 1, now));
+
+        assertEquals(List.of(b, a), scheduler.removeEarlierEvents(1, 5));
+        assertEquals(List.of(), scheduler.removeEarlierEvents(1, 5));
+        assertEquals(3, scheduler.size());
+    }
+
+    @Test
+    public void testReschedule() throws InterruptedException {
+        MessageScheduler scheduler = new MessageScheduler();
+        double now = System.currentTimeMillis();
+        MessageHandlerEvent a = event(1, 1, now, 100);
+        MessageHandlerEvent b = event(2, 1, now, 100);
+        scheduler.add(a);
+        scheduler.add(b);
+
+        scheduler.reschedule(2, 0);
+        assertEquals(b, scheduler.take());
+        assertEquals(1, scheduler.size());
+    }
+
+    @Test
+    public void testAddAllKeepsReceiveOrderForEqualDispatchTimes() throws InterruptedException {
+        MessageScheduler scheduler = new MessageScheduler();
+        double now = System.currentTimeMillis();
+        MessageHandlerEvent a = event(1, 1, now - 100, 0.05);
+        MessageHandlerEvent b = event(1, 2, now - 100, 0.05);
+        MessageHandlerEvent c = event(3, 3, now - 200, 0.05);
+        scheduler.addAll(List.of(a, b, c));
+
+        assertEquals(3, scheduler.size());
+        assertEquals(c, scheduler.take());
+        assertEquals(a, scheduler.take());
+        assertEquals(b, scheduler.take());
+    }
+}
@@ -0,0 +1,194 @@
+package cpen221.mp3.handler;
+
+import cpen221.mp3.client.Client;
+import cpen221.mp3.client.Request;
+import cpen221.mp3.event.Event;
+import cpen221.mp3.event.SensorEvent;
+import cpen221.mp3.server.Server;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compares the old dispatcher loop, which took the earliest message from a PriorityBlockingQueue and put it
+ * straight back if it was not due yet, with the MessageScheduler, which parks until the earliest message is due.
+ * Reports the CPU time used by the dispatcher thread while nothing is due, and how late messages are dispatched.
+ * Then reports the throughput of a MessageHandler with 1, 2, 4 and as many dispatchers as there are processors,
+ * for many clients whose messages take either CPU time or time blocked to process.
+ * Run the main method directly, it is not part of the unit tests.
+ */
+public class SchedulerBenchmark {
+    private static final int IDLE_MILLIS = 2000;
+    private static final int MESSAGES = 500;
+    private static final int SPREAD_MILLIS = 2000;
+    private static final int CLIENTS = 64;
+    private static final int MESSAGES_PER_CLIENT = 100;
+    private static final long BLOCKED_NANOS = 200_000;
+    private static final int WORK_ITERATIONS = 20_000;
+
+    private static volatile double sink;
+
+    private interface Dispatcher {
+        void add(MessageHandlerEvent message);
+        MessageHandlerEvent take() throws InterruptedException;
+    }
+
+    private static class SpinDispatcher implements Dispatcher {
+        private final PriorityBlockingQueue<MessageHandlerEvent> queue =
+                new PriorityBlockingQueue<>(1000, Comparator.comparing(MessageHandlerEvent::getExpirationTimestamp));
+
+        public void add(MessageHandlerEvent message) {
+            queue.add(message);
+        }
+
+        public MessageHandlerEvent take() throws InterruptedException {
+            for (;;) {
+                double currentTime = System.currentTimeMillis();
+                MessageHandlerEvent next = queue.take();
+                if (next.getDispatchTimestamp() <= currentTime) {
+                    return next;
+                }
+                queue.add(next);
+            }
+        }
+    }
+
+    private static class ParkingDispatcher implements Dispatcher {
+        private final MessageScheduler scheduler = new MessageScheduler();
+
+        public void add(MessageHandlerEvent message) {
+            scheduler.add(message);
+        }
+
+        public MessageHandlerEvent take() throws InterruptedException {
+            return scheduler.take();
+        }
+    }
+
+    private static MessageHandlerEvent messageDueAt(double dueTime) {
+        double now = System.currentTimeMillis();
+        double expiration = now + 2 * (dueTime - now);
+        return new MessageHandlerEvent(new SensorEvent(dueTime, 0, 0, "TempSensor", 0), null, expiration, 0, now);
+    }
+
+    private static void run(String name, Dispatcher dispatcher) throws InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        List<Double> lateness = Collections.synchronizedList(new ArrayList<>());
+        long[] cpuNanos = new long[1];
+
+        Thread consumer = new Thread(() -> {
+            try {
+                for (int i = 0; i <= MESSAGES; i++) {
+                    MessageHandlerEvent message = dispatcher.take();
+                    if (i == 0) {
+                        cpuNanos[0] = threads.getCurrentThreadCpuTime();
+                    } else {
+                        lateness.add(System.currentTimeMillis() - message.getDispatchTimestamp());
+                    }
+                }
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        consumer.start();
+
+        // idle phase: a single message that is not due for IDLE_MILLIS
+        dispatcher.add(messageDueAt(System.currentTimeMillis() + IDLE_MILLIS));
+        consumer.join(IDLE_MILLIS + 1000);
+
+        // jitter phase: messages due at random times over the next SPREAD_MILLIS
+        Random random = new Random(221);
+        double start = System.currentTimeMillis();
+        for (int i = 0; i < MESSAGES; i++) {
+            dispatcher.add(messageDueAt(start + 10 + random.nextInt(SPREAD_MILLIS)));
+        }
+        consumer.join();
+
+        List<Double> sorted = new ArrayList<>(lateness);
+        Collections.sort(sorted);
+        System.out.printf("%-8s idle CPU: %6.1f ms over %d ms   dispatch lateness p50=%.1f ms p99=%.1f ms max=%.1f ms%n",
+                name, cpuNanos[0] / 1e6, IDLE_MILLIS,
+                sorted.get(sorted.size() / 2), sorted.get(sorted.size() * 99 / 100), sorted.get(sorted.size() - 1));
+    }
+
+    /** A Server that either does WORK_ITERATIONS of arithmetic or is blocked for BLOCKED_NANOS to process
+     *  every message
+     */
+    private static class WorkingServer extends Server {
+        private final AtomicInteger processed;
+        private final boolean blocking;
+
+        WorkingServer(int clientID, AtomicInteger processed, boolean blocking) {
+            super(new Client(clientID, clientID + "client@gmail.com", "127.0.0.1", 0));
+            this.processed = processed;
+            this.blocking = blocking;
+        }
+
+        @Override
+        public void processInput(Event event, Request request, String[] actuatorSocketInfo) {
+            if (blocking) {
+                LockSupport.parkNanos(BLOCKED_NANOS);
+            } else {
+                double sum = event.getValueDouble();
+                for (int i = 1; i <= WORK_ITERATIONS; i++) {
+                    sum += Math.sqrt(i * sum);
+                }
+                sink = sum;
+            }
+            processed.incrementAndGet();
+        }
+    }
+
+    private static void runDispatchers(int dispatchers, boolean blocking) throws InterruptedException {
+        MessageHandler messageHandler = new MessageHandler(0, dispatchers);
+        AtomicInteger processed = new AtomicInteger();
+        for (int clientID = 0; clientID < CLIENTS; clientID++) {
+            WorkingServer server = new WorkingServer(clientID, processed, blocking);
+            messageHandler.serverMap.put(clientID, server);
+            messageHandler.waitTime.put(clientID, server.getMaxWaitTime());
+        }
+        messageHandler.start();
+
+        double now = System.currentTimeMillis();
+        List<MessageHandlerEvent> messages = new ArrayList<>();
+        for (int i = 0; i < MESSAGES_PER_CLIENT; i++) {
+            for (int clientID = 0; clientID < CLIENTS; clientID++) {
+                messages.add(new MessageHandlerEvent(new SensorEvent(i, clientID, 1, "TempSensor", i),
+                        null, now, clientID, now - 1));
+            }
+        }
+        long start = System.nanoTime();
+        messageHandler.schedule(messages);
+        while (processed.get() < messages.size()) {
+            Thread.sleep(1);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-8s dispatchers=%-3d %8.0f messages/s%n",
+                blocking ? "blocking" : "cpu", dispatchers, messages.size() / seconds);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        run("spin", new SpinDispatcher());
+        run("parking", new ParkingDispatcher());
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        System.out.println("processors=" + processors);
+        TreeSet<Integer> dispatcherCounts = new TreeSet<>(List.of(1, 2, 4, processors));
+        for (boolean blocking : new boolean[]{false, true}) {
+            for (int dispatchers : dispatcherCounts) {
+                runDispatchers(dispatchers, blocking);
+            }
+        }
+        // the dispatcher and accept threads of the MessageHandlers never stop
+        System.exit(0);
+    }
+}
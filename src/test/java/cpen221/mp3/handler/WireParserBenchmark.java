@@ -0,0 +1,76 @@
+package cpen221.mp3.handler;
+
+import cpen221.mp3.event.SensorEvent;
+
+/**
+ * Compares how many Sensor messages per second WireParser parses against the split based parsing that
+ * MessageHandlerThread used before. Run the main method directly, it is not part of the unit tests.
+ *
+ * usage: WireParserBenchmark [seconds per measurement, default 2]
+ */
+public class WireParserBenchmark {
+    private static final int MESSAGES = 1024;
+
+    public static void main(String[] args) {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        String[] lines = new String[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            SensorEvent event = new SensorEvent(System.currentTimeMillis() + i, i % 16, i, "TempSensor", 20 + Math.random() * 4);
+            lines[i] = "SENSOR<()>" + (i % 16) + "<()>" + event;
+        }
+        WireParser parser = new WireParser();
+
+        for (int round = 0; round < 3; round++) {
+            double split = measure(seconds, lines, line -> parseWithSplit(line));
+            double wire = measure(seconds, lines, line -> parseWithWireParser(parser, line));
+            System.out.printf("split: %.0f parses/s, WireParser: %.0f parses/s (%.1fx)%n", split, wire, wire / split);
+        }
+    }
+
+    private interface Parse {
+        double parse(String line);
+    }
+
+    private static double measure(int seconds, String[] lines, Parse parse) {
+        double sink = 0;
+        long parses = 0;
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        long start = System.nanoTime();
+        while (System.nanoTime() < end) {
+            for (String line : lines) {
+                sink += parse.parse(line);
+            }
+            parses += lines.length;
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        if (sink == 42) {
+            System.out.println(sink);
+        }
+        return parses / elapsed;
+    }
+
+    private static double parseWithWireParser(WireParser parser, String line) {
+        parser.parse(line);
+        SensorEvent event = new SensorEvent(parser.getDouble(0), parser.getInt(1), parser.getInt(2),
+                parser.getString(3), parser.getDouble(4));
+        return event.getValueDouble() + parser.getClientId();
+    }
+
+    private static double parseWithSplit(String line) {
+        String[] parts = line.split("<\\(\\)>");
+        int clientID = Integer.parseInt(parts[1]);
+        String[] split = line.split("[{}]");
+        String[] fields = split[1].split(",");
+        String[] values = new String[5];
+        for (int i = 0; i < fields.length; i++) {
+            try {
+                values[i] = fields[i].trim().split("=")[1].trim();
+            } catch (Exception e) {
+                values[i] = "";
+            }
+        }
+        SensorEvent event = new SensorEvent(Double.parseDouble(values[0]), Integer.parseInt(values[1]),
+                Integer.parseInt(values[2]), values[3], Double.parseDouble(values[4]));
+        return event.getValueDouble() + clientID;
+    }
+}
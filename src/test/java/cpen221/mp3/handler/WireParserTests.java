@@ -0,0 +1,93 @@
+package cpen221.mp3.handler;
+
+import cpen221.mp3.client.Request;
+import cpen221.mp3.client.RequestCommand;
+import cpen221.mp3.client.RequestType;
+import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.EntityTypes;
+import cpen221.mp3.event.SensorEvent;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WireParserTests {
+
+    @Test
+    public void testParseSensorMessage() {
+        SensorEvent event = new SensorEvent(1.697558400123E12, 3, 17, "TempSensor", 21.734519834712345);
+        WireParser parser = new WireParser();
+        parser.parse(new StringBuilder("SENSOR<()>3<()>" + event));
+
+        assertTrue(parser.nameIs("SENSOR"));
+        assertFalse(parser.nameIs("ACTUATOR"));
+        assertEquals(3, parser.getClientId());
+        assertEquals(5, parser.getFieldCount());
+        double timeStamp = parser.getDouble(0);
+        double value = parser.getDouble(4);
+        assertEquals(event.getTimeStamp(), timeStamp);
+        assertEquals(17, parser.getInt(2));
+        assertEquals("TempSensor", parser.getString(3));
+        assertSame(event.getEntityType(), EntityTypes.name(parser.getEntityTypeCode(3)));
+        assertEquals(event.getValueDouble(), value);
+        assertNull(parser.getReturnSocketInfo());
+    }
+
+    @Test
+    public void testParseActuatorAndRequestMessages() {
+        ActuatorEvent event = new ActuatorEvent(0.5, 4, 9, "Switch", true);
+        WireParser parser = new WireParser();
+        parser.parse("ACTUATOR<()>4<()>" + event + "<()>127.0.0.1/4578");
+
+        assertTrue(parser.nameIs("ACTUATOR"));
+        assertTrue(parser.getBoolean(4));
+        assertArrayEquals(new String[]{"127.0.0.1", "4578"}, parser.getReturnSocketInfo());
+
+        Request request = new Request(RequestType.ANALYSIS, RequestCommand.ANALYSIS_GET_LATEST_EVENTS, "");
+        parser.parse("CLIENT<()>4<()>" + request + "<()>localhost/4000");
+        assertTrue(parser.nameIs("CLIENT"));
+        assertTrue(parser.valueIs(1, "ANALYSIS"));
+        assertTrue(parser.valueIs(2, "ANALYSIS_GET_LATEST_EVENTS"));
+        assertEquals("", parser.getString(3));
+    }
+
+    @Test
+    public void testParseBatchMessage() {
+        ActuatorEvent first = new ActuatorEvent(1.5, 2, 9, "Switch", true);
+        ActuatorEvent second = new ActuatorEvent(2.5, 2, 9, "Switch", false);
+        WireParser parser = new WireParser();
+        parser.parse("ACTUATOR_BATCH<()>2<()>" + first + second + "<()>127.0.0.1/20488");
+
+        assertTrue(parser.nameIs("ACTUATOR_BATCH"));
+        double timeStamp = parser.getDouble(0);
+        assertEquals(1.5, timeStamp);
+        assertTrue(parser.getBoolean(4));
+        assertTrue(parser.nextGroup());
+        timeStamp = parser.getDouble(0);
+        assertEquals(2.5, timeStamp);
+        assertFalse(parser.getBoolean(4));
+        assertFalse(parser.nextGroup());
+        assertArrayEquals(new String[]{"127.0.0.1", "20488"}, parser.getReturnSocketInfo());
+    }
+
+    @Test
+    public void testParseDoubleMatchesDoubleParseDouble() {
+        Random random = new Random(221);
+        WireParser parser = new WireParser();
+        for (int i = 0; i < 100000; i++) {
+            double generated = switch (i % 4) {
+                case 0 -> random.nextDouble() * 1000;
+                case 1 -> Math.round(random.nextDouble() * 1e6) / 100.0;
+                case 2 -> System.currentTimeMillis() + random.nextInt(100000);
+                default -> Double.longBitsToDouble(random.nextLong());
+            };
+            String text = Double.toString(generated);
+            parser.parse("SENSOR<()>1<()>SensorEvent: {timeStamp=" + text + ", value=-0.0}");
+            double expected = Double.parseDouble(text);
+            double actual = parser.getDouble(0);
+            assertEquals(Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual), text);
+        }
+        assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(parser.getDouble(1)));
+    }
+}
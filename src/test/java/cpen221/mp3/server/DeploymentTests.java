@@ -380,6 +380,41 @@ public class DeploymentTests {
 
     }
 
+    @Test
+    public void testGetPredictionCacheStats() throws IOException, InterruptedException {
+        String IP = InetAddress.getLocalHost().getHostAddress();
+        int port = testServer.getPort();
+        int clientId = 22;
+        // stands in for the Client, so that the result sent back can be read
+        try (ServerSocket clientSocket = new ServerSocket(0);
+             Socket socket = new Socket(IP, port)) {
+            clientSocket.setSoTimeout(10000);
+            String returnAddress = "<()>" + IP + "/" + clientSocket.getLocalPort();
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true);
+            for (int i = 0; i < 10; i++) {
+                out.println("SENSOR<()>" + clientId + "<()>" + new SensorEvent(i, clientId, 5, "TempSensor", i * 2));
+            }
+            Request predict = new Request(RequestType.PREDICT, RequestCommand.PREDICT_NEXT_N_VALUES, "5<>2");
+            out.println("CLIENT<()>" + clientId + "<()>" + predict + returnAddress);
+            Thread.sleep(2500);
+            // a prediction of fewer values is answered from the cache
+            predict = new Request(RequestType.PREDICT, RequestCommand.PREDICT_NEXT_N_VALUES, "5<>1");
+            out.println("CLIENT<()>" + clientId + "<()>" + predict + returnAddress);
+            Thread.sleep(500);
+            Request stats = new Request(RequestType.ANALYSIS, RequestCommand.ANALYSIS_GET_PREDICTION_CACHE_STATS, "");
+            out.println("CLIENT<()>" + clientId + "<()>" + stats + returnAddress);
+
+            try (Socket accepted = clientSocket.accept()) {
+                accepted.setSoTimeout(10000);
+                BufferedReader in = new BufferedReader(new InputStreamReader(accepted.getInputStream()));
+                assertTrue(in.readLine().startsWith("You requested PREDICT_NEXT_N_VALUES"));
+                assertTrue(in.readLine().startsWith("You requested PREDICT_NEXT_N_VALUES"));
+                assertEquals("You requested ANALYSIS_GET_PREDICTION_CACHE_STATS, here is your result: [1, 1]",
+                        in.readLine());
+            }
+        }
+    }
+
     @Test
     public void testCoverage() throws UnknownHostException, InterruptedException {
         String IP = InetAddress.getLocalHost().getHostAddress();
@@ -0,0 +1,171 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.Event;
+import cpen221.mp3.event.SensorEvent;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventColumnsTests {
+
+    private static List<Event> randomEvents(Random random, int count) {
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // whole numbers so that EQUALS filters are satisfied by some events
+            double timeStamp = random.nextInt(count);
+            if (random.nextInt(3) == 0) {
+                events.add(new ActuatorEvent(timeStamp, 0, i % 8, "Switch", random.nextBoolean()));
+            } else {
+                events.add(new SensorEvent(timeStamp, 0, i % 8, "TempSensor", 20 + random.nextInt(5)));
+            }
+        }
+        return events;
+    }
+
+    private static List<Filter> filters() {
+        List<Filter> filters = new ArrayList<>();
+        filters.add(new Filter(BooleanOperator.EQUALS, true));
+        filters.add(new Filter(BooleanOperator.EQUALS, false));
+        filters.add(new Filter(BooleanOperator.NOT_EQUALS, true));
+        filters.add(new Filter(BooleanOperator.NOT_EQUALS, false));
+        for (DoubleOperator operator : DoubleOperator.values()) {
+            filters.add(new Filter("value", operator, 22));
+            filters.add(new Filter("timestamp", operator, 100));
+        }
+        List<Filter> children = new ArrayList<>();
+        children.add(new Filter("timestamp", DoubleOperator.GREATER_THAN, 50));
+        children.add(new Filter("value", DoubleOperator.LESS_THAN_OR_EQUALS, 23));
+        filters.add(new Filter(children));
+        filters.add(Filter.unserialize(new Filter(children).toString()));
+        filters.add(new Filter(new ArrayList<>()));
+        filters.add(new Filter(LogicalOperator.OR, children));
+        filters.add(new Filter(LogicalOperator.OR, new ArrayList<>()));
+        filters.add(new Filter(LogicalOperator.NOT, List.of(new Filter(children))));
+        filters.add(new Filter(LogicalOperator.NOT, List.of(new Filter(BooleanOperator.EQUALS, true))));
+        return filters;
+    }
+
+    @Test
+    public void testSelectMatchesSift() {
+        Random random = new Random(221);
+        List<Event> events = randomEvents(random, 300);
+        EventColumns columns = new EventColumns(events);
+        assertEquals(events.size(), columns.size());
+
+        for (Filter filter : filters()) {
+            List<Event> selected = new ArrayList<>();
+            BitSet satisfied = filter.select(columns);
+            for (int i = satisfied.nextSetBit(0); i >= 0; i = satisfied.nextSetBit(i + 1)) {
+                selected.add(events.get(i));
+            }
+            assertEquals(filter.sift(events), selected, filter.toString());
+        }
+    }
+
+    @Test
+    public void testSelectRange() {
+        Random random = new Random(320);
+        List<Event> events = randomEvents(random, 500);
+        EventColumns columns = new EventColumns(events);
+        int[][] ranges = {{0, 0}, {0, 1}, {3, 64}, {63, 65}, {64, 128}, {70, 450}, {130, 500}};
+
+        for (Filter filter : filters()) {
+            for (int[] range : ranges) {
+                BitSet satisfied = filter.select(columns, range[0], range[1]);
+                for (int i = 0; i < events.size(); i++) {
+                    boolean expected = i >= range[0] && i < range[1] && filter.satisfies(events.get(i));
+                    assertEquals(expected, satisfied.get(i), filter + " at " + i);
+                }
+            }
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> new Filter(BooleanOperator.EQUALS, true).select(columns, 10, 501));
+    }
+
+    @Test
+    public void testVectorizedMatchesScalar() {
+        Random random = new Random(14);
+        List<Event> events = randomEvents(random, 500);
+        events.add(new SensorEvent(Double.NaN, 0, 3, "TempSensor", Double.NaN));
+        EventColumns columns = new EventColumns(events);
+        int[][] ranges = {{0, 1}, {3, 64}, {5, 12}, {63, 65}, {64, 128}, {70, 450}, {130, 501}};
+
+        boolean vectorized = EventColumns.isVectorized();
+        try {
+            for (Filter filter : filters()) {
+                for (int[] range : ranges) {
+                    EventColumns.setVectorized(false);
+                    BitSet scalar = filter.select(columns, range[0], range[1]);
+                    EventColumns.setVectorized(true);
+                    assertEquals(scalar, filter.select(columns, range[0], range[1]), filter.toString());
+                }
+            }
+        } finally {
+            EventColumns.setVectorized(vectorized);
+        }
+    }
+
+    @Test
+    public void testInsertKeepsColumnsInOrder() {
+        Random random = new Random(4);
+        List<Event> events = new ArrayList<>();
+        EventColumns columns = new EventColumns();
+        for (Event event : randomEvents(random, 400)) {
+            int index = random.nextInt(events.size() + 1);
+            events.add(index, event);
+            columns.insert(index, event);
+        }
+
+        assertEquals(events.size(), columns.size());
+        for (int i = 0; i < events.size(); i++) {
+            Event event = events.get(i);
+            assertEquals(event.getTimeStamp(), columns.getTimeStamp(i));
+            assertEquals(event.getValueDouble(), columns.getValue(i));
+            assertEquals(event instanceof ActuatorEvent, columns.isActuator(i));
+            assertEquals(event instanceof ActuatorEvent && event.getValueBoolean(), columns.getBooleanValue(i));
+        }
+        assertEquals(events, columns.asList());
+    }
+
+    @Test
+    public void testEventsRebuiltFromColumns() {
+        List<Event> events = new ArrayList<>();
+        events.add(new SensorEvent(0.5, 3, 7, new String("TempSensor"), 21.25));
+        events.add(new ActuatorEvent(1.5, 4, 8, new String("Switch"), true));
+        events.add(new ActuatorEvent(2.5, 3, 9, "Switch", false));
+        events.add(new SensorEvent(3.5, 3, -1, null, Double.NaN));
+        events.add(new SensorEvent(4.5, 3, 7, "TempSensor", -2));
+        EventColumns columns = new EventColumns(events);
+
+        for (int i = 0; i < events.size(); i++) {
+            Event event = columns.get(i);
+            assertEquals(events.get(i), event);
+            assertEquals(events.get(i).toString(), event.toString());
+            assertEquals(events.get(i).getEntityId(), columns.getEntityId(i));
+        }
+        // each entity type is kept once
+        assertSame(columns.get(1).getEntityType(), columns.get(2).getEntityType());
+        assertSame(columns.get(0).getEntityType(), columns.get(4).getEntityType());
+        assertThrows(IndexOutOfBoundsException.class, () -> columns.get(5));
+        assertThrows(UnsupportedOperationException.class, () -> columns.asList().add(events.get(0)));
+    }
+
+    @Test
+    public void testStoreInWindowWithFilter() {
+        Random random = new Random(5);
+        EventStore store = new EventStore();
+        for (Event event : randomEvents(random, 1000)) {
+            store.add(event);
+        }
+
+        for (Filter filter : filters()) {
+            assertEquals(filter.sift(store.inWindow(200, 700)), store.inWindow(200, 700, filter), filter.toString());
+        }
+        assertTrue(store.inWindow(700, 200, new Filter(BooleanOperator.EQUALS, true)).isEmpty());
+    }
+}
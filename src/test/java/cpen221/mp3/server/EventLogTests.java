@@ -0,0 +1,158 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.client.Client;
+import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.Event;
+import cpen221.mp3.event.SensorEvent;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventLogTests {
+
+    private static Event randomEvent(Random random, double timeStamp) {
+        int entityId = random.nextInt(6);
+        if (entityId % 3 == 0) {
+            return new ActuatorEvent(timeStamp, 0, entityId, "Switch", random.nextBoolean());
+        }
+        return new SensorEvent(timeStamp, 0, entityId, "TempSensor", random.nextInt(100) / 10.0);
+    }
+
+    @Test
+    public void testRecordsReadBack() throws IOException {
+        Path directory = Files.createTempDirectory("event-log");
+        EventLog log = new EventLog(directory);
+        try {
+            Random random = new Random(25);
+            int count = EventLog.SEGMENT_RECORDS + 10;
+            for (int i = 0; i < count; i++) {
+                log.append(randomEvent(random, i * 0.5));
+            }
+            assertEquals(count, log.size());
+            assertEquals(2, directory.toFile().list().length);
+
+            random = new Random(25);
+            for (int i = 0; i < count; i++) {
+                assertEquals(randomEvent(random, i * 0.5), log.get(i));
+            }
+            assertEquals(4, log.lowerBound(2.0));
+            assertEquals(5, log.upperBound(2.0));
+            assertEquals(count, log.lowerBound(count));
+
+            EventColumns columns = new EventColumns();
+            log.readInto(columns, count - 20, count);
+            assertEquals(log.get(count - 20), columns.get(0));
+            assertEquals(log.get(count - 1), columns.get(19));
+            assertThrows(IndexOutOfBoundsException.class, () -> log.get(count));
+        } finally {
+            log.close();
+        }
+        assertEquals(0, directory.toFile().list().length);
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testMergeIntoLog() throws IOException {
+        Path directory = Files.createTempDirectory("event-log");
+        EventLog log = new EventLog(directory);
+        try {
+            for (int i = 0; i < EventLog.SEGMENT_RECORDS; i++) {
+                log.append(new SensorEvent(2 * i, 0, 1, "TempSensor", i));
+            }
+            EventColumns late = new EventColumns();
+            late.add(new SensorEvent(-1, 0, 1, "TempSensor", -1));
+            late.add(new SensorEvent(4, 0, 0, "TempSensor", -2));
+            late.add(new SensorEvent(4, 0, 1, "TempSensor", -3));
+            log.merge(late);
+
+            assertEquals(EventLog.SEGMENT_RECORDS + 3, log.size());
+            assertEquals(new SensorEvent(-1, 0, 1, "TempSensor", -1), log.get(0));
+            assertEquals(new SensorEvent(2, 0, 1, "TempSensor", 1), log.get(2));
+            // equal events of the log come first
+            assertEquals(new SensorEvent(4, 0, 0, "TempSensor", -2), log.get(3));
+            assertEquals(new SensorEvent(4, 0, 1, "TempSensor", 2), log.get(4));
+            assertEquals(new SensorEvent(4, 0, 1, "TempSensor", -3), log.get(5));
+            assertEquals(new SensorEvent(6, 0, 1, "TempSensor", 3), log.get(6));
+            assertEquals(2.0 * (EventLog.SEGMENT_RECORDS - 1), log.getTimeStamp(log.size() - 1));
+        } finally {
+            log.close();
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testStoreMatchesHeapStore() throws IOException {
+        Path directory = Files.createTempDirectory("event-log");
+        EventStore heapStore = new EventStore();
+        EventStore logStore = new EventStore(new EventLog(directory), 8);
+        try {
+            Random random = new Random(221);
+            for (int i = 0; i < 2000; i++) {
+                // a fifth of the events arrive late, some far behind the events already in the log
+                double timeStamp = random.nextInt(5) == 0 ? random.nextInt(i + 1) : i;
+                Event event = randomEvent(random, timeStamp);
+                heapStore.add(event);
+                logStore.add(event);
+                assertTrue(logStore.heapSize() <= 8);
+            }
+            assertEquals(heapStore.size(), logStore.size());
+            assertEquals(heapStore.getEvents(), logStore.getEvents());
+            assertEquals(heapStore.latest(), logStore.latest());
+
+            Filter filter = new Filter(BooleanOperator.EQUALS, true);
+            for (int n : new int[]{0, 1, 7, 50, 1500, 3000}) {
+                assertEquals(heapStore.lastN(n), logStore.lastN(n));
+                assertEquals(heapStore.lastN(n, filter), logStore.lastN(n, filter));
+            }
+            for (int k = 0; k < 50; k++) {
+                double start = random.nextInt(2100) - 50;
+                double end = start + random.nextInt(300);
+                assertEquals(heapStore.inWindow(start, end), logStore.inWindow(start, end));
+                assertEquals(heapStore.inWindow(start, end, filter), logStore.inWindow(start, end, filter));
+            }
+            for (int entityId = 0; entityId < 6; entityId++) {
+                double timeStamp = random.nextInt(2000) + 0.5;
+                assertEquals(heapStore.lastOfEntity(entityId, timeStamp, 20),
+                        logStore.lastOfEntity(entityId, timeStamp, 20));
+                assertEquals(heapStore.nextOfEntity(entityId, timeStamp), logStore.nextOfEntity(entityId, timeStamp));
+            }
+        } finally {
+            logStore.close();
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testServerWithEventLog() throws IOException {
+        Path directory = Files.createTempDirectory("event-log");
+        Server server = new Server(new Client(0, "test@test.com", "1.1.1.1", 1));
+        for (int i = 0; i < 100; i++) {
+            server.processIncomingEvent(new SensorEvent(i, 0, i % 4, "TempSensor", i));
+        }
+        server.useEventLog(directory, 16);
+        assertThrows(IllegalStateException.class, () -> server.useEventLog(directory, 16));
+        for (int i = 100; i < 200; i++) {
+            server.processIncomingEvent(new SensorEvent(i, 0, i % 4, "TempSensor", i));
+        }
+        assertEquals(200, server.eventsInTimeWindow(new TimeWindow(0, 199)).size());
+        assertEquals(List.of(new SensorEvent(198, 0, 2, "TempSensor", 198),
+                new SensorEvent(199, 0, 3, "TempSensor", 199)), server.lastNEvents(2));
+        assertTrue(directory.toFile().list().length > 0);
+        // the history of an entity beyond its latest samples is read back from the log
+        double[] values = server.entities.get(1).getValues();
+        assertEquals(50, values.length);
+        assertEquals(1.0, values[0]);
+        assertEquals(197.0, values[49]);
+
+        server.closeEventLog();
+        assertEquals(0, directory.toFile().list().length);
+        assertEquals(200, server.eventsInTimeWindow(new TimeWindow(0, 199)).size());
+        Files.delete(directory);
+    }
+}
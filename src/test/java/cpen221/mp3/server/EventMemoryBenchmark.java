@@ -0,0 +1,64 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.client.Client;
+import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.SensorEvent;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Measures how many bytes of heap a Server keeps for each event it has received, after the events
+ * themselves are no longer referenced by the caller. Each event gets its own entity type String,
+ * as events parsed from the network do.
+ * Run the main method directly, it is not part of the unit tests.
+ *
+ * With a number of hot events, the server keeps only that many of the latest events in the heap, and
+ * the older events in an event log in a temporary directory.
+ *
+ * usage: EventMemoryBenchmark [number of events, default 1000000] [number of entities, default 64]
+ *                             [number of hot events, default all in the heap]
+ */
+public class EventMemoryBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int entities = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        Path directory = args.length > 2 ? Files.createTempDirectory("event-log") : null;
+        Random random = new Random(221);
+
+        long before = usedMemory();
+        Server server = new Server(new Client(0, "test@test.com", "1.1.1.1", 1));
+        if (directory != null) {
+            server.useEventLog(directory, Integer.parseInt(args[2]));
+        }
+        for (int i = 0; i < count; i++) {
+            int entityId = i % entities;
+            if (entityId % 4 == 0) {
+                server.processIncomingEvent(new ActuatorEvent(i, 0, entityId, new String("Switch"), random.nextBoolean()));
+            } else {
+                server.processIncomingEvent(new SensorEvent(i, 0, entityId, new String("TempSensor"), random.nextDouble()));
+            }
+        }
+        long after = usedMemory();
+
+        System.out.printf("%d events, %d entities: %.1f bytes per event%n",
+                count, entities, (after - before) / (double) count);
+        // keep the server reachable until after the measurement
+        System.out.println(server.getAllEntities().size() + " entities in the server");
+        if (directory != null) {
+            server.closeEventLog();
+            Files.delete(directory);
+        }
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
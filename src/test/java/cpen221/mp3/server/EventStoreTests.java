@@ -0,0 +1,119 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.CSVEventReader;
+import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.Event;
+import cpen221.mp3.event.SensorEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventStoreTests {
+
+    String csvFilePath = "data/tests/single_client_1000_events_out-of-order.csv";
+    CSVEventReader eventReader = new CSVEventReader(csvFilePath);
+    List<Event> eventList = eventReader.readEvents();
+
+    @Test
+    public void testOutOfOrderInsertion() {
+        EventStore store = new EventStore();
+        for (Event event : eventList) {
+            store.add(event);
+        }
+        assertEquals(eventList.size(), store.size());
+        List<Event> events = store.getEvents();
+        for (int i = 0; i < events.size() - 1; i++) {
+            assertTrue(events.get(i).getTimeStamp() <= events.get(i + 1).getTimeStamp());
+        }
+    }
+
+    @Test
+    public void testLastNTieBreak() {
+        EventStore store = new EventStore();
+        Event e1 = new SensorEvent(0.1, 0, 1, "TempSensor", 24);
+        Event e2 = new ActuatorEvent(0.3, 0, 97, "Switch", false);
+        Event e3 = new SensorEvent(0.3, 0, 5, "TempSensor", 20);
+        Event e4 = new SensorEvent(0.2, 0, 3, "TempSensor", 21);
+        store.add(e1);
+        store.add(e2);
+        store.add(e3);
+        store.add(e4);
+
+        assertEquals(e2, store.latest());
+        assertEquals(List.of(e2), store.lastN(1));
+        assertEquals(List.of(e3, e2), store.lastN(2));
+        assertEquals(List.of(e1, e4, e3, e2), store.lastN(10));
+    }
+
+    @Test
+    public void testInWindow() {
+        EventStore store = new EventStore();
+        List<Event> expected = new ArrayList<>();
+        for (Event event : eventList) {
+            store.add(event);
+        }
+        for (Event event : store.getEvents()) {
+            if (event.getTimeStamp() >= 0.5 && event.getTimeStamp() <= 2.5) {
+                expected.add(event);
+            }
+        }
+        assertEquals(expected, store.inWindow(0.5, 2.5));
+        assertEquals(new ArrayList<>(), store.inWindow(2.5, 0.5));
+        assertNull(new EventStore().latest());
+    }
+
+    @Test
+    public void testLastNWithFilter() {
+        EventStore store = new EventStore();
+        for (int repeat = 0; repeat < 3; repeat++) {
+            for (Event event : eventList) {
+                store.add(event);
+            }
+        }
+        Filter filter = new Filter(LogicalOperator.OR, List.of(
+                new Filter("value", DoubleOperator.GREATER_THAN, 200),
+                new Filter(BooleanOperator.EQUALS, true)));
+        List<Event> satisfying = filter.sift(store.getEvents());
+        for (int n : new int[]{0, 1, 5, 1000, satisfying.size(), satisfying.size() + 10}) {
+            int from = Math.max(0, satisfying.size() - n);
+            assertEquals(satisfying.subList(from, satisfying.size()), store.lastN(n, filter));
+        }
+        assertTrue(store.lastN(10, new Filter(LogicalOperator.OR, new ArrayList<>())).isEmpty());
+    }
+
+    @Test
+    public void testEventsOfEntity() {
+        EventStore store = new EventStore();
+        for (Event event : eventList) {
+            store.add(event);
+        }
+        List<Event> events = store.getEvents();
+        for (int entityId : new int[]{0, 1, 7, 12, 99}) {
+            List<Event> ofEntity = new ArrayList<>();
+            for (Event event : events) {
+                if (event.getEntityId() == entityId) {
+                    ofEntity.add(event);
+                }
+            }
+            for (Event event : events) {
+                double timeStamp = event.getTimeStamp();
+                List<Event> upTo = new ArrayList<>();
+                Event next = null;
+                for (Event ofEntityEvent : ofEntity) {
+                    if (ofEntityEvent.getTimeStamp() <= timeStamp) {
+                        upTo.add(ofEntityEvent);
+                    } else if (next == null) {
+                        next = ofEntityEvent;
+                    }
+                }
+                assertEquals(upTo.subList(Math.max(0, upTo.size() - 3), upTo.size()),
+                        store.lastOfEntity(entityId, timeStamp, 3));
+                assertEquals(next, store.nextOfEntity(entityId, timeStamp));
+            }
+            assertEquals(ofEntity, store.lastOfEntity(entityId, Double.POSITIVE_INFINITY, events.size()));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.Event;
+import cpen221.mp3.event.SensorEvent;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures how many events per second go through Filter.satisfies, for simple and complex filters, and for
+ * all of them checked one after the other on every event, the way a Server checks its different filters.
+ * Run the main method directly, it is not part of the unit tests. Measuring one kind of filter per run
+ * keeps the JIT from compiling satisfies for the other kinds, which makes runs easier to compare.
+ *
+ * usage: FilterBenchmark [seconds per measurement, default 2] [value|timestamp|boolean|complex|unserialized|skewed|or|mixed, default all]
+ */
+public class FilterBenchmark {
+    private static final int EVENTS = 4096;
+
+    public static void main(String[] args) {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        Random random = new Random(221);
+        Event[] events = new Event[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            if (i % 4 == 0) {
+                events[i] = new ActuatorEvent(i, 0, i % 16, "Switch", random.nextBoolean());
+            } else {
+                events[i] = new SensorEvent(i, 0, i % 16, "TempSensor", 20 + random.nextDouble() * 4);
+            }
+        }
+
+        Filter value = new Filter("value", DoubleOperator.GREATER_THAN_OR_EQUALS, 22);
+        Filter timestamp = new Filter("timestamp", DoubleOperator.LESS_THAN, EVENTS / 2.0);
+        Filter bool = new Filter(BooleanOperator.EQUALS, true);
+        List<Filter> children = new ArrayList<>();
+        children.add(timestamp);
+        children.add(value);
+        children.add(new Filter("value", DoubleOperator.LESS_THAN, 23.5));
+        Filter complex = new Filter(children);
+        Filter unserialized = Filter.unserialize(complex.toString());
+        // the most selective filter comes last, and has to be moved to the front
+        List<Filter> skewedChildren = new ArrayList<>();
+        skewedChildren.add(new Filter("timestamp", DoubleOperator.LESS_THAN, EVENTS));
+        skewedChildren.add(new Filter("value", DoubleOperator.LESS_THAN, 30));
+        skewedChildren.add(new Filter("value", DoubleOperator.GREATER_THAN_OR_EQUALS, 23.8));
+        Filter skewed = new Filter(skewedChildren);
+        List<Filter> anyChildren = new ArrayList<>();
+        anyChildren.add(new Filter("value", DoubleOperator.GREATER_THAN_OR_EQUALS, 23.8));
+        anyChildren.add(new Filter(BooleanOperator.EQUALS, true));
+        anyChildren.add(new Filter("timestamp", DoubleOperator.LESS_THAN, EVENTS));
+        Filter any = new Filter(LogicalOperator.OR, anyChildren);
+
+        Map<String, Filter> filters = new LinkedHashMap<>();
+        filters.put("value", value);
+        filters.put("timestamp", timestamp);
+        filters.put("boolean", bool);
+        filters.put("complex", complex);
+        filters.put("unserialized", unserialized);
+        filters.put("skewed", skewed);
+        filters.put("or", any);
+        Filter[] mixed = filters.values().toArray(new Filter[0]);
+        filters.put("mixed", null);
+        if (args.length > 1) {
+            filters.keySet().retainAll(List.of(args[1]));
+        }
+        for (int round = 0; round < 3; round++) {
+            StringBuilder results = new StringBuilder();
+            for (Map.Entry<String, Filter> entry : filters.entrySet()) {
+                Filter[] measured = entry.getValue() == null ? mixed : new Filter[]{entry.getValue()};
+                results.append(String.format("%s: %.0f checks/s  ", entry.getKey(), measure(seconds, events, measured)));
+            }
+            System.out.println(results);
+        }
+    }
+
+    private static double measure(int seconds, Event[] events, Filter[] filters) {
+        long satisfied = 0;
+        long evaluated = 0;
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        long start = System.nanoTime();
+        while (System.nanoTime() < end) {
+            for (Event event : events) {
+                for (Filter filter : filters) {
+                    if (filter.satisfies(event)) {
+                        satisfied++;
+                    }
+                }
+            }
+            evaluated += (long) events.length * filters.length;
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        if (satisfied == 42) {
+            System.out.println(satisfied);
+        }
+        return evaluated / elapsed;
+    }
+}
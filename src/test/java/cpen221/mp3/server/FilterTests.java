@@ -131,6 +131,109 @@ public class FilterTests{
         assertEquals(filteredEvents, complexFilter.sift(eventsList));
     }
 
+    @Test
+    public void testComplexFilterCopiesItsList() {
+        Event sensorEvent = eventList.get(1);
+        Filter sensorValueFilter = new Filter("value", GREATER_THAN_OR_EQUALS, 23);
+        List<Filter> filterList = new ArrayList<>();
+        filterList.add(sensorValueFilter);
+        Filter complexFilter = new Filter(filterList);
+        Filter sameFilter = new Filter(List.of(sensorValueFilter));
+
+        filterList.add(new Filter("timestamp", LESS_THAN, -1000));
+        assertTrue(complexFilter.satisfies(sensorEvent));
+        assertEquals(sameFilter, complexFilter);
+        assertEquals(sameFilter.hashCode(), complexFilter.hashCode());
+        assertEquals(sameFilter.toString(), complexFilter.toString());
+    }
+
+    @Test
+    public void testComplexFilterSharedByThreads() throws InterruptedException {
+        Filter hot = new Filter("value", GREATER_THAN_OR_EQUALS, 23);
+        Filter early = new Filter("timestamp", LESS_THAN, 100);
+        Filter switchedOn = new Filter(EQUALS, true);
+        Filter shared = new Filter(LogicalOperator.OR, List.of(new Filter(List.of(hot, early)), switchedOn));
+        List<Boolean> expected = new ArrayList<>();
+        for (Event event : eventList) {
+            expected.add((hot.satisfies(event) && early.satisfies(event)) || switchedOn.satisfies(event));
+        }
+        // every thread checks the events many times, so that each of them samples and reorders the filters
+        List<Thread> threads = new ArrayList<>();
+        List<Boolean> correct = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                boolean same = true;
+                for (int repeat = 0; repeat < 20; repeat++) {
+                    for (int i = 0; i < eventList.size(); i++) {
+                        same &= shared.satisfies(eventList.get(i)) == expected.get(i);
+                    }
+                }
+                synchronized (correct) {
+                    correct.add(same);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(List.of(true, true, true, true), correct);
+    }
+
+    @Test
+    public void testOrAndNotFilters() {
+        Event warm = new SensorEvent(1, 0, 1, "TempSensor", 25);
+        Event cold = new SensorEvent(2, 0, 1, "TempSensor", 15);
+        Event on = new ActuatorEvent(3, 0, 97, "Switch", true);
+        Filter hot = new Filter("value", GREATER_THAN_OR_EQUALS, 23);
+        Filter switchedOn = new Filter(EQUALS, true);
+        Filter either = new Filter(LogicalOperator.OR, List.of(hot, switchedOn));
+        Filter neither = new Filter(LogicalOperator.NOT, List.of(either));
+
+        assertTrue(either.satisfies(warm));
+        assertFalse(either.satisfies(cold));
+        assertTrue(either.satisfies(on));
+        assertFalse(neither.satisfies(warm));
+        assertTrue(neither.satisfies(cold));
+        assertFalse(new Filter(LogicalOperator.OR, new ArrayList<>()).satisfies(warm));
+        assertThrows(IllegalArgumentException.class, () -> new Filter(LogicalOperator.NOT, List.of(hot, switchedOn)));
+    }
+
+    @Test
+    public void testLogicalFilterSerialization() {
+        Filter hot = new Filter("value", GREATER_THAN_OR_EQUALS, 23);
+        Filter early = new Filter("timestamp", LESS_THAN, 1);
+        Filter switchedOn = new Filter(EQUALS, true);
+        Filter both = new Filter(List.of(hot, early));
+        Filter either = new Filter(LogicalOperator.OR, List.of(both, switchedOn, new Filter(LogicalOperator.OR, new ArrayList<>())));
+        Filter notEither = new Filter(LogicalOperator.NOT, List.of(either));
+        Filter rule = new Filter(List.of(notEither, early));
+
+        assertEquals(either, Filter.unserialize(either.toString()));
+        assertEquals(notEither, Filter.unserialize(notEither.toString()));
+        assertEquals(rule, Filter.unserialize(rule.toString()));
+        assertEquals(both, Filter.unserialize(both.toString()));
+        assertNotEquals(new Filter(LogicalOperator.OR, List.of(hot, early)), both);
+    }
+
+    @Test
+    public void testReorderingKeepsResults() {
+        // the value filter decides most results at first, then the timestamp filter does
+        Filter hot = new Filter("value", GREATER_THAN_OR_EQUALS, 23);
+        Filter early = new Filter("timestamp", LESS_THAN, 5000);
+        Filter switchedOn = new Filter(EQUALS, true);
+        Filter all = new Filter(List.of(early, hot, new Filter("value", LESS_THAN, 30)));
+        Filter any = new Filter(LogicalOperator.OR, List.of(switchedOn, early, hot));
+        for (int i = 0; i < 10000; i++) {
+            Event event = i % 5 == 0 ? new ActuatorEvent(i, 0, 97, "Switch", i % 3 == 0)
+                    : new SensorEvent(i, 0, 1, "TempSensor", i % 7 == 0 ? 25 : 20);
+            boolean expectedAll = early.satisfies(event) && hot.satisfies(event) && event.getValueDouble() < 30;
+            boolean expectedAny = switchedOn.satisfies(event) || early.satisfies(event) || hot.satisfies(event);
+            assertEquals(expectedAll, all.satisfies(event));
+            assertEquals(expectedAny, any.satisfies(event));
+        }
+    }
+
     
 }
-
@@ -0,0 +1,164 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.client.Client;
+import cpen221.mp3.event.SensorEvent;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ForecasterTests {
+
+    private static Forecaster observeAll(Forecaster forecaster, double[] values) {
+        for (double value : values) {
+            forecaster.observe(value);
+        }
+        return forecaster;
+    }
+
+    @Test
+    public void testNothingObserved() {
+        for (Forecaster forecaster : Server.defaultForecasters()) {
+            assertTrue(Double.isNaN(forecaster.forecast(1)));
+        }
+    }
+
+    @Test
+    public void testLinearSequences() {
+        double[] values = new double[20];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 3 * i + 1;
+        }
+        for (Forecaster forecaster : List.of(new LinearForecaster(), new HoltForecaster(0.5, 0.3), new LagrangeForecaster(8))) {
+            observeAll(forecaster, values);
+            assertEquals(61, forecaster.forecast(1), 0.000001);
+            assertEquals(73, forecaster.forecast(5), 0.000001);
+        }
+    }
+
+    @Test
+    public void testSeasonalNaive() {
+        Forecaster forecaster = observeAll(new SeasonalNaiveForecaster(3), new double[]{9, 1, 2, 3, 1, 2, 3});
+        assertEquals(1, forecaster.forecast(1));
+        assertEquals(2, forecaster.forecast(2));
+        assertEquals(3, forecaster.forecast(3));
+        assertEquals(1, forecaster.forecast(4));
+
+        Forecaster partial = observeAll(new SeasonalNaiveForecaster(3), new double[]{4, 5});
+        assertEquals(5, partial.forecast(2));
+    }
+
+    @Test
+    public void testLagrangeMatchesPredictor() {
+        Random random = new Random(21);
+        double[] values = new double[30];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(10) + i;
+        }
+        Forecaster forecaster = observeAll(new LagrangeForecaster(6), values);
+        double[] window = Arrays.copyOfRange(values, values.length - 6, values.length);
+        List<Double> expected = new Predictor(window, 3).predictDouble();
+        for (int step = 1; step <= 3; step++) {
+            assertEquals(expected.get(step - 1).doubleValue(), forecaster.forecast(step), 0.000001);
+        }
+    }
+
+    @Test
+    public void testCreateStartsEmpty() {
+        Forecaster forecaster = observeAll(new HoltForecaster(0.2, 0.2), new double[]{1, 2, 3});
+        assertTrue(Double.isNaN(forecaster.create().forecast(1)));
+        assertThrows(IllegalArgumentException.class, () -> new HoltForecaster(0, 0.5));
+        assertThrows(IllegalArgumentException.class, () -> new SeasonalNaiveForecaster(0));
+    }
+
+    @Test
+    public void testSelectsMostAccurate() {
+        ForecastSelector alternating = new ForecastSelector(Server.defaultForecasters());
+        for (int i = 0; i < 50; i++) {
+            alternating.observe(i % 2 == 0 ? 10 : 20);
+        }
+        assertTrue(alternating.getSelected() instanceof SeasonalNaiveForecaster);
+        assertEquals(List.of(10.0, 20.0, 10.0), alternating.forecast(3));
+
+        Random random = new Random(21);
+        ForecastSelector noisy = new ForecastSelector(Server.defaultForecasters());
+        for (int i = 0; i < 200; i++) {
+            noisy.observe(2 * i + random.nextDouble());
+        }
+        assertTrue(noisy.getSelected() instanceof LinearForecaster);
+        assertTrue(noisy.getError(1) < noisy.getError(0));
+    }
+
+    @Test
+    public void testEntityForecastsAfterOutOfOrderEvents() {
+        Random random = new Random(21);
+        List<Forecaster> forecasters = Server.defaultForecasters();
+        ServerEntity entity = new ServerEntity(5, false);
+        assertTrue(entity.forecastValues(2, forecasters).isEmpty());
+        for (int i = 0; i < 100; i++) {
+            double timeStamp = i + (random.nextInt(5) == 0 ? -random.nextInt(10) - 0.5 : 0);
+            entity.addEvent(new SensorEvent(timeStamp, 0, 5, "TempSensor", random.nextInt(4)));
+
+            ForecastSelector replayed = new ForecastSelector(forecasters);
+            for (double value : entity.getValues()) {
+                replayed.observe(value);
+            }
+            assertEquals(replayed.forecast(2), entity.forecastValues(2, forecasters));
+        }
+    }
+
+    @Test
+    public void testEntityForecastsAfterEventsBeforeTheWindow() {
+        Random random = new Random(121);
+        List<Forecaster> forecasters = Server.defaultForecasters();
+        ServerEntity entity = new ServerEntity(5, false);
+        for (int i = 0; i < 200; i++) {
+            // late events land among the samples, and sometimes before all of them
+            double timeStamp = i + (random.nextInt(4) == 0 ? -random.nextInt(40) - 0.5 : 0);
+            entity.addEvent(new SensorEvent(timeStamp, 0, 5, "TempSensor", random.nextInt(10)));
+            if (i % 3 == 0) {
+                ForecastSelector replayed = new ForecastSelector(forecasters);
+                for (double value : entity.getValues()) {
+                    replayed.observe(value);
+                }
+                assertEquals(replayed.forecast(3), entity.forecastValues(3, forecasters));
+            }
+        }
+    }
+
+    @Test
+    public void testCopiedForecastersAreIndependent() {
+        for (Forecaster forecaster : Server.defaultForecasters()) {
+            Forecaster original = forecaster.create();
+            for (int i = 0; i < 20; i++) {
+                original.observe(i % 3);
+            }
+            Forecaster copy = original.copy();
+            assertEquals(original.forecast(2), copy.forecast(2));
+            copy.observe(100);
+            Forecaster replayed = forecaster.create();
+            for (int i = 0; i < 20; i++) {
+                replayed.observe(i % 3);
+            }
+            assertEquals(replayed.forecast(2), original.forecast(2));
+        }
+    }
+
+    @Test
+    public void testServerStreamingValues() {
+        Server server = new Server(new Client(0, "test@test.com", "1.1.1.1", 1));
+        for (int i = 0; i < 40; i++) {
+            server.processIncomingEvent(new SensorEvent(i, 0, 2, "TempSensor", i % 2 == 0 ? 1.0 : 5.0));
+        }
+        server.updatePredictionMode(PredictionMode.STREAMING);
+        assertEquals(List.of(1.0, 5.0), server.predictNextNValues(2, 2));
+
+        server.updateForecasters(List.of(new LinearForecaster()));
+        assertEquals(1, server.getForecasters().size());
+        assertEquals(3.0, ((Double) server.predictNextNValues(2, 1).get(0)).doubleValue(), 0.5);
+        assertThrows(IllegalArgumentException.class, () -> server.updateForecasters(List.of()));
+    }
+}
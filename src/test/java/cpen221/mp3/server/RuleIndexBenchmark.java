@@ -0,0 +1,96 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.Event;
+import cpen221.mp3.event.SensorEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures how many events per second find their satisfied actuator rules, by checking every rule's filter
+ * and with a RuleIndex. Most rules are narrow value ranges, the way many actuators watching one sensor
+ * would each react to their own band of readings.
+ * Run the main method directly, it is not part of the unit tests.
+ *
+ * usage: RuleIndexBenchmark [number of rules, default 5000] [seconds per measurement, default 2]
+ */
+public class RuleIndexBenchmark {
+    private static final int EVENTS = 4096;
+
+    public static void main(String[] args) {
+        int ruleCount = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        Random random = new Random(221);
+        Filter[] filters = new Filter[ruleCount];
+        RuleIndex index = new RuleIndex();
+        for (int id = 0; id < ruleCount; id++) {
+            double low = random.nextDouble() * 100;
+            if (id % 4 == 0) {
+                filters[id] = new Filter("value", DoubleOperator.GREATER_THAN_OR_EQUALS, low);
+            } else if (id % 4 == 1) {
+                filters[id] = new Filter(BooleanOperator.EQUALS, random.nextBoolean());
+            } else {
+                List<Filter> children = new ArrayList<>();
+                children.add(new Filter("value", DoubleOperator.GREATER_THAN, low));
+                children.add(new Filter("value", DoubleOperator.LESS_THAN_OR_EQUALS, low + 1));
+                filters[id] = new Filter(children);
+            }
+            index.put(id, filters[id]);
+        }
+        Event[] events = new Event[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            if (i % 8 == 0) {
+                events[i] = new ActuatorEvent(i, 0, 1, "Switch", random.nextBoolean());
+            } else {
+                events[i] = new SensorEvent(i, 0, 2, "TempSensor", random.nextDouble() * 100);
+            }
+        }
+
+        for (int round = 0; round < 3; round++) {
+            System.out.printf("every filter: %.0f events/s  rule index: %.0f events/s%n",
+                    measureFilters(seconds, events, filters), measureIndex(seconds, events, index));
+        }
+    }
+
+    private static double measureFilters(int seconds, Event[] events, Filter[] filters) {
+        long satisfied = 0;
+        long evaluated = 0;
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        long start = System.nanoTime();
+        while (System.nanoTime() < end) {
+            for (Event event : events) {
+                for (Filter filter : filters) {
+                    if (filter.satisfies(event)) {
+                        satisfied++;
+                    }
+                }
+            }
+            evaluated += events.length;
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        if (satisfied == 42) {
+            System.out.println(satisfied);
+        }
+        return evaluated / elapsed;
+    }
+
+    private static double measureIndex(int seconds, Event[] events, RuleIndex index) {
+        long satisfied = 0;
+        long evaluated = 0;
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        long start = System.nanoTime();
+        while (System.nanoTime() < end) {
+            for (Event event : events) {
+                satisfied += index.matching(event).size();
+            }
+            evaluated += events.length;
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        if (satisfied == 42) {
+            System.out.println(satisfied);
+        }
+        return evaluated / elapsed;
+    }
+}
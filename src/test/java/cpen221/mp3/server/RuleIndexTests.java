@@ -0,0 +1,123 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.client.Client;
+import cpen221.mp3.entity.Actuator;
+import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.Event;
+import cpen221.mp3.event.SensorEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RuleIndexTests {
+
+    private static Filter randomSimpleFilter(Random random) {
+        double[] thresholds = {-1, -0.0, 0.0, 1, 2, 2.5, 3, 4, Double.NaN, Double.POSITIVE_INFINITY};
+        DoubleOperator operator = DoubleOperator.values()[random.nextInt(DoubleOperator.values().length)];
+        double threshold = thresholds[random.nextInt(thresholds.length)];
+        return switch (random.nextInt(3)) {
+            case 0 -> new Filter(BooleanOperator.values()[random.nextInt(2)], random.nextBoolean());
+            case 1 -> new Filter("value", operator, threshold);
+            default -> new Filter("timestamp", operator, threshold);
+        };
+    }
+
+    private static Filter randomFilter(Random random) {
+        if (random.nextInt(3) > 0) {
+            return randomSimpleFilter(random);
+        }
+        List<Filter> children = new ArrayList<>();
+        int count = random.nextInt(4);
+        for (int i = 0; i < count; i++) {
+            children.add(random.nextInt(5) == 0 ? randomFilter(random) : randomSimpleFilter(random));
+        }
+        LogicalOperator[] operators = {LogicalOperator.AND, LogicalOperator.AND, LogicalOperator.OR, LogicalOperator.NOT};
+        LogicalOperator operator = operators[random.nextInt(operators.length)];
+        if (operator == LogicalOperator.NOT) {
+            return new Filter(operator, List.of(randomSimpleFilter(random)));
+        }
+        return new Filter(operator, children);
+    }
+
+    private static Event randomEvent(Random random) {
+        double timeStamp = random.nextInt(6) - 1;
+        if (random.nextBoolean()) {
+            return new ActuatorEvent(timeStamp, 0, 1, "Switch", random.nextBoolean());
+        }
+        double[] values = {-1, -0.0, 0.0, 1, 2, 2.5, 3, 4, 5, Double.NaN};
+        return new SensorEvent(timeStamp, 0, 2, "TempSensor", values[random.nextInt(values.length)]);
+    }
+
+    @Test
+    public void testMatchingAgreesWithSatisfies() {
+        Random random = new Random(221);
+        RuleIndex index = new RuleIndex();
+        Map<Integer, Filter> rules = new HashMap<>();
+        for (int id = 0; id < 500; id++) {
+            Filter filter = randomFilter(random);
+            rules.put(id, filter);
+            index.put(id, filter);
+        }
+        assertEquals(500, index.size());
+
+        for (int i = 0; i < 200; i++) {
+            Event event = randomEvent(random);
+            Set<Integer> expected = new HashSet<>();
+            for (Map.Entry<Integer, Filter> rule : rules.entrySet()) {
+                if (rule.getValue().satisfies(event)) {
+                    expected.add(rule.getKey());
+                }
+            }
+            List<Integer> matched = index.matching(event);
+            assertEquals(expected.size(), matched.size(), event.toString());
+            assertEquals(expected, new HashSet<>(matched));
+        }
+    }
+
+    @Test
+    public void testPutReplaces() {
+        RuleIndex index = new RuleIndex();
+        Event event = new SensorEvent(1, 0, 2, "TempSensor", 10);
+        index.put(7, new Filter("value", DoubleOperator.GREATER_THAN, 5));
+        assertEquals(List.of(7), index.matching(event));
+
+        index.put(7, new Filter("value", DoubleOperator.LESS_THAN, 5));
+        assertTrue(index.matching(event).isEmpty());
+        assertEquals(1, index.size());
+
+        index.put(8, new Filter(new ArrayList<>()));
+        assertTrue(index.contains(7));
+        assertEquals(List.of(8), index.matching(event));
+    }
+
+    @Test
+    public void testServerChecksRulesOnlyForNewerEvents() {
+        Server server = new Server(new Client(0, "test@test.com", "1.1.1.1", 1));
+        Actuator actuator = new Actuator(50, 0, "Switch", false);
+        server.processIncomingEvent(new SensorEvent(1, 0, 1, "TempSensor", 10));
+        server.setActuatorStateIf(new Filter("value", DoubleOperator.GREATER_THAN_OR_EQUALS, 5), actuator);
+        assertFalse(actuator.getState());
+
+        // an earlier event is still newer than the rule, so the rule is checked on the latest event
+        server.processIncomingEvent(new SensorEvent(0.5, 0, 1, "TempSensor", 20));
+        assertTrue(actuator.getState());
+        actuator.updateState(false);
+        server.processIncomingEvent(new SensorEvent(0.5, 0, 1, "TempSensor", 20));
+        assertFalse(actuator.getState());
+
+        server.processIncomingEvent(new SensorEvent(2, 0, 1, "TempSensor", 1));
+        assertFalse(actuator.getState());
+        server.processIncomingEvent(new SensorEvent(1.5, 0, 1, "TempSensor", 100));
+        assertFalse(actuator.getState());
+        server.processIncomingEvent(new SensorEvent(3, 0, 1, "TempSensor", 7));
+        assertTrue(actuator.getState());
+    }
+}
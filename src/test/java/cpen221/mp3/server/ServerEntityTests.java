@@ -0,0 +1,238 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.client.Client;
+import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.SensorEvent;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServerEntityTests {
+
+    @Test
+    public void testSensorColumnsOutOfOrder() {
+        ServerEntity entity = new ServerEntity(1, false);
+        entity.addEvent(new SensorEvent(0.3, 0, 1, "TempSensor", 23));
+        entity.addEvent(new SensorEvent(0.1, 0, 1, "TempSensor", 21));
+        entity.addEvent(new SensorEvent(0.4, 0, 1, "TempSensor", 24));
+        entity.addEvent(new SensorEvent(0.2, 0, 1, "TempSensor", 22));
+
+        assertEquals(4, entity.getEventCount());
+        assertArrayEquals(new double[]{0.1, 0.2, 0.3, 0.4}, entity.getTimeStamps());
+        assertArrayEquals(new double[]{21, 22, 23, 24}, entity.getValues());
+        assertEquals(0.4, entity.getLatestEvent().getTimeStamp());
+    }
+
+    @Test
+    public void testActuatorColumnsOutOfOrder() {
+        ServerEntity entity = new ServerEntity(97, true);
+        for (int i = 0; i < 20; i++) {
+            entity.addEvent(new ActuatorEvent(i + 1, 0, 97, "Switch", i % 2 == 0));
+        }
+        entity.addEvent(new ActuatorEvent(0.5, 0, 97, "Switch", true));
+
+        boolean[] values = entity.getBooleanValues();
+        assertEquals(21, values.length);
+        assertTrue(values[0]);
+        for (int i = 1; i < values.length; i++) {
+            assertEquals((i - 1) % 2 == 0, values[i]);
+        }
+    }
+
+    @Test
+    public void testServerPredictionsUseEntityHistory() {
+        Server server = new Server(new Client(0, "test@test.com", "1.1.1.1", 1));
+        for (int i = 0; i < 10; i++) {
+            server.processIncomingEvent(new SensorEvent(i, 0, 1, "TempSensor", i));
+            server.processIncomingEvent(new SensorEvent(i + 0.5, 0, 2, "TempSensor", 100));
+        }
+        double nextTimeStamp = server.predictNextNTimeStamps(1, 1).get(0);
+        double nextValue = (Double) server.predictNextNValues(1, 1).get(0);
+        assertEquals(10.0, nextTimeStamp, 0.000001);
+        assertEquals(10.0, nextValue, 0.000001);
+        assertTrue(server.predictNextNValues(3, 1).isEmpty());
+    }
+
+    @Test
+    public void testAverageIntervalIgnoresOutOfOrderEvents() {
+        ServerEntity entity = new ServerEntity(1, false);
+        assertTrue(entity.extrapolateTimeStamps(3).isEmpty());
+        entity.addEvent(new SensorEvent(1, 0, 1, "TempSensor", 20));
+        assertEquals(List.of(1.0, 1.0), entity.extrapolateTimeStamps(2));
+
+        entity.addEvent(new SensorEvent(3, 0, 1, "TempSensor", 20));
+        assertEquals(2.0, entity.getAverageInterval());
+        entity.addEvent(new SensorEvent(2, 0, 1, "TempSensor", 20));
+        assertEquals(2.0, entity.getAverageInterval());
+        entity.addEvent(new SensorEvent(7, 0, 1, "TempSensor", 20));
+        double expected = 2 + ServerEntity.INTERVAL_SMOOTHING * (4 - 2);
+        assertEquals(expected, entity.getAverageInterval(), 1e-12);
+        assertEquals(List.of(7 + expected, 7 + 2 * expected), entity.extrapolateTimeStamps(2));
+    }
+
+    @Test
+    public void testServerStreamingPredictions() {
+        Server server = new Server(new Client(0, "test@test.com", "1.1.1.1", 1));
+        for (int i = 0; i < 1000; i++) {
+            server.processIncomingEvent(new SensorEvent(i * 0.5, 0, 4, "TempSensor", 20));
+        }
+        assertEquals(PredictionMode.EXACT, server.getPredictionMode());
+        server.updatePredictionMode(PredictionMode.STREAMING);
+        List<Double> predictions = server.predictNextNTimeStamps(4, 3);
+        assertEquals(3, predictions.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(500 + i * 0.5, predictions.get(i).doubleValue(), 1e-9);
+        }
+        assertTrue(server.predictNextNTimeStamps(5, 3).isEmpty());
+    }
+
+    @Test
+    public void testServerPredictsFromWindow() {
+        Server server = new Server(new Client(0, "test@test.com", "1.1.1.1", 1));
+        for (int i = 0; i < 200; i++) {
+            // noisy history, then a straight line for the last 8 events
+            double value = i < 192 ? Math.sin(i * 7.0) * 100 : i;
+            server.processIncomingEvent(new SensorEvent(i, 0, 1, "TempSensor", value));
+        }
+        server.updatePredictionWindow(8);
+        assertEquals(8, server.getPredictionWindow());
+        assertEquals(200.0, ((Double) server.predictNextNValues(1, 1).get(0)).doubleValue(), 0.000001);
+        assertEquals(200.0, server.predictNextNTimeStamps(1, 1).get(0).doubleValue(), 0.000001);
+
+        ServerEntity entity = server.entities.get(1);
+        assertArrayEquals(new double[]{197, 198, 199}, entity.getLastValues(3));
+        assertArrayEquals(new double[]{197, 198, 199}, entity.getLastTimeStamps(3));
+        assertEquals(200, entity.getLastTimeStamps(1000).length);
+    }
+
+    @Test
+    public void testServerPredictsFromWholeHistoryByDefault() {
+        Server server = new Server(new Client(0, "test@test.com", "1.1.1.1", 1));
+        for (int i = 0; i < 24; i++) {
+            double timeStamp = i + (i % 3) * 0.25;
+            server.processIncomingEvent(new SensorEvent(timeStamp, 0, 1, "TempSensor", i * i * 0.5 - i % 4));
+        }
+        assertEquals(Server.WHOLE_HISTORY, server.getPredictionWindow());
+        ServerEntity entity = server.entities.get(1);
+        List<Double> timeStamps = new Predictor(entity.getTimeStamps(), 3).predictDouble();
+        List<Double> values = new Predictor(entity.getValues(), 3).predictDouble();
+        assertEquals(timeStamps, server.predictNextNTimeStamps(1, 3));
+        assertEquals(values, server.predictNextNValues(1, 3));
+
+        // a window is opt-in, and changes the predictions
+        server.updatePredictionWindow(16);
+        assertNotEquals(values, server.predictNextNValues(1, 3));
+        server.updatePredictionWindow(Server.WHOLE_HISTORY);
+        assertEquals(values, server.predictNextNValues(1, 3));
+    }
+
+    @Test
+    public void testLastBooleanValues() {
+        ServerEntity entity = new ServerEntity(97, true);
+        for (int i = 0; i < 100; i++) {
+            entity.addEvent(new ActuatorEvent(i, 0, 97, "Switch", i % 3 == 0));
+        }
+        boolean[] last = entity.getLastBooleanValues(5);
+        for (int i = 0; i < 5; i++) {
+            assertEquals((95 + i) % 3 == 0, last[i]);
+        }
+        assertEquals(0, entity.getLastBooleanValues(0).length);
+    }
+
+    @Test
+    public void testTransitionCountsWithOutOfOrderEvents() {
+        Random random = new Random(20);
+        ServerEntity entity = new ServerEntity(98, true);
+        for (int i = 0; i < 500; i++) {
+            double timeStamp = i + (random.nextInt(4) == 0 ? -random.nextInt(50) : 0);
+            entity.addEvent(new ActuatorEvent(timeStamp, 0, 98, "Switch", random.nextInt(3) == 0));
+
+            boolean[] values = entity.getBooleanValues();
+            int[][] expected = new int[2][2];
+            for (int j = 0; j < values.length - 1; j++) {
+                expected[values[j] ? 1 : 0][values[j + 1] ? 1 : 0]++;
+            }
+            for (int from = 0; from < 2; from++) {
+                for (int to = 0; to < 2; to++) {
+                    assertEquals(expected[from][to], entity.getTransitionCount(from == 1, to == 1));
+                }
+            }
+            assertEquals(new Predictor(values, 5).predictBool(), entity.predictBooleanValues(5));
+        }
+    }
+
+    @Test
+    public void testServerTransitionProbabilities() {
+        Server server = new Server(new Client(0, "test@test.com", "1.1.1.1", 1));
+        assertEquals(0, server.transitionProbabilities(3).length);
+        boolean[] values = {true, true, true, false, true, true, false};
+        for (int i = 0; i < values.length; i++) {
+            server.processIncomingEvent(new ActuatorEvent(i, 0, 3, "Switch", values[i]));
+        }
+        // true -> true 3 times, true -> false twice, false -> true once
+        double[][] probabilities = server.transitionProbabilities(3);
+        assertArrayEquals(new double[]{0.0, 1.0}, probabilities[0]);
+        assertArrayEquals(new double[]{0.4, 0.6}, probabilities[1]);
+        assertEquals(List.of(true, true), server.predictNextNValues(3, 2));
+    }
+
+    @Test
+    public void testPredictionCache() {
+        Server server = new Server(new Client(0, "test@test.com", "1.1.1.1", 1));
+        for (int i = 0; i < 10; i++) {
+            server.processIncomingEvent(new SensorEvent(i * 2, 0, 4, "TempSensor", i));
+        }
+        List<Double> ten = server.predictNextNTimeStamps(4, 10);
+        assertEquals(ten.subList(0, 5), server.predictNextNTimeStamps(4, 5));
+        assertEquals(ten, server.predictNextNTimeStamps(4, 10));
+        assertEquals(2, server.getPredictionCacheHits());
+        assertEquals(1, server.getPredictionCacheMisses());
+
+        // the cached predictions cannot be changed through the returned lists
+        ten.clear();
+        assertEquals(20.0, server.predictNextNTimeStamps(4, 1).get(0).doubleValue(), 0.000001);
+
+        server.predictNextNValues(4, 3);
+        server.processIncomingEvent(new SensorEvent(20, 0, 4, "TempSensor", 10));
+        assertEquals(11.0, ((Double) server.predictNextNValues(4, 2).get(0)).doubleValue(), 0.000001);
+        assertEquals(22.0, server.predictNextNTimeStamps(4, 1).get(0).doubleValue(), 0.000001);
+        assertEquals(3, server.getPredictionCacheHits());
+        assertEquals(4, server.getPredictionCacheMisses());
+
+        server.updatePredictionMode(PredictionMode.STREAMING);
+        server.predictNextNTimeStamps(4, 1);
+        assertEquals(5, server.getPredictionCacheMisses());
+    }
+
+    @Test
+    public void testServerEntityReadsOlderEventsFromServer() {
+        Random random = new Random(23);
+        Server server = new Server(new Client(0, "test@test.com", "1.1.1.1", 1));
+        ServerEntity standalone = new ServerEntity(7, true);
+        for (int i = 0; i < 300; i++) {
+            // events of another entity in between, and events of entity 7 far behind its latest samples
+            server.processIncomingEvent(new SensorEvent(i, 0, 8, "TempSensor", i));
+            double timeStamp = i + (random.nextInt(4) == 0 ? -random.nextInt(100) - 0.5 : 0);
+            ActuatorEvent event = new ActuatorEvent(timeStamp, 0, 7, "Switch", random.nextBoolean());
+            server.processIncomingEvent(event);
+            standalone.addEvent(event);
+        }
+        ServerEntity entity = server.entities.get(7);
+        assertArrayEquals(standalone.getBooleanValues(), entity.getBooleanValues());
+        assertArrayEquals(standalone.getTimeStamps(), entity.getTimeStamps());
+        for (int from = 0; from < 2; from++) {
+            for (int to = 0; to < 2; to++) {
+                assertEquals(standalone.getTransitionCount(from == 1, to == 1), entity.getTransitionCount(from == 1, to == 1));
+            }
+        }
+
+        server.updatePredictionWindow(40);
+        assertArrayEquals(standalone.getLastTimeStamps(40), entity.getLastTimeStamps(40));
+        server.updatePredictionWindow(4);
+        assertArrayEquals(standalone.getLastTimeStamps(4), entity.getLastTimeStamps(4));
+        assertArrayEquals(standalone.getLastTimeStamps(50), entity.getLastTimeStamps(50));
+    }
+}
@@ -0,0 +1,101 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.Event;
+import cpen221.mp3.event.SensorEvent;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures how many events per second a filter checks over a large history, with Filter.sift over a list
+ * of events and with Filter.select over the same events in an EventColumns, both with scalar loops and with
+ * the Vector API. Run the main method directly, it is not part of the unit tests. The Vector API is only
+ * measured if the JVM is started with --add-modules jdk.incubator.vector.
+ *
+ * usage: SiftBenchmark [number of events, default 2000000] [seconds per measurement, default 2]
+ */
+public class SiftBenchmark {
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        Random random = new Random(221);
+        List<Event> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (i % 4 == 0) {
+                events.add(new ActuatorEvent(i, 0, i % 16, "Switch", random.nextBoolean()));
+            } else {
+                events.add(new SensorEvent(i, 0, i % 16, "TempSensor", 20 + random.nextDouble() * 4));
+            }
+        }
+        EventColumns columns = new EventColumns(events);
+
+        List<Filter> children = new ArrayList<>();
+        children.add(new Filter("timestamp", DoubleOperator.LESS_THAN, count / 2.0));
+        children.add(new Filter("value", DoubleOperator.GREATER_THAN_OR_EQUALS, 22));
+        children.add(new Filter("value", DoubleOperator.LESS_THAN, 23.5));
+        Map<String, Filter> filters = new LinkedHashMap<>();
+        filters.put("value", new Filter("value", DoubleOperator.GREATER_THAN_OR_EQUALS, 22));
+        filters.put("boolean", new Filter(BooleanOperator.EQUALS, true));
+        filters.put("complex", new Filter(children));
+
+        boolean vectorApi = EventColumns.setVectorized(true);
+        if (!vectorApi) {
+            System.out.println("WARNING: the Vector API is not available, add --add-modules jdk.incubator.vector");
+        }
+        for (int round = 0; round < 3; round++) {
+            StringBuilder results = new StringBuilder();
+            for (Map.Entry<String, Filter> entry : filters.entrySet()) {
+                Filter filter = entry.getValue();
+                double sift = measureSift(seconds, events, filter);
+                EventColumns.setVectorized(false);
+                double scalar = measureSelect(seconds, columns, filter);
+                EventColumns.setVectorized(true);
+                results.append(String.format("%s: sift %.0f, select %.0f", entry.getKey(), sift, scalar));
+                if (vectorApi) {
+                    results.append(String.format(", vector select %.0f", measureSelect(seconds, columns, filter)));
+                }
+                results.append(" events/s  ");
+            }
+            System.out.println(results);
+        }
+    }
+
+    private static double measureSift(int seconds, List<Event> events, Filter filter) {
+        long selected = 0;
+        long evaluated = 0;
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        long start = System.nanoTime();
+        while (System.nanoTime() < end) {
+            selected += filter.sift(events).size();
+            evaluated += events.size();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        if (selected == 42) {
+            System.out.println(selected);
+        }
+        return evaluated / elapsed;
+    }
+
+    private static double measureSelect(int seconds, EventColumns columns, Filter filter) {
+        long selected = 0;
+        long evaluated = 0;
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        long start = System.nanoTime();
+        while (System.nanoTime() < end) {
+            BitSet satisfied = filter.select(columns);
+            selected += satisfied.cardinality();
+            evaluated += columns.size();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        if (selected == 42) {
+            System.out.println(selected);
+        }
+        return evaluated / elapsed;
+    }
+}
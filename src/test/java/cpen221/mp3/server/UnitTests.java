@@ -260,6 +260,31 @@ public class UnitTests{
         assertEquals(97, server.mostActiveEntity());
     }
 
+    @Test
+    public void testMostActiveEntities() {
+        Server server = new Server(client);
+        Event e1 = new SensorEvent(0.1, 0, 1,"TempSensor", 24);
+        Event e2 = new ActuatorEvent(0.25, 0, 97,"Switch", false);
+        Event e3 = new SensorEvent(0.2, 0, 1,"TempSensor", 20);
+        Event e4 = new ActuatorEvent(0.3, 0, 97,"Switch", false);
+        Event e5 = new SensorEvent(0.35, 0, 5,"TempSensor", 21);
+        Event e6 = new ActuatorEvent(0.4, 0, 97,"Switch", false);
+
+        assertEquals(new ArrayList<>(), server.mostActiveEntities(3));
+        server.processIncomingEvent(e1);
+        server.processIncomingEvent(e2);
+        assertEquals(97, server.mostActiveEntity());
+        server.processIncomingEvent(e3);
+        assertEquals(1, server.mostActiveEntity());
+        server.processIncomingEvent(e4);
+        server.processIncomingEvent(e5);
+        assertEquals(97, server.mostActiveEntity());
+        server.processIncomingEvent(e6);
+        assertEquals(List.of(97, 1, 5), server.mostActiveEntities(3));
+        assertEquals(List.of(97, 1), server.mostActiveEntities(2));
+        assertEquals(List.of(97, 1, 5), server.mostActiveEntities(10));
+    }
+
     @Test
     public void testAllEntities() {
         Server server = new Server(client);
@@ -325,6 +350,20 @@ public class UnitTests{
         assertTrue(actuator1.getState());
     }
 
+    @Test
+    public void testQueriesWithFilter() {
+        Server server = new Server(client);
+        for (Event event : eventList) {
+            server.processIncomingEvent(event);
+        }
+        Filter filter = Filter.unserialize(new Filter(BooleanOperator.EQUALS, false).toString());
+        TimeWindow window = new TimeWindow(0.2, 0.8);
+        assertFalse(server.eventsInTimeWindow(window, filter).isEmpty());
+        assertEquals(filter.sift(server.eventsInTimeWindow(window)), server.eventsInTimeWindow(window, filter));
+
+        List<Event> satisfying = filter.sift(server.lastNEvents(eventList.size()));
+        assertEquals(satisfying.subList(satisfying.size() - 3, satisfying.size()), server.lastNEvents(3, filter));
+    }
+
 
 }
-